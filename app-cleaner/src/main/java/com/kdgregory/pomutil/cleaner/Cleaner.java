@@ -17,33 +17,75 @@ package com.kdgregory.pomutil.cleaner;
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sf.practicalxml.ParseUtil;
 
+import com.kdgregory.pomutil.cleaner.transform.AbstractTransformer;
 import com.kdgregory.pomutil.cleaner.transform.InsertCommonProperties;
 import com.kdgregory.pomutil.cleaner.transform.NormalizeDependencies;
 import com.kdgregory.pomutil.cleaner.transform.ReplaceExplicitVersionsWithProperties;
 import com.kdgregory.pomutil.cleaner.transform.SortDependencies;
+import com.kdgregory.pomutil.util.AtomicFileWriter;
 import com.kdgregory.pomutil.util.PomWrapper;
 
 
 /**
  *  The cleaner, responsible for applying the desired set of transformations
  *  to the input POM.
+ *  <p>
+ *  By default, files are processed sequentially. Optionally, they may be processed
+ *  concurrently (each file is parsed, transformed, and written by a single worker
+ *  thread). In this case, log messages are collected per file and written in the
+ *  order that files were passed, so the log is the same as for a sequential run.
+ *  <p>
+ *  Files are replaced atomically, so a failure never leaves a partially-written
+ *  POM. Optionally, no file is replaced until all have been cleaned.
  */
 public class Cleaner
 {
     Logger logger = LoggerFactory.getLogger(getClass());
 
     private CommandLine args;
+    private AtomicFileWriter writer;
+    private OutputHandler outputHandler;
+    private int parallelism;
+    private volatile boolean aborted;
+
+    private List<File> cleanedFiles = new ArrayList<File>();
+    private List<File> changedFiles = new ArrayList<File>();
+    private List<File> unparseableFiles = new ArrayList<File>();
+    private List<File> skippedFiles = new ArrayList<File>();
+
 
     public Cleaner(CommandLine args)
+    {
+        this(args, new AtomicFileWriter(args.isOptionEnabled(CommandLine.Options.FSYNC),
+                                        args.isOptionEnabled(CommandLine.Options.ALL_OR_NOTHING)));
+    }
+
+
+    /**
+     *  Creates an instance that writes files using the provided writer, ignoring
+     *  the command-line options that would otherwise configure it.
+     */
+    public Cleaner(CommandLine args, AtomicFileWriter writer)
     {
         this.args = args;
+        this.writer = writer;
+        this.outputHandler = new OutputHandler(args, writer);
+        this.parallelism = parseParallelism(args);
     }
 
 
@@ -53,20 +95,45 @@ public class Cleaner
 
     /**
      *  Invokes the selected transformations on the specified list of files.
+     *  <p>
+     *  If any file fails (other than by being unparseable, which is logged),
+     *  the exception is rethrown once the log for all preceding files has been
+     *  written. When running concurrently, any file that had not been written
+     *  when the failure happened is skipped, whether it comes before or after
+     *  the failed file; skipped files that precede the failed file are logged
+     *  and reported by {@link #getSkippedFiles}. Files that had been written
+     *  are left changed, unless running in all-or-nothing mode, in which case
+     *  no file is changed. In either case, no file is written after this
+     *  method returns.
      */
     public void run(List<File> files)
     throws Exception
     {
-        for (File file : files)
+        aborted = false;
+        try
         {
-            logger.info("processing: " + file.getPath());
-            PomWrapper pom = openFile(file);
-            if (pom != null)
+            if ((parallelism <= 1) || (files.size() <= 1))
+            {
+                for (File file : files)
+                {
+                    recordResult(processFile(file, null));
+                }
+            }
+            else
             {
-                applyTransformations(pom);
-                new OutputHandler(args).writeOutput(pom.getDom(), file);
+                runParallel(files);
             }
+            writer.commit();
         }
+        catch (Exception ex)
+        {
+            writer.rollback();
+            throw ex;
+        }
+
+        logger.info("cleaned {} files ({} changed, {} unchanged); {} could not be parsed",
+                    cleanedFiles.size(), changedFiles.size(), cleanedFiles.size() - changedFiles.size(),
+                    unparseableFiles.size());
     }
 
 
@@ -78,8 +145,50 @@ public class Cleaner
     throws Exception
     {
         PomWrapper pom = new PomWrapper(ParseUtil.parse(in));
-        applyTransformations(pom);
-        new OutputHandler(args).writeOutput(pom.getDom(), out);
+        applyTransformations(pom, null);
+        outputHandler.writeOutput(pom.getDom(), out);
+    }
+
+
+    /**
+     *  Returns the files that were cleaned by {@link #run(List)}, in the order
+     *  they were passed.
+     */
+    public List<File> getCleanedFiles()
+    {
+        return Collections.unmodifiableList(cleanedFiles);
+    }
+
+
+    /**
+     *  Returns the files whose content was changed by {@link #run(List)}, in
+     *  the order they were passed. This is a subset of the cleaned files; the
+     *  others were not rewritten.
+     */
+    public List<File> getChangedFiles()
+    {
+        return Collections.unmodifiableList(changedFiles);
+    }
+
+
+    /**
+     *  Returns the files that {@link #run(List)} was unable to parse, in the
+     *  order they were passed.
+     */
+    public List<File> getUnparseableFiles()
+    {
+        return Collections.unmodifiableList(unparseableFiles);
+    }
+
+
+    /**
+     *  Returns the files that a failed concurrent {@link #run(List)} did not
+     *  write because another file had already failed, in the order they were
+     *  passed. Only files preceding the failed file are included.
+     */
+    public List<File> getSkippedFiles()
+    {
+        return Collections.unmodifiableList(skippedFiles);
     }
 
 
@@ -87,7 +196,152 @@ public class Cleaner
 //  Internals
 //----------------------------------------------------------------------------
 
-    private PomWrapper openFile(File file)
+    private static int parseParallelism(CommandLine args)
+    {
+        List<String> values = args.getOptionValues(CommandLine.Options.PARALLELISM);
+        if (values.isEmpty())
+            return 1;
+
+        String value = values.get(values.size() - 1);
+        try
+        {
+            int result = Integer.parseInt(value.trim());
+            if (result < 1)
+                throw new IllegalArgumentException("parallelism must be positive: " + value);
+            return result;
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid parallelism: " + value);
+        }
+    }
+
+
+    /**
+     *  Submits all files to a bounded pool, then collects the results in order.
+     */
+    private void runParallel(List<File> files)
+    throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>(files.size());
+        try
+        {
+            for (final File file : files)
+            {
+                futures.add(executor.submit(new Callable<FileResult>()
+                {
+                    @Override
+                    public FileResult call() throws Exception
+                    {
+                        return processFile(file, new DeferredLog());
+                    }
+                }));
+            }
+
+            for (Future<FileResult> future : futures)
+            {
+                try
+                {
+                    recordResult(future.get());
+                }
+                catch (ExecutionException ex)
+                {
+                    // processFile() captures its own exceptions, so this is unexpected
+                    Throwable cause = ex.getCause();
+                    throw (cause instanceof Exception) ? (Exception)cause : ex;
+                }
+            }
+        }
+        finally
+        {
+            // on failure, files that haven't started are cancelled; we wait for those
+            // in progress (without interrupting their I/O) so that nothing is written
+            // after the caller rolls back
+            for (Future<FileResult> future : futures)
+            {
+                future.cancel(false);
+            }
+            executor.shutdown();
+            while (! executor.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                logger.debug("waiting for in-progress files to finish");
+            }
+        }
+    }
+
+
+    /**
+     *  Parses, transforms, and writes a single file. If passed a deferred log,
+     *  all messages are written to it; otherwise they're written immediately.
+     *  Exceptions are returned in the result rather than thrown, so that they
+     *  can be reported after the messages that preceded them.
+     */
+    private FileResult processFile(File file, DeferredLog log)
+    {
+        FileResult result = new FileResult(file, log);
+        Logger fileLogger = (log != null) ? log.wrap(logger) : logger;
+
+        fileLogger.info("processing: " + file.getPath());
+        PomWrapper pom = openFile(file, fileLogger);
+        if (pom == null)
+            return result;
+
+        try
+        {
+            applyTransformations(pom, log);
+            if (aborted)
+            {
+                fileLogger.warn("not written, because another file failed: " + file.getPath());
+                result.skipped = true;
+                return result;
+            }
+            result.changed = outputHandler.writeOutput(pom.getDom(), file);
+            result.cleaned = true;
+            if (! result.changed)
+                fileLogger.info("unchanged: " + file.getPath());
+        }
+        catch (Exception ex)
+        {
+            // stops concurrent workers from writing any more files
+            aborted = true;
+            result.failure = ex;
+        }
+        return result;
+    }
+
+
+    /**
+     *  Writes a file's deferred log messages, and aggregates its result.
+     */
+    private void recordResult(FileResult result)
+    throws Exception
+    {
+        if (result.log != null)
+            result.log.replay();
+
+        if (result.failure != null)
+            throw result.failure;
+
+        if (result.skipped)
+        {
+            skippedFiles.add(result.file);
+            return;
+        }
+
+        if (! result.cleaned)
+        {
+            unparseableFiles.add(result.file);
+            return;
+        }
+
+        cleanedFiles.add(result.file);
+        if (result.changed)
+            changedFiles.add(result.file);
+    }
+
+
+    private PomWrapper openFile(File file, Logger fileLogger)
     {
         try
         {
@@ -95,17 +349,48 @@ public class Cleaner
         }
         catch (Exception ex)
         {
-            logger.warn("unable to parse file: " + file);
+            fileLogger.warn("unable to parse file: " + file);
             return null;
         }
     }
 
-    private void applyTransformations(PomWrapper pom)
+
+    private void applyTransformations(PomWrapper pom, DeferredLog log)
     throws Exception
     {
-        new InsertCommonProperties(pom, args).transform();
-        new NormalizeDependencies(pom, args).transform();
-        new SortDependencies(pom, args).transform();
-        new ReplaceExplicitVersionsWithProperties(pom, args).transform();
+        AbstractTransformer[] transformers = new AbstractTransformer[]
+        {
+            new InsertCommonProperties(pom, args),
+            new NormalizeDependencies(pom, args),
+            new SortDependencies(pom, args),
+            new ReplaceExplicitVersionsWithProperties(pom, args)
+        };
+
+        for (AbstractTransformer transformer : transformers)
+        {
+            if (log != null)
+                transformer.setLogger(log.wrap(transformer.getLogger()));
+            transformer.transform();
+        }
+    }
+
+
+    /**
+     *  The outcome of processing a single file.
+     */
+    private static class FileResult
+    {
+        public File file;
+        public DeferredLog log;
+        public boolean cleaned;
+        public boolean changed;
+        public boolean skipped;
+        public Exception failure;
+
+        public FileResult(File file, DeferredLog log)
+        {
+            this.file = file;
+            this.log = log;
+        }
     }
 }
@@ -40,7 +40,8 @@ extends SimpleCLIParser
         ORGANIZE_POM, PRETTY_PRINT, COMMON_PROPS,
         DEPENDENCY_NORMALIZE, DEPENDENCY_SORT, DEPENDENCY_SORT_BY_SCOPE,
         VERSION_PROPS, VP_REPLACE_EXISTING, VP_ARTIFACT_ID,
-        VP_CONVERT_PLUGINS, PLUGIN_NORMALIZE
+        VP_CONVERT_PLUGINS, PLUGIN_NORMALIZE, PARALLELISM,
+        FSYNC, ALL_OR_NOTHING
     }
 
 
@@ -100,7 +101,21 @@ extends SimpleCLIParser
                 "--pluginNormalize", "--noPluginNormalize", true,
                 "Ensure that the children of a <plugin> element follow the order shown"
                 + " in the Maven POM documentation, and adds an explicit <groupId> if"
-                + " the specification is relying on the default.")
+                + " the specification is relying on the default."),
+        new OptionDefinition(
+                Options.PARALLELISM, "--parallelism", 1,
+                "Number of files to clean concurrently; default is 1 (one at a time). If a file"
+                + " fails, files after it may or may not have been cleaned, unless --allOrNothing"
+                + " is also used."),
+        new OptionDefinition(
+                Options.FSYNC,
+                "--fsync", "--noFsync", false,
+                "Sync each cleaned POM to disk before it replaces the original."),
+        new OptionDefinition(
+                Options.ALL_OR_NOTHING,
+                "--allOrNothing", "--noAllOrNothing", false,
+                "Don't replace any POM until all have been cleaned; if any fails, all"
+                + " are left unchanged.")
     };
 
     private static Map<Object,OptionDefinition> optionDefsByKey = new HashMap<Object,OptionDefinition>();
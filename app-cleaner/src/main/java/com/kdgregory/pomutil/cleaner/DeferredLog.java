@@ -0,0 +1,128 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.cleaner;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+
+/**
+ *  Collects the log messages for a single file, so that they can be written
+ *  after the file has been processed. This is used when files are processed
+ *  concurrently: each worker logs to its own instance, and the cleaner replays
+ *  them in file order, so that the log reads the same as a sequential run.
+ *  <p>
+ *  Messages are captured by wrapping the original loggers with a proxy; when
+ *  replayed, they are written by the original logger, so retain its name and
+ *  configuration. Level checks (eg, <code>isDebugEnabled()</code>) are passed
+ *  directly to the original logger.
+ */
+class DeferredLog
+{
+    private List<Entry> entries = new ArrayList<Entry>();
+
+
+    /**
+     *  Returns a logger that records its messages in this log.
+     */
+    public Logger wrap(final Logger target)
+    {
+        return (Logger)Proxy.newProxyInstance(
+                Logger.class.getClassLoader(),
+                new Class<?>[] { Logger.class },
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable
+                    {
+                        if ((method.getReturnType() != Void.TYPE) || (method.getDeclaringClass() == Object.class))
+                            return invokeTarget(target, method, args);
+
+                        synchronized (entries)
+                        {
+                            entries.add(new Entry(target, method, args));
+                        }
+                        return null;
+                    }
+                });
+    }
+
+
+    /**
+     *  Writes all recorded messages, in the order that they were recorded, and
+     *  clears this log.
+     */
+    public void replay()
+    {
+        List<Entry> toReplay;
+        synchronized (entries)
+        {
+            toReplay = new ArrayList<Entry>(entries);
+            entries.clear();
+        }
+
+        for (Entry entry : toReplay)
+        {
+            try
+            {
+                invokeTarget(entry.target, entry.method, entry.args);
+            }
+            catch (Throwable ex)
+            {
+                // logging shouldn't fail, and if it does there's nowhere to report it
+            }
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static Object invokeTarget(Logger target, Method method, Object[] args)
+    throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+
+
+    private static class Entry
+    {
+        public Logger target;
+        public Method method;
+        public Object[] args;
+
+        public Entry(Logger target, Method method, Object[] args)
+        {
+            this.target = target;
+            this.method = method;
+            this.args = args;
+        }
+    }
+}
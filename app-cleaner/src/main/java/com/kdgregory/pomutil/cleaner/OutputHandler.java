@@ -14,37 +14,44 @@
 
 package com.kdgregory.pomutil.cleaner;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.List;
 
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
 import org.w3c.dom.Document;
 
-import net.sf.kdgcommons.io.IOUtil;
-import net.sf.practicalxml.DomUtil;
-import net.sf.practicalxml.OutputUtil;
+import com.kdgregory.pomutil.util.AtomicFileWriter;
+import com.kdgregory.pomutil.util.PomSerializer;
 
 
 /**
  *  Responsible for generating output, applying any transformations (such
  *  as pretty-printing) specified via command-line arguments.
+ *  <p>
+ *  Instances are thread-safe, and should be reused: the serializer is
+ *  configured once, when the handler is constructed.
  */
 public class OutputHandler
 {
-    private CommandLine args;
+    private AtomicFileWriter writer;
+    private PomSerializer serializer;
 
 
     public OutputHandler(CommandLine args)
     {
-        this.args = args;
+        this(args, new AtomicFileWriter());
+    }
+
+
+    /**
+     *  Creates an instance that uses the provided writer for file output. This
+     *  allows the caller to commit or roll back a set of files.
+     */
+    public OutputHandler(CommandLine args, AtomicFileWriter writer)
+    {
+        this.writer = writer;
+        this.serializer = createSerializer(args);
     }
 
 
@@ -53,37 +60,31 @@ public class OutputHandler
 //----------------------------------------------------------------------------
 
     /**
-     *  Post-processes the passed DOM as specified by the invocation arguments
-     *  and writes it to the specified file. Overwrites any previous contents.
+     *  Serializes the passed DOM as specified by the invocation arguments and
+     *  writes it to the specified file, replacing any previous contents. If the
+     *  file already contains the output it is not written, so that its
+     *  modification time is unchanged. Returns <code>true</code> if the file
+     *  was written.
+     *  <p>
+     *  The file is replaced atomically: if this method throws, the original
+     *  file is unchanged.
      */
-    public void writeOutput(Document dom, File file)
+    public boolean writeOutput(Document dom, File file)
     throws IOException
     {
-        FileOutputStream out = null;
-        try
-        {
-            out = new FileOutputStream(file);
-            writeOutput(dom, out);
-        }
-        finally
-        {
-            IOUtil.closeQuietly(out);
-        }
+        return writer.write(file, serializer.toBytes(dom));
     }
 
 
     /**
-     *  Post-processes the passed DOM as specified by the invocation arguments
-     *  and writes it to the specified stream. Caller is responsible for closing
-     *  the stream.
+     *  Serializes the passed DOM as specified by the invocation arguments and
+     *  writes it to the specified stream. Caller is responsible for closing the
+     *  stream.
      */
-    public void writeOutput(Document dom, OutputStream out0)
+    public void writeOutput(Document dom, OutputStream out)
     throws IOException
     {
-        dom = postProcess(dom);
-
-        Writer out = new BufferedWriter(new OutputStreamWriter(out0, "UTF-8"));
-        writeOutput(dom, out);
+        out.write(serializer.toBytes(dom));
         out.flush();
     }
 
@@ -93,37 +94,18 @@ public class OutputHandler
 //----------------------------------------------------------------------------
 
     /**
-     *  Performs any final transformations on the DOM. Currently, this consists
-     *  of removing any existing inter-element whitespace (which messes up the
-     *  pretty-printing).
+     *  When pretty-printing, the serializer ignores any existing inter-element
+     *  whitespace (which would otherwise mess up the indentation).
      */
-    private Document postProcess(Document dom)
-    {
-        if (args.isOptionEnabled(CommandLine.Options.PRETTY_PRINT))
-        {
-            DomUtil.removeEmptyTextRecursive(dom.getDocumentElement());
-        }
-        return dom;
-    }
-
-
-    /**
-     *  The actual output routine.
-     */
-    private void writeOutput(Document dom, Writer out)
-    throws IOException
+    private static PomSerializer createSerializer(CommandLine args)
     {
-        if (args.isOptionEnabled(CommandLine.Options.PRETTY_PRINT))
-        {
-            List<String> indentLevel = args.getOptionValues(CommandLine.Options.PRETTY_PRINT);
-            int indent = indentLevel.size() > 0
-                       ? Integer.parseInt(indentLevel.get(0), 10)
-                       : 4;
-            OutputUtil.indented(new DOMSource(dom), new StreamResult(out), indent);
-        }
-        else
-        {
-            OutputUtil.compact(new DOMSource(dom), new StreamResult(out));
-        }
+        if (! args.isOptionEnabled(CommandLine.Options.PRETTY_PRINT))
+            return PomSerializer.compact();
+
+        List<String> indentLevel = args.getOptionValues(CommandLine.Options.PRETTY_PRINT);
+        int indent = indentLevel.size() > 0
+                   ? Integer.parseInt(indentLevel.get(0), 10)
+                   : 4;
+        return PomSerializer.indented(indent);
     }
 }
@@ -18,6 +18,9 @@ import java.util.List;
 
 import org.w3c.dom.Element;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.kdgregory.pomutil.cleaner.CommandLine;
 import com.kdgregory.pomutil.util.PomPaths;
 import com.kdgregory.pomutil.util.PomWrapper;
@@ -33,6 +36,8 @@ import com.kdgregory.pomutil.util.PomWrapper;
  */
 public abstract class AbstractTransformer
 {
+    protected Logger logger = LoggerFactory.getLogger(getClass());
+
     protected PomWrapper pom;
     protected CommandLine args;
 
@@ -43,6 +48,29 @@ public abstract class AbstractTransformer
     }
 
 
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the logger used by this transformer.
+     */
+    public Logger getLogger()
+    {
+        return logger;
+    }
+
+
+    /**
+     *  Replaces the logger used by this transformer. The cleaner uses this to
+     *  defer log messages when it processes multiple files concurrently.
+     */
+    public void setLogger(Logger logger)
+    {
+        this.logger = logger;
+    }
+
+
 //----------------------------------------------------------------------------
 //  Methods for subclases to use
 //----------------------------------------------------------------------------
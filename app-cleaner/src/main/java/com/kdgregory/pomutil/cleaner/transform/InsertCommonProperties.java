@@ -17,9 +17,6 @@ package com.kdgregory.pomutil.cleaner.transform;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import net.sf.kdgcommons.collections.MapBuilder;
 import net.sf.kdgcommons.lang.StringUtil;
 
@@ -33,8 +30,6 @@ import com.kdgregory.pomutil.util.PomWrapper;
 public class InsertCommonProperties
 extends AbstractTransformer
 {
-    Logger logger = LoggerFactory.getLogger(getClass());
-
     private static Map<String,String> COMMON_PROPS = new MapBuilder<String,String>(new TreeMap<String,String>())
                                                      .put("project.build.sourceEncoding",       "UTF-8")
                                                      .put("project.reporting.outputEncoding",   "UTF-8")
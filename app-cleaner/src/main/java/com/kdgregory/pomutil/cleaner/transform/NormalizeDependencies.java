@@ -4,9 +4,6 @@ import java.util.Map;
 
 import org.w3c.dom.Element;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import net.sf.practicalxml.DomUtil;
 
 import com.kdgregory.pomutil.cleaner.CommandLine;
@@ -21,8 +18,6 @@ import com.kdgregory.pomutil.util.Utils;
 public class NormalizeDependencies
 extends AbstractTransformer
 {
-    Logger logger = LoggerFactory.getLogger(getClass());
-
     private static final String[] STANDARD_CHILDREN = new String[] {
            "groupId", "artifactId", "version",
            "classifier", "type", "scope",
@@ -22,9 +22,6 @@ import java.util.TreeSet;
 
 import org.w3c.dom.Element;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import net.sf.kdgcommons.lang.StringUtil;
 import net.sf.practicalxml.DomUtil;
 
@@ -40,8 +37,6 @@ import com.kdgregory.pomutil.util.PomWrapper;
 public class ReplaceExplicitVersionsWithProperties
 extends AbstractTransformer
 {
-    Logger logger = LoggerFactory.getLogger(getClass());
-
 
 //----------------------------------------------------------------------------
 //  Instance variables and constructors
@@ -19,9 +19,6 @@ import java.util.TreeMap;
 
 import org.w3c.dom.Element;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import net.sf.practicalxml.DomUtil;
 
 import com.kdgregory.pomutil.cleaner.CommandLine;
@@ -37,8 +34,6 @@ import com.kdgregory.pomutil.util.PomWrapper;
 public class SortDependencies
 extends AbstractTransformer
 {
-    Logger logger = LoggerFactory.getLogger(getClass());
-
     private boolean disabled;
     private boolean orderbyScope;
 
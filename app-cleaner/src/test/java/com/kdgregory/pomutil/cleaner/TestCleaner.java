@@ -0,0 +1,260 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.cleaner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+import com.kdgregory.pomutil.util.AtomicFileWriter;
+
+
+public class TestCleaner
+{
+    private final static String[] TEST_POMS =
+    {
+        "CommonProps1.xml", "DependencyNormalize1.xml", "DependencySort1.xml",
+        "PluginNormalize1.xml", "VersionProps1.xml"
+    };
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Copies the test POMs into a new directory, returning the copies in the
+     *  same order as the source list.
+     */
+    private List<File> copyPoms(String dirName)
+    throws Exception
+    {
+        File dir = tempDir.newFolder(dirName);
+        List<File> result = new ArrayList<File>();
+        for (String name : TEST_POMS)
+        {
+            File file = new File(dir, name);
+            InputStream in = getClass().getClassLoader().getResourceAsStream("cleaner/" + name);
+            FileOutputStream out = new FileOutputStream(file);
+            try
+            {
+                IOUtil.copy(in, out);
+            }
+            finally
+            {
+                IOUtil.closeQuietly(in);
+                IOUtil.closeQuietly(out);
+            }
+            result.add(file);
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testParallelOutputMatchesSequential() throws Exception
+    {
+        List<File> sequentialFiles = copyPoms("sequential");
+        Cleaner sequential = new Cleaner(new CommandLine("--parallelism=1"));
+        sequential.run(sequentialFiles);
+
+        List<File> parallelFiles = copyPoms("parallel");
+        Cleaner parallel = new Cleaner(new CommandLine("--parallelism=4"));
+        parallel.run(parallelFiles);
+
+        assertEquals("sequential cleaned files", sequentialFiles, sequential.getCleanedFiles());
+        assertEquals("parallel cleaned files",   parallelFiles, parallel.getCleanedFiles());
+
+        for (int ii = 0 ; ii < TEST_POMS.length ; ii++)
+        {
+            byte[] expected = Files.readAllBytes(sequentialFiles.get(ii).toPath());
+            byte[] actual = Files.readAllBytes(parallelFiles.get(ii).toPath());
+            assertTrue("output matches for " + TEST_POMS[ii], Arrays.equals(expected, actual));
+        }
+    }
+
+
+    @Test
+    public void testSecondRunDoesNotChangeFiles() throws Exception
+    {
+        List<File> files = copyPoms("poms");
+
+        Cleaner cleaner1 = new Cleaner(new CommandLine());
+        cleaner1.run(files);
+        assertEquals("first run changed files", files, cleaner1.getChangedFiles());
+
+        Cleaner cleaner2 = new Cleaner(new CommandLine());
+        cleaner2.run(files);
+        assertEquals("second run cleaned files", files, cleaner2.getCleanedFiles());
+        assertEquals("second run changed files", 0, cleaner2.getChangedFiles().size());
+    }
+
+
+    @Test
+    public void testAllOrNothing() throws Exception
+    {
+        List<File> files = copyPoms("poms");
+
+        Cleaner cleaner = new Cleaner(new CommandLine("--allOrNothing", "--fsync"));
+        cleaner.run(files);
+
+        assertEquals("changed files", files, cleaner.getChangedFiles());
+        assertEquals("no temporary files left", files.size(), files.get(0).getParentFile().list().length);
+    }
+
+
+    @Test
+    public void testParallelAllOrNothingFailure() throws Exception
+    {
+        final List<File> files = copyPoms("poms");
+        List<byte[]> originals = new ArrayList<byte[]>();
+        for (File file : files)
+        {
+            originals.add(Files.readAllBytes(file.toPath()));
+        }
+
+        // the first file fails immediately; the others are still being written
+        // when the failure is reported
+        AtomicFileWriter writer = new AtomicFileWriter(false, true)
+        {
+            @Override
+            public boolean write(File file, byte[] content) throws IOException
+            {
+                if (file.equals(files.get(0)))
+                    throw new IOException("simulated failure");
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException ex)
+                {
+                    // file I/O isn't interruptible, so neither is this
+                }
+                return super.write(file, content);
+            }
+        };
+
+        Cleaner cleaner = new Cleaner(new CommandLine("--parallelism=" + files.size()), writer);
+        try
+        {
+            cleaner.run(files);
+            fail("run() should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertEquals("exception message", "simulated failure", ex.getMessage());
+        }
+
+        assertEquals("no temporary files left", files.size(), files.get(0).getParentFile().list().length);
+        for (int ii = 0 ; ii < files.size() ; ii++)
+        {
+            assertArrayEquals("file unchanged: " + files.get(ii), originals.get(ii), Files.readAllBytes(files.get(ii).toPath()));
+        }
+    }
+
+
+    @Test
+    public void testParallelFailureSkipsEarlierFiles() throws Exception
+    {
+        final List<File> files = copyPoms("poms").subList(0, 2);
+
+        // the first file is large enough that the second fails before it's transformed
+        StringBuilder pom = new StringBuilder(16 * 1024 * 1024)
+                            .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                            .append("    <modelVersion>4.0.0</modelVersion>\n")
+                            .append("    <description>\n");
+        for (int ii = 0 ; ii < 256 * 1024 ; ii++)
+        {
+            pom.append("        a very long description, with a lot of repeated text in it\n");
+        }
+        pom.append("    </description>\n")
+           .append("</project>\n");
+        Files.write(files.get(0).toPath(), pom.toString().getBytes("UTF-8"));
+        byte[] original = Files.readAllBytes(files.get(0).toPath());
+
+        AtomicFileWriter writer = new AtomicFileWriter(false, false)
+        {
+            @Override
+            public boolean write(File file, byte[] content) throws IOException
+            {
+                if (file.equals(files.get(1)))
+                    throw new IOException("simulated failure");
+                return super.write(file, content);
+            }
+        };
+
+        Cleaner cleaner = new Cleaner(new CommandLine("--parallelism=2"), writer);
+        try
+        {
+            cleaner.run(files);
+            fail("run() should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertEquals("exception message", "simulated failure", ex.getMessage());
+        }
+
+        assertEquals("skipped files",       Arrays.asList(files.get(0)), cleaner.getSkippedFiles());
+        assertEquals("unparseable files",   0, cleaner.getUnparseableFiles().size());
+        assertEquals("cleaned files",       0, cleaner.getCleanedFiles().size());
+        assertArrayEquals("skipped file unchanged", original, Files.readAllBytes(files.get(0).toPath()));
+    }
+
+
+    @Test
+    public void testUnparseableFile() throws Exception
+    {
+        List<File> files = copyPoms("poms");
+
+        File bogus = tempDir.newFile("bogus.xml");
+        Files.write(bogus.toPath(), "this is not XML".getBytes("UTF-8"));
+        files.add(2, bogus);
+
+        Cleaner cleaner = new Cleaner(new CommandLine("--parallelism=3"));
+        cleaner.run(files);
+
+        assertEquals("cleaned files",     TEST_POMS.length, cleaner.getCleanedFiles().size());
+        assertEquals("unparseable files", Arrays.asList(bogus), cleaner.getUnparseableFiles());
+        assertEquals("unparseable file not changed",
+                     "this is not XML",
+                     new String(Files.readAllBytes(bogus.toPath()), "UTF-8"));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidParallelism() throws Exception
+    {
+        new Cleaner(new CommandLine("--parallelism=0"));
+    }
+}
@@ -58,6 +58,8 @@ public class TestCommandLine
             "--dependencySort",
             "--noGroupDependenciesByScope",
             "--pluginNormalize",
+            "--noFsync",
+            "--noAllOrNothing",
             "test.xml"
            );
     }
@@ -70,6 +72,7 @@ public class TestCommandLine
                                           "--noCommonProps", "--noVersionProps", "--replaceExistingProps",
                                           "--noConvertPluginVersions", "--noPluginNormalize",
                                           "--noDependencyNormalize", "--noDependencySort", "--groupDependenciesByScope",
+                                          "--fsync", "--allOrNothing",
                                           "test.xml");
 
         assertTrue(ORGANIZE_POM.toString(),             cmd.isOptionEnabled(ORGANIZE_POM));
@@ -82,6 +85,8 @@ public class TestCommandLine
         assertFalse(DEPENDENCY_NORMALIZE.toString(),    cmd.isOptionEnabled(DEPENDENCY_NORMALIZE));
         assertFalse(DEPENDENCY_SORT.toString(),         cmd.isOptionEnabled(DEPENDENCY_SORT));
         assertTrue(DEPENDENCY_SORT_BY_SCOPE.toString(), cmd.isOptionEnabled(DEPENDENCY_SORT_BY_SCOPE));
+        assertTrue(FSYNC.toString(),                    cmd.isOptionEnabled(FSYNC));
+        assertTrue(ALL_OR_NOTHING.toString(),           cmd.isOptionEnabled(ALL_OR_NOTHING));
 
         assertEquals(VP_ARTIFACT_ID.toString(),         Collections.emptyList(),
                                                         cmd.getOptionValues(VP_ARTIFACT_ID));
@@ -100,6 +105,8 @@ public class TestCommandLine
             "--noDependencyNormalize",
             "--noDependencySort",
             "--groupDependenciesByScope",
+            "--fsync",
+            "--allOrNothing",
             "test.xml"
            );
     }
@@ -138,6 +145,8 @@ public class TestCommandLine
             "--dependencySort",
             "--noGroupDependenciesByScope",
             "--pluginNormalize",
+            "--noFsync",
+            "--noAllOrNothing",
             "--addArtifactIdToProp",
             "com.example",
             "test.xml"
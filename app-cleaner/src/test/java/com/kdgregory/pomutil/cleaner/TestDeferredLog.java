@@ -0,0 +1,74 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.cleaner;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestDeferredLog
+{
+    @Test
+    public void testMessagesAreDeferredAndReplayedInOrder() throws Exception
+    {
+        final List<String> messages = new ArrayList<String>();
+        final Logger delegate = LoggerFactory.getLogger(getClass());
+        Logger target = (Logger)Proxy.newProxyInstance(
+                Logger.class.getClassLoader(),
+                new Class<?>[] { Logger.class },
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable
+                    {
+                        if (method.getName().equals("isDebugEnabled"))
+                            return Boolean.TRUE;
+                        if (method.getReturnType() != Void.TYPE)
+                            return method.invoke(delegate, args);
+                        messages.add(method.getName() + ": " + args[0]);
+                        return null;
+                    }
+                });
+
+        DeferredLog log = new DeferredLog();
+        Logger wrapped = log.wrap(target);
+
+        wrapped.info("first");
+        wrapped.warn("second");
+        wrapped.debug("third");
+
+        assertTrue("level check passed to target", wrapped.isDebugEnabled());
+        assertEquals("nothing written before replay", 0, messages.size());
+
+        log.replay();
+        assertEquals("messages after replay", 3, messages.size());
+        assertEquals("first message",  "info: first",  messages.get(0));
+        assertEquals("second message", "warn: second", messages.get(1));
+        assertEquals("third message",  "debug: third", messages.get(2));
+
+        log.replay();
+        assertEquals("log cleared by replay", 3, messages.size());
+    }
+}
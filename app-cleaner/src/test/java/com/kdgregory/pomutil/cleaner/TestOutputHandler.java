@@ -108,4 +108,21 @@ public class TestOutputHandler
         assertEquals(src.length(), dest.length());
     }
 
+
+    @Test
+    public void testUnchangedFileNotWritten() throws Exception
+    {
+        CommandLine args = new CommandLine("--noPrettyPrint");
+
+        String src = "<root><child>value</child></root>";
+        Document dom = ParseUtil.parse(src);
+
+        File dest = IOUtil.createTempFile("testUnchangedFileNotWritten", 0);
+        assertTrue("first write", new OutputHandler(args).writeOutput(dom, dest));
+
+        dest.setLastModified(10000);
+        assertFalse("second write", new OutputHandler(args).writeOutput(dom, dest));
+        assertEquals("modification time", 10000, dest.lastModified());
+    }
+
 }
@@ -0,0 +1,133 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+
+/**
+ *  A symbol table that assigns dense integer IDs to classnames. This allows
+ *  sets of classes to be represented as <code>BitSet</code>s, so that set
+ *  operations are word-wise rather than string comparisons, and each name
+ *  is stored once no matter how many sets it belongs to.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class ClassNameTable
+{
+    private Map<String,Integer> ids = new HashMap<String,Integer>();
+    private List<String> names = new ArrayList<String>();
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the ID for the specified name, assigning a new ID if the name
+     *  has not been seen before.
+     */
+    public synchronized int intern(String name)
+    {
+        Integer id = ids.get(name);
+        if (id == null)
+        {
+            id = Integer.valueOf(names.size());
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id.intValue();
+    }
+
+
+    /**
+     *  Returns the ID for the specified name, -1 if the name has not been interned.
+     */
+    public synchronized int getId(String name)
+    {
+        Integer id = ids.get(name);
+        return (id == null) ? -1 : id.intValue();
+    }
+
+
+    /**
+     *  Returns the name corresponding to an ID.
+     *
+     *  @throws IndexOutOfBoundsException if the ID was not returned by this table.
+     */
+    public synchronized String getName(int id)
+    {
+        return names.get(id);
+    }
+
+
+    /**
+     *  Returns the number of names in this table.
+     */
+    public synchronized int size()
+    {
+        return names.size();
+    }
+
+
+    /**
+     *  Interns all of the passed names, returning their IDs as a bitset.
+     */
+    public synchronized BitSet internAll(Collection<String> values)
+    {
+        BitSet result = new BitSet(names.size() + values.size());
+        for (String value : values)
+        {
+            result.set(intern(value));
+        }
+        return result;
+    }
+
+
+    /**
+     *  Interns all of the passed names, returning their IDs in iteration order.
+     */
+    public synchronized int[] internEach(Collection<String> values)
+    {
+        int[] result = new int[values.size()];
+        int idx = 0;
+        for (String value : values)
+        {
+            result[idx++] = intern(value);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Converts a bitset of IDs into a sorted set of names.
+     */
+    public synchronized SortedSet<String> toNames(BitSet idSet)
+    {
+        SortedSet<String> result = new TreeSet<String>();
+        for (int id = idSet.nextSetBit(0) ; id >= 0 ; id = idSet.nextSetBit(id + 1))
+        {
+            result.add(names.get(id));
+        }
+        return result;
+    }
+}
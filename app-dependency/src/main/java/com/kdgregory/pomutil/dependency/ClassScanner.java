@@ -14,47 +14,161 @@
 
 package com.kdgregory.pomutil.dependency;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-
-import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.JavaClass;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sf.kdgcommons.io.IOUtil;
 
-import com.kdgregory.bcelx.classfile.ClassfileUtil;
-
 
 /**
- *  Extracts the referenced classes from a single classfile or directory tree.
+ *  Extracts the referenced classes from a single classfile, directory tree, or
+ *  packaged archive (JAR, WAR, or EAR). Directory trees may be scanned in
+ *  parallel, in which case each worker accumulates its own results and they're
+ *  merged at the end.
+ *  <p>
+ *  Archives are read as a stream, without extracting them to disk. Archives
+ *  nested within the archive are also streamed, except for bundled libraries
+ *  (eg, <code>WEB-INF/lib</code>), which are only read if the caller asks to
+ *  include them.
+ *  <p>
+ *  Optionally, the scanner records the classes referenced by each individual
+ *  class, so that callers can determine which classes are responsible for a
+ *  reference. These are interned as they're parsed, and held as arrays of
+ *  class IDs, so memory is one int per reference.
  */
 public class ClassScanner
 {
     private Logger logger = LoggerFactory.getLogger(getClass());
 
+    // the number of classfiles that a single parallel task will process
+    private final static int FILES_PER_TASK = 32;
+
+    // nested archives under these paths are bundled dependencies, not project code
+    private final static String[] LIBRARY_PREFIXES = { "WEB-INF/lib/", "BOOT-INF/lib/", "lib/" };
+
     // we use TreeSet because it's easier to examine in a debugger, and the
     // performance difference vs HashSet doesn't matter here
 
     private Set<String> processedClasses = new TreeSet<String>();
     private Set<String> referencedClasses = new TreeSet<String>();
 
+    private ClassfileCache cache;
+    private boolean includeLibraries;
+
+    // if recording, maps each processed class to the classes that it references, by ID
+    private ClassNameTable symbols;
+    private Map<Integer,int[]> classReferences;
+
 
     /**
      *  Convenience constructor, to read classfile from filesystem. May be
      *  passed a single file or the root of a directory tree (which is processed
-     *  recursively).
+     *  recursively), or a packaged archive (whose bundled libraries are not
+     *  read).
      */
     public ClassScanner(File file)
     throws IOException
     {
-        processTreeOrFile(file);
+        this(file, 1);
+    }
+
+
+    /**
+     *  Reads a single classfile or directory tree, parsing classfiles on up to
+     *  <code>parallelism</code> threads. A value of 1 (or less) processes all
+     *  files on the calling thread.
+     */
+    public ClassScanner(File file, int parallelism)
+    throws IOException
+    {
+        this(file, parallelism, null);
+    }
+
+
+    /**
+     *  Reads a single classfile or directory tree, using the passed cache to
+     *  avoid parsing classfiles that haven't changed since the cache was saved.
+     *  The cache may be <code>null</code>, in which case all files are parsed.
+     *  The caller is responsible for saving the cache.
+     */
+    public ClassScanner(File file, int parallelism, ClassfileCache cache)
+    throws IOException
+    {
+        this(file, parallelism, cache, null);
+    }
+
+
+    /**
+     *  Reads a single classfile or directory tree, optionally recording the
+     *  references made by each class (see {@link #getClassReferences}). To
+     *  record, pass the symbol table used to assign class IDs; if not, pass
+     *  <code>null</code>.
+     */
+    public ClassScanner(File file, int parallelism, ClassfileCache cache, ClassNameTable symbols)
+    throws IOException
+    {
+        this.cache = cache;
+        this.symbols = symbols;
+        if (symbols != null)
+            classReferences = new HashMap<Integer,int[]>();
+
+        if (isArchive(file.getName()) && file.isFile())
+            processArchive(file);
+        else if (parallelism > 1)
+            processParallel(file, parallelism);
+        else
+            processTreeOrFile(file);
+    }
+
+
+    /**
+     *  Reads a packaged archive, optionally ignoring any nested archives that
+     *  hold bundled libraries (<code>WEB-INF/lib</code> for a WAR, or
+     *  <code>lib</code> for an EAR).
+     */
+    public ClassScanner(File archive, boolean includeLibraries)
+    throws IOException
+    {
+        this(archive, includeLibraries, null);
+    }
+
+
+    /**
+     *  Reads a packaged archive, optionally recording the references made by
+     *  each class (if passed a symbol table).
+     */
+    public ClassScanner(File archive, boolean includeLibraries, ClassNameTable symbols)
+    throws IOException
+    {
+        this.includeLibraries = includeLibraries;
+        this.symbols = symbols;
+        if (symbols != null)
+            classReferences = new HashMap<Integer,int[]>();
+        processArchive(archive);
     }
 
 
@@ -80,6 +194,18 @@ public class ClassScanner
     }
 
 
+    /**
+     *  Returns the IDs of the classes referenced by each processed class, keyed
+     *  by the ID of the referencing class. IDs are from the symbol table passed
+     *  to the constructor. Empty unless the scanner was constructed to record
+     *  references.
+     */
+    public Map<Integer,int[]> getClassReferences()
+    {
+        return (classReferences != null) ? classReferences : new HashMap<Integer,int[]>();
+    }
+
+
 //----------------------------------------------------------------------------
 //  Internals
 //----------------------------------------------------------------------------
@@ -98,23 +224,268 @@ public class ClassScanner
         else if (filename.endsWith(".class"))
         {
             logger.debug("processing {}", filename);
-            processStream(new FileInputStream(file), filename);
+            processClassfile(file.toPath(), cache, processedClasses, referencedClasses, symbols, classReferences);
+        }
+    }
+
+
+    private void processParallel(File file, int parallelism)
+    throws IOException
+    {
+        List<Path> classfiles = findClassfiles(file.toPath());
+        logger.debug("processing {} classfiles with parallelism {}", classfiles.size(), parallelism);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            ScanResult result = pool.invoke(new ScanTask(classfiles, 0, classfiles.size(), cache, symbols));
+            processedClasses.addAll(result.processedClasses);
+            referencedClasses.addAll(result.referencedClasses);
+            if (classReferences != null)
+                classReferences.putAll(result.classReferences);
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+        finally
+        {
+            pool.shutdown();
         }
     }
 
 
-    private void processStream(InputStream in, String name)
+    private void processArchive(File file)
     throws IOException
     {
+        logger.debug("processing archive {}", file);
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
         try
         {
-            JavaClass parsedClass = new ClassParser(in, name).parse();
-            processedClasses.add(parsedClass.getClassName().replace('$', '.'));
-            referencedClasses.addAll(ClassfileUtil.extractReferencedClasses(parsedClass));
+            processArchive(in, file.getPath());
         }
         finally
         {
             IOUtil.closeQuietly(in);
         }
     }
+
+
+    /**
+     *  Reads all entries from an archive stream, recursing into nested archives.
+     *  The caller is responsible for closing the stream; nested streams are not
+     *  closed, as that would close their parent.
+     */
+    private void processArchive(InputStream in, String archiveName)
+    throws IOException
+    {
+        ZipInputStream zin = new ZipInputStream(in);
+        for (ZipEntry entry = zin.getNextEntry() ; entry != null ; entry = zin.getNextEntry())
+        {
+            String name = entry.getName();
+            if (entry.isDirectory())
+                continue;
+
+            if (name.endsWith(".class"))
+            {
+                // module descriptors aren't classes, and versioned entries duplicate the base entries
+                if (name.endsWith("module-info.class") || name.startsWith("META-INF/versions/"))
+                    continue;
+
+                try
+                {
+                    Set<String> references = (classReferences != null) ? new HashSet<String>() : referencedClasses;
+                    String className = ClassfileParser.parse(readEntry(zin, entry), references);
+                    addResult(className, references, processedClasses, referencedClasses, symbols, classReferences);
+                }
+                catch (IOException ex)
+                {
+                    throw new IOException("unable to parse " + archiveName + "!" + name + ": " + ex.getMessage(), ex);
+                }
+            }
+            else if (isArchive(name))
+            {
+                if (! includeLibraries && isLibrary(name))
+                    continue;
+
+                logger.debug("processing nested archive {}", name);
+                processArchive(zin, archiveName + "!" + name);
+            }
+        }
+    }
+
+
+    private static byte[] readEntry(ZipInputStream zin, ZipEntry entry)
+    throws IOException
+    {
+        long size = entry.getSize();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((size > 0) ? (int)size : 8192);
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = zin.read(buf)) > 0)
+        {
+            out.write(buf, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+
+    private static boolean isArchive(String filename)
+    {
+        return filename.endsWith(".jar") || filename.endsWith(".war") || filename.endsWith(".ear");
+    }
+
+
+    private static boolean isLibrary(String entryName)
+    {
+        for (String prefix : LIBRARY_PREFIXES)
+        {
+            if (entryName.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+
+    private static List<Path> findClassfiles(Path root)
+    throws IOException
+    {
+        final List<Path> result = new ArrayList<Path>();
+        if (! Files.exists(root))
+            return result;
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".class"))
+                    result.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+
+    private static void processClassfile(
+            Path file, ClassfileCache cache, Set<String> processed, Set<String> referenced,
+            ClassNameTable symbols, Map<Integer,int[]> classReferences)
+    throws IOException
+    {
+        Set<String> references = (classReferences != null) ? new HashSet<String>() : referenced;
+        try
+        {
+            String className = (cache != null)
+                             ? cache.parse(file, references)
+                             : ClassfileParser.parse(Files.readAllBytes(file), references);
+            addResult(className, references, processed, referenced, symbols, classReferences);
+        }
+        catch (IOException ex)
+        {
+            throw new IOException("unable to parse " + file + ": " + ex.getMessage(), ex);
+        }
+    }
+
+
+    /**
+     *  Adds the results of parsing a single class. If recording references, the
+     *  class was parsed into its own set, which must be merged into the combined
+     *  set and interned; otherwise it was parsed directly into the combined set.
+     */
+    private static void addResult(
+            String className, Set<String> references, Set<String> processed, Set<String> referenced,
+            ClassNameTable symbols, Map<Integer,int[]> classReferences)
+    {
+        processed.add(className);
+        if (classReferences != null)
+        {
+            referenced.addAll(references);
+            classReferences.put(Integer.valueOf(symbols.intern(className)), symbols.internEach(references));
+        }
+    }
+
+
+    /**
+     *  Holds the results from a single parallel task.
+     */
+    private static class ScanResult
+    {
+        public Set<String> processedClasses = new HashSet<String>();
+        public Set<String> referencedClasses = new HashSet<String>();
+        public Map<Integer,int[]> classReferences;
+
+        public ScanResult(boolean recordClassReferences)
+        {
+            if (recordClassReferences)
+                classReferences = new HashMap<Integer,int[]>();
+        }
+
+        /**
+         *  Merges the two results, returning whichever is larger (to minimize copying).
+         */
+        public static ScanResult merge(ScanResult r1, ScanResult r2)
+        {
+            ScanResult dst = (r1.referencedClasses.size() >= r2.referencedClasses.size()) ? r1 : r2;
+            ScanResult src = (dst == r1) ? r2 : r1;
+            dst.processedClasses.addAll(src.processedClasses);
+            dst.referencedClasses.addAll(src.referencedClasses);
+            if (dst.classReferences != null)
+                dst.classReferences.putAll(src.classReferences);
+            return dst;
+        }
+    }
+
+
+    /**
+     *  Processes a range of the classfile list, splitting it if it's too large.
+     *  I/O exceptions are rethrown as unchecked, and unwrapped by the caller.
+     */
+    private static class ScanTask
+    extends RecursiveTask<ScanResult>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private List<Path> files;
+        private int start;
+        private int end;
+        private ClassfileCache cache;
+        private ClassNameTable symbols;
+
+        public ScanTask(List<Path> files, int start, int end, ClassfileCache cache, ClassNameTable symbols)
+        {
+            this.files = files;
+            this.start = start;
+            this.end = end;
+            this.cache = cache;
+            this.symbols = symbols;
+        }
+
+        @Override
+        protected ScanResult compute()
+        {
+            if (end - start > FILES_PER_TASK)
+            {
+                int mid = (start + end) >>> 1;
+                ScanTask left = new ScanTask(files, start, mid, cache, symbols);
+                left.fork();
+                ScanResult rightResult = new ScanTask(files, mid, end, cache, symbols).compute();
+                return ScanResult.merge(left.join(), rightResult);
+            }
+
+            ScanResult result = new ScanResult(symbols != null);
+            for (int ii = start ; ii < end ; ii++)
+            {
+                try
+                {
+                    processClassfile(files.get(ii), cache, result.processedClasses, result.referencedClasses, symbols, result.classReferences);
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            return result;
+        }
+    }
 }
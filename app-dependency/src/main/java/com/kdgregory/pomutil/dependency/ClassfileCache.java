@@ -0,0 +1,280 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+
+/**
+ *  Retains the results of parsing classfiles between runs, so that an
+ *  incremental check only has to parse the files that changed. Entries are
+ *  keyed by path and validated against the file's size and timestamp; if
+ *  those don't match, the file's content hash is compared, so that a rebuild
+ *  that produces identical classfiles doesn't force them to be re-parsed.
+ *  <p>
+ *  Only the entries that are used (or added) during the current run are
+ *  written by {@link #save}, which drops the entries for deleted classfiles.
+ *  As with {@link com.kdgregory.pomutil.util.ClassIndex}, failure to read or
+ *  write the cache is logged and otherwise ignored.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class ClassfileCache
+{
+    private static Logger logger = LoggerFactory.getLogger(ClassfileCache.class);
+
+    private final static String HEADER = "pomutil-classfile-cache 1";
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private File cacheFile;
+    private Map<String,Entry> loadedEntries = new ConcurrentHashMap<String,Entry>();
+    private Map<String,Entry> currentEntries = new ConcurrentHashMap<String,Entry>();
+
+    private AtomicLong hitCount = new AtomicLong();
+    private AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     *  Creates an instance backed by the specified file, loading any entries
+     *  that it contains. The file does not need to exist.
+     */
+    public ClassfileCache(File cacheFile)
+    {
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Parses the specified classfile, or retrieves the results of a previous
+     *  parse, adding its referenced classes to the passed set and returning
+     *  its classname.
+     */
+    public String parse(Path file, Set<String> referenced)
+    throws IOException
+    {
+        String key = file.toAbsolutePath().toString();
+        File asFile = file.toFile();
+        long length = asFile.length();
+        long lastModified = asFile.lastModified();
+
+        Entry entry = loadedEntries.get(key);
+        if ((entry != null) && (entry.length == length) && (entry.lastModified == lastModified))
+        {
+            return use(key, entry, referenced);
+        }
+
+        byte[] data = Files.readAllBytes(file);
+        String hash = hash(data);
+        if ((entry != null) && entry.hash.equals(hash))
+        {
+            return use(key, new Entry(length, lastModified, hash, entry.className, entry.references), referenced);
+        }
+
+        missCount.incrementAndGet();
+        Set<String> references = new HashSet<String>();
+        String className = ClassfileParser.parse(data, references);
+        currentEntries.put(key, new Entry(length, lastModified, hash, className, references.toArray(new String[references.size()])));
+        referenced.addAll(references);
+        return className;
+    }
+
+
+    /**
+     *  Writes all entries that were used during this run, replacing the
+     *  existing file.
+     */
+    public void save()
+    {
+        File dir = cacheFile.getAbsoluteFile().getParentFile();
+        File tempFile = null;
+        Writer out = null;
+        try
+        {
+            dir.mkdirs();
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF8));
+            out.write(HEADER + "\n");
+            for (Map.Entry<String,Entry> mapEntry : currentEntries.entrySet())
+            {
+                Entry entry = mapEntry.getValue();
+                out.write(mapEntry.getKey());
+                out.write("\t" + entry.length + "\t" + entry.lastModified + "\t" + entry.hash + "\t" + entry.className);
+                for (String reference : entry.references)
+                {
+                    out.write("\t" + reference);
+                }
+                out.write("\n");
+            }
+            out.close();
+            out = null;
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to write classfile cache {}: {}", cacheFile, ex.getMessage());
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+
+
+    /**
+     *  Returns the number of classfiles whose results came from the cache.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+
+    /**
+     *  Returns the number of classfiles that had to be parsed.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static class Entry
+    {
+        public long length;
+        public long lastModified;
+        public String hash;
+        public String className;
+        public String[] references;
+
+        public Entry(long length, long lastModified, String hash, String className, String[] references)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.className = className;
+            this.references = references;
+        }
+    }
+
+
+    private String use(String key, Entry entry, Set<String> referenced)
+    {
+        hitCount.incrementAndGet();
+        currentEntries.put(key, entry);
+        Collections.addAll(referenced, entry.references);
+        return entry.className;
+    }
+
+
+    private static String hash(byte[] data)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+            {
+                sb.append(String.format("%02x", b & 0xFF));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // every JVM is required to support SHA-1
+            throw new IllegalStateException("SHA-1 not available", ex);
+        }
+    }
+
+
+    /**
+     *  Each entry is a single line of tab-separated fields: path, length,
+     *  timestamp, hash, classname, and zero or more referenced classes.
+     */
+    private void load()
+    {
+        if (! cacheFile.exists())
+            return;
+
+        BufferedReader in = null;
+        try
+        {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), UTF8));
+            if (! HEADER.equals(in.readLine()))
+            {
+                logger.debug("ignoring classfile cache {}: unexpected header", cacheFile);
+                return;
+            }
+
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                String[] fields = line.split("\t");
+                if (fields.length < 5)
+                    continue;
+                loadedEntries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4],
+                                                       Arrays.copyOfRange(fields, 5, fields.length)));
+            }
+        }
+        catch (Exception ex)
+        {
+            logger.warn("unable to read classfile cache {}: {}", cacheFile, ex.getMessage());
+            loadedEntries.clear();
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.IOException;
+import java.util.Set;
+
+
+/**
+ *  A minimal classfile reader that extracts the classes referenced by a single
+ *  class. It indexes the constant pool, then walks field and method descriptors,
+ *  generic signatures, and annotations; method bodies are skipped, since every
+ *  class that they reference appears in the constant pool.
+ *  <p>
+ *  Classnames are reported in the form used throughout this package: fully
+ *  qualified, with nested classes separated by periods.
+ *  <p>
+ *  Instances are single-use and not thread-safe.
+ */
+class ClassfileParser
+{
+    private final static int MAGIC = 0xCAFEBABE;
+
+    // constant pool tags
+    private final static int CONSTANT_Utf8                  = 1;
+    private final static int CONSTANT_Integer               = 3;
+    private final static int CONSTANT_Float                 = 4;
+    private final static int CONSTANT_Long                  = 5;
+    private final static int CONSTANT_Double                = 6;
+    private final static int CONSTANT_Class                 = 7;
+    private final static int CONSTANT_String                = 8;
+    private final static int CONSTANT_Fieldref              = 9;
+    private final static int CONSTANT_Methodref             = 10;
+    private final static int CONSTANT_InterfaceMethodref    = 11;
+    private final static int CONSTANT_NameAndType           = 12;
+    private final static int CONSTANT_MethodHandle          = 15;
+    private final static int CONSTANT_MethodType            = 16;
+    private final static int CONSTANT_Dynamic               = 17;
+    private final static int CONSTANT_InvokeDynamic         = 18;
+    private final static int CONSTANT_Module                = 19;
+    private final static int CONSTANT_Package               = 20;
+
+    private byte[] data;
+    private int pos;
+
+    private int[] cpOffsets;
+    private String[] cpStrings;
+
+    private Set<String> referencedClasses;
+
+
+    /**
+     *  Parses the passed classfile, adding all referenced classes to the provided
+     *  set, and returns the name of the class itself.
+     *
+     *  @throws IOException if the data is not a valid classfile.
+     */
+    public static String parse(byte[] data, Set<String> referencedClasses)
+    throws IOException
+    {
+        try
+        {
+            return new ClassfileParser(data, referencedClasses).parseClass();
+        }
+        catch (ArrayIndexOutOfBoundsException ex)
+        {
+            throw new IOException("invalid classfile: truncated");
+        }
+        catch (StringIndexOutOfBoundsException ex)
+        {
+            throw new IOException("invalid classfile: malformed descriptor");
+        }
+    }
+
+
+    private ClassfileParser(byte[] data, Set<String> referencedClasses)
+    {
+        this.data = data;
+        this.referencedClasses = referencedClasses;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Structure parsing
+//----------------------------------------------------------------------------
+
+    private String parseClass()
+    throws IOException
+    {
+        if (readInt() != MAGIC)
+            throw new IOException("invalid classfile: bad magic number");
+        pos += 4;   // minor and major version
+
+        parseConstantPool();
+
+        pos += 2;   // access flags
+        String className = toClassName(getClassConstant(readShort()));
+        pos += 2;   // superclass: it's a Class constant, so will be picked up below
+        int interfaceCount = readShort();
+        pos += 2 * interfaceCount;  // interfaces: ditto
+
+        parseMembers();     // fields
+        parseMembers();     // methods
+        parseAttributes();
+
+        for (int ii = 1 ; ii < cpOffsets.length ; ii++)
+        {
+            if ((cpOffsets[ii] > 0) && (data[cpOffsets[ii]] == CONSTANT_Class))
+                addClassConstant(getClassConstant(ii));
+        }
+
+        return className;
+    }
+
+
+    /**
+     *  Records the offset of every entry, so that they can be accessed by index.
+     */
+    private void parseConstantPool()
+    throws IOException
+    {
+        int count = readShort();
+        cpOffsets = new int[count];
+        cpStrings = new String[count];
+
+        for (int ii = 1 ; ii < count ; ii++)
+        {
+            cpOffsets[ii] = pos;
+            int tag = data[pos++];
+            switch (tag)
+            {
+                case CONSTANT_Utf8 :
+                    int length = readShort();
+                    pos += length;
+                    break;
+                case CONSTANT_Class :
+                case CONSTANT_String :
+                case CONSTANT_MethodType :
+                case CONSTANT_Module :
+                case CONSTANT_Package :
+                    pos += 2;
+                    break;
+                case CONSTANT_MethodHandle :
+                    pos += 3;
+                    break;
+                case CONSTANT_Integer :
+                case CONSTANT_Float :
+                case CONSTANT_Fieldref :
+                case CONSTANT_Methodref :
+                case CONSTANT_InterfaceMethodref :
+                case CONSTANT_NameAndType :
+                case CONSTANT_Dynamic :
+                case CONSTANT_InvokeDynamic :
+                    pos += 4;
+                    break;
+                case CONSTANT_Long :
+                case CONSTANT_Double :
+                    pos += 8;
+                    ii++;   // these take two slots
+                    break;
+                default :
+                    throw new IOException("invalid classfile: unknown constant pool tag " + tag + " at index " + ii);
+            }
+        }
+    }
+
+
+    /**
+     *  Processes the fields or methods table.
+     */
+    private void parseMembers()
+    throws IOException
+    {
+        int count = readShort();
+        for (int ii = 0 ; ii < count ; ii++)
+        {
+            pos += 4;   // access flags and name
+            addSignature(getUtf8(readShort()));
+            parseAttributes();
+        }
+    }
+
+
+    /**
+     *  Processes an attribute table, extracting references from those attributes
+     *  that we care about and skipping the rest.
+     */
+    private void parseAttributes()
+    throws IOException
+    {
+        int count = readShort();
+        for (int ii = 0 ; ii < count ; ii++)
+        {
+            String name = getUtf8(readShort());
+            int length = readInt();
+            int next = pos + length;
+
+            if (name.equals("Signature"))
+            {
+                addSignature(getUtf8(readShort()));
+            }
+            else if (name.equals("RuntimeVisibleAnnotations") || name.equals("RuntimeInvisibleAnnotations"))
+            {
+                parseAnnotations();
+            }
+            else if (name.equals("RuntimeVisibleParameterAnnotations") || name.equals("RuntimeInvisibleParameterAnnotations"))
+            {
+                int numParams = data[pos++] & 0xFF;
+                for (int pp = 0 ; pp < numParams ; pp++)
+                {
+                    parseAnnotations();
+                }
+            }
+
+            pos = next;
+        }
+    }
+
+
+    private void parseAnnotations()
+    throws IOException
+    {
+        int count = readShort();
+        for (int ii = 0 ; ii < count ; ii++)
+        {
+            parseAnnotation();
+        }
+    }
+
+
+    private void parseAnnotation()
+    throws IOException
+    {
+        addSignature(getUtf8(readShort()));
+        int numPairs = readShort();
+        for (int ii = 0 ; ii < numPairs ; ii++)
+        {
+            pos += 2;   // element name
+            parseElementValue();
+        }
+    }
+
+
+    private void parseElementValue()
+    throws IOException
+    {
+        int tag = data[pos++];
+        switch (tag)
+        {
+            case 'e' :
+                addSignature(getUtf8(readShort()));
+                pos += 2;   // constant name
+                break;
+            case 'c' :
+                addSignature(getUtf8(readShort()));
+                break;
+            case '@' :
+                parseAnnotation();
+                break;
+            case '[' :
+                int count = readShort();
+                for (int ii = 0 ; ii < count ; ii++)
+                {
+                    parseElementValue();
+                }
+                break;
+            default :
+                pos += 2;   // primitive or string constant
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Signature parsing -- handles both descriptors and generic signatures
+//----------------------------------------------------------------------------
+
+    private void addSignature(String sig)
+    {
+        int idx = 0;
+        int len = sig.length();
+        while (idx < len)
+        {
+            char c = sig.charAt(idx);
+            switch (c)
+            {
+                case '<' :
+                    idx = parseTypeParameters(sig, idx);
+                    break;
+                case '(' :
+                case ')' :
+                case '^' :
+                    idx++;
+                    break;
+                default :
+                    idx = parseType(sig, idx);
+            }
+        }
+    }
+
+
+    /**
+     *  Parses a formal type parameter list: <code>&lt;T:bound;U::bound;&gt;</code>.
+     *  Returns the index following the closing bracket.
+     */
+    private int parseTypeParameters(String sig, int idx)
+    {
+        idx++;
+        while (sig.charAt(idx) != '>')
+        {
+            idx = sig.indexOf(':', idx);
+            while (sig.charAt(idx) == ':')
+            {
+                idx++;
+                if (sig.charAt(idx) != ':')
+                    idx = parseType(sig, idx);
+            }
+        }
+        return idx + 1;
+    }
+
+
+    /**
+     *  Parses a single type, returning the index following it.
+     */
+    private int parseType(String sig, int idx)
+    {
+        switch (sig.charAt(idx))
+        {
+            case 'L' :
+                return parseClassType(sig, idx);
+            case 'T' :
+                return sig.indexOf(';', idx) + 1;
+            case '[' :
+                return parseType(sig, idx + 1);
+            default :
+                return idx + 1;     // primitive or void
+        }
+    }
+
+
+    /**
+     *  Parses a class type, which may have type arguments and nested class
+     *  suffixes: <code>Lcom/example/Outer&lt;TT;&gt;.Inner&lt;*&gt;;</code>.
+     */
+    private int parseClassType(String sig, int idx)
+    {
+        StringBuilder className = new StringBuilder(64);
+        idx++;
+        while (true)
+        {
+            char c = sig.charAt(idx);
+            if (c == ';')
+            {
+                break;
+            }
+            else if (c == '<')
+            {
+                idx++;
+                while (sig.charAt(idx) != '>')
+                {
+                    char c2 = sig.charAt(idx);
+                    if (c2 == '*')
+                        idx++;
+                    else if ((c2 == '+') || (c2 == '-'))
+                        idx = parseType(sig, idx + 1);
+                    else
+                        idx = parseType(sig, idx);
+                }
+                idx++;
+            }
+            else
+            {
+                className.append(((c == '/') || (c == '$')) ? '.' : c);
+                idx++;
+            }
+        }
+        referencedClasses.add(className.toString());
+        return idx + 1;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Low-level access
+//----------------------------------------------------------------------------
+
+    private int readShort()
+    {
+        int value = readShort(pos);
+        pos += 2;
+        return value;
+    }
+
+
+    private int readShort(int offset)
+    {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+
+    private int readInt()
+    {
+        int value = (readShort(pos) << 16) | readShort(pos + 2);
+        pos += 4;
+        return value;
+    }
+
+
+    private String getClassConstant(int index)
+    throws IOException
+    {
+        int offset = checkIndex(index, CONSTANT_Class);
+        return getUtf8(readShort(offset + 1));
+    }
+
+
+    private String getUtf8(int index)
+    throws IOException
+    {
+        String value = cpStrings[index];
+        if (value == null)
+        {
+            int offset = checkIndex(index, CONSTANT_Utf8);
+            value = decodeUtf8(offset + 3, readShort(offset + 1));
+            cpStrings[index] = value;
+        }
+        return value;
+    }
+
+
+    private int checkIndex(int index, int expectedTag)
+    throws IOException
+    {
+        if ((index <= 0) || (index >= cpOffsets.length) || (cpOffsets[index] == 0))
+            throw new IOException("invalid classfile: bad constant pool index " + index);
+        int offset = cpOffsets[index];
+        if (data[offset] != expectedTag)
+            throw new IOException("invalid classfile: constant " + index + " has tag " + data[offset]
+                                  + ", expected " + expectedTag);
+        return offset;
+    }
+
+
+    /**
+     *  Decodes the JVM's "modified UTF-8". The common case is all-ASCII, which
+     *  requires no work beyond copying bytes.
+     */
+    private String decodeUtf8(int offset, int length)
+    {
+        char[] chars = new char[length];
+        int count = 0;
+        int end = offset + length;
+        while (offset < end)
+        {
+            int b = data[offset++] & 0xFF;
+            if (b < 0x80)
+            {
+                chars[count++] = (char)b;
+            }
+            else if ((b & 0xE0) == 0xC0)
+            {
+                chars[count++] = (char)(((b & 0x1F) << 6) | (data[offset++] & 0x3F));
+            }
+            else
+            {
+                int b2 = data[offset++] & 0x3F;
+                int b3 = data[offset++] & 0x3F;
+                chars[count++] = (char)(((b & 0x0F) << 12) | (b2 << 6) | b3);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+
+    /**
+     *  Records a Class constant, which will either be an internal classname or
+     *  an array descriptor. Arrays of primitives are ignored.
+     */
+    private void addClassConstant(String value)
+    {
+        if (value.charAt(0) == '[')
+        {
+            int idx = value.lastIndexOf('[') + 1;
+            if (value.charAt(idx) == 'L')
+                parseClassType(value, idx);
+            return;
+        }
+        referencedClasses.add(toClassName(value));
+    }
+
+
+    private static String toClassName(String internalName)
+    {
+        return internalName.replace('/', '.').replace('$', '.');
+    }
+}
@@ -22,7 +22,8 @@ extends SimpleCLIParser
 {
     public enum Options
     {
-        REPORT_UNUSED_RUNTIME, IGNORE_UNUSED
+        REPORT_UNUSED_RUNTIME, IGNORE_UNUSED, USE_CLASS_INDEX, CLASS_INDEX_DIR, PARALLELISM, REACTOR, INCREMENTAL, ARTIFACT, RESOLVE_TRANSITIVE, REPORT_CONFLICTS,
+        DAEMON, USE_DAEMON, DAEMON_PORT, DAEMON_TOKEN_DIR, REPORT_FORMAT, EVIDENCE
     }
 
 
@@ -37,7 +38,72 @@ extends SimpleCLIParser
                     + " manually inspect them"),
             new OptionDefinition(
                     Options.IGNORE_UNUSED, "--ignoreUnusedDependency", 1,
-                    "Ignores the specified dependency if it is not used by mainline code.")
+                    "Ignores the specified dependency if it is not used by mainline code."),
+            new OptionDefinition(
+                    Options.USE_CLASS_INDEX,
+                    "--useClassIndex", "--noClassIndex", true,
+                    "Retains the list of classes in each dependency JAR between runs, so that"
+                    + " the JAR only has to be read once."),
+            new OptionDefinition(
+                    Options.CLASS_INDEX_DIR, "--classIndexDirectory", 1,
+                    "Specifies the directory used to store the class index; default is"
+                    + " $HOME/.m2/pomutil/class-index."),
+            new OptionDefinition(
+                    Options.PARALLELISM, "--parallelism", 1,
+                    "Number of threads used to scan project classes (and to check modules, with"
+                    + " --reactor); default is 1. A good value is the number of available processors."),
+            new OptionDefinition(
+                    Options.REACTOR,
+                    "--reactor", "--noReactor", false,
+                    "Treats the project directory as the root of a multi-module build, and"
+                    + " checks all of the modules listed in its POM (recursively)."),
+            new OptionDefinition(
+                    Options.INCREMENTAL,
+                    "--incremental", "--noIncremental", false,
+                    "Saves the references from each project classfile, so that subsequent runs"
+                    + " only parse classfiles that have been added or changed."),
+            new OptionDefinition(
+                    Options.ARTIFACT, "--artifact", 1,
+                    "Examines the classes in the specified JAR, WAR, or EAR rather than those in"
+                    + " target/classes. Libraries bundled in the artifact are not examined."),
+            new OptionDefinition(
+                    Options.RESOLVE_TRANSITIVE,
+                    "--resolveTransitive", "--noResolveTransitive", false,
+                    "Resolves transitive dependencies from the local repository, to identify"
+                    + " the artifacts that provide classes not found in a direct dependency."),
+            new OptionDefinition(
+                    Options.REPORT_CONFLICTS,
+                    "--reportConflicts", "--noReportConflicts", false,
+                    "Reports classes that are provided by more than one dependency, and packages"
+                    + " that are split between dependencies. This compares the contents of every"
+                    + " dependency, so is off by default."),
+            new OptionDefinition(
+                    Options.DAEMON,
+                    "--daemon", "--noDaemon", false,
+                    "Runs as a long-running server that performs checks submitted with --useDaemon,"
+                    + " keeping dependency information cached between checks."),
+            new OptionDefinition(
+                    Options.USE_DAEMON,
+                    "--useDaemon", "--noUseDaemon", false,
+                    "Submits the check to a running daemon (started with --daemon), rather than"
+                    + " performing it in this process."),
+            new OptionDefinition(
+                    Options.DAEMON_PORT, "--daemonPort", 1,
+                    "The local port used to communicate with the daemon; default is "
+                    + DependencyDaemon.DEFAULT_PORT + "."),
+            new OptionDefinition(
+                    Options.DAEMON_TOKEN_DIR, "--daemonTokenDirectory", 1,
+                    "The directory holding the token that clients must present to the daemon;"
+                    + " default is $HOME/.m2/pomutil."),
+            new OptionDefinition(
+                    Options.REPORT_FORMAT, "--reportFormat", 1,
+                    "The format of the report: \"text\" (the default), \"jsonl\" (one JSON object"
+                    + " per finding), \"sarif\", or \"junit\" (JUnit XML)."),
+            new OptionDefinition(
+                    Options.EVIDENCE,
+                    "--evidence", "--noEvidence", false,
+                    "Records which project classes reference each dependency, and includes them"
+                    + " in the report.")
             );
     }
 }
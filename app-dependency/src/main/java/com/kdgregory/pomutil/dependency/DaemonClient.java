@@ -0,0 +1,188 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ *  Submits a dependency check to a running {@link DependencyDaemon}, and copies
+ *  the report that it returns. Relative paths in the arguments are resolved
+ *  against the client's working directory, and if no project directory is
+ *  given the client's working directory is used.
+ *  <p>
+ *  The client authenticates itself with the token that the daemon wrote when
+ *  it started, so must be run by the same user as the daemon.
+ */
+public class DaemonClient
+{
+    private final static String ARTIFACT_OPTION = "--artifact=";
+
+    private int port;
+    private File tokenDir;
+    private List<String> request = new ArrayList<String>();
+
+
+    /**
+     *  @param  args    The parsed arguments, used for client configuration.
+     *  @param  argv    The raw arguments, which are forwarded to the server.
+     */
+    public DaemonClient(CommandLine args, String... argv)
+    {
+        port = DependencyDaemon.parsePort(args);
+        tokenDir = DependencyDaemon.parseTokenDirectory(args);
+
+        for (String arg : argv)
+        {
+            if (arg.startsWith(ARTIFACT_OPTION))
+                request.add(ARTIFACT_OPTION + new File(arg.substring(ARTIFACT_OPTION.length())).getAbsolutePath());
+            else if (! arg.startsWith("--"))
+                request.add(new File(arg).getAbsolutePath());
+            else
+                request.add(arg);
+        }
+
+        if (args.getParameters().isEmpty())
+            request.add(System.getProperty("user.dir"));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Sends the request and writes the report to the passed stream.
+     *
+     *  @throws IOException if unable to communicate with the server, or if
+     *          the server was unable to perform the check. Nothing is written
+     *          to the stream in this case.
+     */
+    public void run(OutputStream out0)
+    throws IOException
+    {
+        Socket socket;
+        try
+        {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        }
+        catch (ConnectException ex)
+        {
+            throw new IOException("unable to connect to daemon on port " + port + "; start it with --daemon", ex);
+        }
+
+        try
+        {
+            Writer requestWriter = new OutputStreamWriter(socket.getOutputStream(), DependencyDaemon.UTF8);
+            requestWriter.write(readToken());
+            requestWriter.write("\n");
+            for (String arg : request)
+            {
+                requestWriter.write(arg);
+                requestWriter.write("\n");
+            }
+            requestWriter.write("\n");
+            requestWriter.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String status = readStatus(in);
+            if (status.startsWith(DependencyDaemon.STATUS_ERROR + " "))
+                throw new IOException(status.substring(DependencyDaemon.STATUS_ERROR.length() + 1));
+            if (! status.startsWith(DependencyDaemon.STATUS_OK + " "))
+                throw new IOException("invalid response from daemon: " + status);
+
+            long length;
+            try
+            {
+                length = Long.parseLong(status.substring(DependencyDaemon.STATUS_OK.length() + 1));
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new IOException("invalid response from daemon: " + status);
+            }
+
+            copyReport(in, length, out0);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private String readToken()
+    throws IOException
+    {
+        File tokenFile = DependencyDaemon.tokenFile(tokenDir, port);
+        if (! tokenFile.isFile())
+            throw new IOException("missing daemon token: " + tokenFile);
+        return new String(Files.readAllBytes(tokenFile.toPath()), DependencyDaemon.UTF8).trim();
+    }
+
+
+    private static String readStatus(InputStream in)
+    throws IOException
+    {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        for (int b = in.read() ; b != '\n' ; b = in.read())
+        {
+            if (b < 0)
+                throw new IOException("daemon closed connection without responding");
+            buf.write(b);
+        }
+        return new String(buf.toByteArray(), DependencyDaemon.UTF8);
+    }
+
+
+    /**
+     *  Copies the report, which must be exactly the length given by the status
+     *  line. It's copied only once read in full, so that a truncated response
+     *  doesn't produce a partial report.
+     */
+    private static void copyReport(InputStream in, long length, OutputStream out)
+    throws IOException
+    {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int count;
+        while ((count = in.read(buf)) > 0)
+        {
+            report.write(buf, 0, count);
+        }
+
+        if (report.size() != length)
+            throw new IOException("incomplete response from daemon: expected " + length + " bytes, received " + report.size());
+
+        report.writeTo(out);
+        out.flush();
+    }
+}
@@ -16,10 +16,16 @@ package com.kdgregory.pomutil.dependency;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.slf4j.Logger;
@@ -31,7 +37,7 @@ import net.sf.kdgcommons.lang.StringUtil;
 
 import com.kdgregory.pomutil.util.Artifact;
 import com.kdgregory.pomutil.util.Artifact.Scope;
-import com.kdgregory.pomutil.util.Utils;
+import com.kdgregory.pomutil.util.ClassIndex;
 
 
 /**
@@ -40,15 +46,64 @@ import com.kdgregory.pomutil.util.Utils;
  */
 public class DependencyCheck
 {
+    /**
+     *  Location of the per-classfile cache used by incremental checks,
+     *  relative to the project directory.
+     */
+    public final static String CLASSFILE_CACHE = "target/pomutil-classfile.cache";
+
+
+    /**
+     *  The categories of results, in the order that {@link #run} produces them.
+     */
+    public enum ResultType
+    {
+        /** Unsupported classes and packages. */
+        MISSING,
+
+        /** Transitive dependencies that provide unsupported classes. */
+        TRANSITIVE,
+
+        /** Unused dependencies, including test dependencies used by mainline code. */
+        UNUSED,
+
+        /** Duplicate classes and split packages. */
+        CONFLICTS
+    }
+
+
+    /**
+     *  Notified by {@link #run} as each category of results becomes available,
+     *  so that results can be reported before the entire check is complete.
+     *  Once notified, the accessors for that category may be called.
+     */
+    public interface ResultListener
+    {
+        void resultsAvailable(DependencyCheck checker, ResultType type)
+        throws IOException;
+    }
+
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     private File cwd;
+    private ClassIndex classIndex;
     private DependencyScanner dependencyScanner;
     private Collection<String> ignoredDependencies;
     private boolean reportUnusedRuntimeDependences;
+    private int parallelism;
+    private boolean incremental;
+    private File artifact;
+    private boolean resolveTransitive;
+    private boolean reportConflicts;
+    private boolean recordEvidence;
+
+    // classes are tracked by their ID in the symbol table; names are only
+    // materialized for the final (unsupported) results
 
-    private SortedSet<String> mainlineReferencedClasses = new TreeSet<String>();
-    private SortedSet<String> testReferencedClasses = new TreeSet<String>();
+    private ClassNameTable symbols = new ClassNameTable();
+
+    private BitSet mainlineReferencedClasses = new BitSet();
+    private BitSet testReferencedClasses = new BitSet();
 
     private SortedSet<String> mainlineUnsupportedClasses = new TreeSet<String>();
     private SortedSet<String> testUnsupportedClasses = new TreeSet<String>();
@@ -63,16 +118,46 @@ public class DependencyCheck
     private SortedSet<Artifact> mainlineIncorrectDependencies = new TreeSet<Artifact>();
     private SortedSet<Artifact> testUnusedDependencies = new TreeSet<Artifact>();
 
+    private SortedSet<Artifact> mainlineTransitiveDependencies = new TreeSet<Artifact>();
+    private SortedSet<Artifact> testTransitiveDependencies = new TreeSet<Artifact>();
+
+    // the referenced classes provided by each (direct or transitive) dependency
+    private Map<Artifact,BitSet> dependencyClasses = new TreeMap<Artifact,BitSet>();
+
+    // if recording evidence, maps referenced classes to the project classes that reference them
+    private EvidenceIndex evidenceIndex;
+
+    private SortedMap<String,List<Artifact>> duplicateClasses = new TreeMap<String,List<Artifact>>();
+    private SortedMap<String,List<Artifact>> splitPackages = new TreeMap<String,List<Artifact>>();
+
 
     /**
      *  Standard constructor, which processes invocation arguments.
      */
     public DependencyCheck(CommandLine args)
+    {
+        this(args, createClassIndex(args), parseParallelism(args),
+             new File(ObjectUtil.defaultValue(args.shift(), System.getProperty("user.dir"))));
+    }
+
+
+    /**
+     *  Constructor for checking a single module of a reactor build, where the
+     *  project directory is supplied by the caller and the class index is shared.
+     */
+    DependencyCheck(CommandLine args, ClassIndex classIndex, int parallelism, File projectDir)
     {
         ignoredDependencies = args.getOptionValues(CommandLine.Options.IGNORE_UNUSED);
         reportUnusedRuntimeDependences = args.isOptionEnabled(CommandLine.Options.REPORT_UNUSED_RUNTIME);
-        String projectDir = ObjectUtil.defaultValue(args.shift(), System.getProperty("user.dir"));
-        cwd = new File(projectDir);
+        incremental = args.isOptionEnabled(CommandLine.Options.INCREMENTAL);
+        List<String> artifacts = args.getOptionValues(CommandLine.Options.ARTIFACT);
+        artifact = artifacts.isEmpty() ? null : new File(artifacts.get(artifacts.size() - 1));
+        resolveTransitive = args.isOptionEnabled(CommandLine.Options.RESOLVE_TRANSITIVE);
+        reportConflicts = args.isOptionEnabled(CommandLine.Options.REPORT_CONFLICTS);
+        recordEvidence = args.isOptionEnabled(CommandLine.Options.EVIDENCE);
+        this.classIndex = classIndex;
+        this.parallelism = parallelism;
+        this.cwd = projectDir;
     }
 
 
@@ -96,15 +181,36 @@ public class DependencyCheck
     public DependencyCheck run()
     throws IOException
     {
-        dependencyScanner = new DependencyScanner(new File(cwd, "pom.xml"));
+        return run(null);
+    }
+
+
+    /**
+     *  Executes the dependency check, notifying the passed listener (if not
+     *  <code>null</code>) as each category of results is available. Returns
+     *  itself as a convenience for chained calls.
+     */
+    public DependencyCheck run(ResultListener listener)
+    throws IOException
+    {
+        dependencyScanner = new DependencyScanner(new File(cwd, "pom.xml"), classIndex, symbols, resolveTransitive);
 
         selectReferencedClasses();
         removeJDKClasses();
 
-        findReferencedDependencies(mainlineReferencedClasses, mainlineReferencedDependencies, mainlineUnsupportedClasses,
-                                  Scope.COMPILE, Scope.SYSTEM, Scope.PROVIDED);
-        findReferencedDependencies(testReferencedClasses, testReferencedDependencies, testUnsupportedClasses,
-                                  Scope.COMPILE, Scope.SYSTEM, Scope.PROVIDED, Scope.TEST);
+        BitSet mainlineUnsupported = findReferencedDependencies(mainlineReferencedClasses, mainlineReferencedDependencies,
+                                                                Scope.COMPILE, Scope.SYSTEM, Scope.PROVIDED);
+        BitSet testUnsupported = findReferencedDependencies(testReferencedClasses, testReferencedDependencies,
+                                                            Scope.COMPILE, Scope.SYSTEM, Scope.PROVIDED, Scope.TEST);
+        mainlineUnsupportedClasses = symbols.toNames(mainlineUnsupported);
+        testUnsupportedClasses = symbols.toNames(testUnsupported);
+        convertUnsupportedClassesToPackages(mainlineUnsupportedClasses, mainlineUnsupportedPackages);
+        convertUnsupportedClassesToPackages(testUnsupportedClasses, testUnsupportedPackages);
+        notifyListener(listener, ResultType.MISSING);
+
+        findTransitiveDependencies(mainlineUnsupported, mainlineTransitiveDependencies);
+        findTransitiveDependencies(testUnsupported, testTransitiveDependencies);
+        notifyListener(listener, ResultType.TRANSITIVE);
 
         findUnusedDependencies(dependencyScanner.getDependencies(Scope.COMPILE, Scope.SYSTEM, Scope.RUNTIME, Scope.PROVIDED),
                                     mainlineReferencedDependencies,
@@ -117,8 +223,14 @@ public class DependencyCheck
         moveImproperlyScopedDependencies();
         removeRuntimeScopedUnusedDependencies();
         removeIgnoredUnusedDependencies(mainlineUnusedDependencies, testUnusedDependencies);
-        convertUnsupportedClassesToPackages(mainlineUnsupportedClasses, mainlineUnsupportedPackages);
-        convertUnsupportedClassesToPackages(testUnsupportedClasses, testUnsupportedPackages);
+        notifyListener(listener, ResultType.UNUSED);
+
+        if (reportConflicts)
+        {
+            duplicateClasses = dependencyScanner.getDuplicateClasses();
+            splitPackages = dependencyScanner.getSplitPackages();
+        }
+        notifyListener(listener, ResultType.CONFLICTS);
 
         return this;
     }
@@ -128,6 +240,15 @@ public class DependencyCheck
 //  Methods to return the results
 //----------------------------------------------------------------------------
 
+    /**
+     *  Returns the directory of the project being checked.
+     */
+    public File getProjectDirectory()
+    {
+        return cwd;
+    }
+
+
     /**
      *  Returns the names of classes referenced by mainline code but not found in
      *  any direct dependency.
@@ -168,6 +289,101 @@ public class DependencyCheck
     }
 
 
+    /**
+     *  Returns the transitive dependencies that provide classes referenced by
+     *  mainline code but not found in any direct dependency. These are candidates
+     *  to become direct dependencies. Empty unless transitive resolution is enabled.
+     */
+    public SortedSet<Artifact> getTransitiveMainlineDependencies()
+    {
+        return mainlineTransitiveDependencies;
+    }
+
+
+    /**
+     *  Returns the transitive dependencies that provide classes referenced by
+     *  test code but not found in any direct dependency.
+     */
+    public SortedSet<Artifact> getTransitiveTestDependencies()
+    {
+        return testTransitiveDependencies;
+    }
+
+
+    /**
+     *  Returns the classes that are provided by more than one dependency (direct
+     *  or transitive), mapped to their providers. Empty if conflict reporting is
+     *  disabled.
+     */
+    public SortedMap<String,List<Artifact>> getDuplicateClasses()
+    {
+        return duplicateClasses;
+    }
+
+
+    /**
+     *  Returns the packages whose classes are provided by more than one dependency
+     *  (direct or transitive), mapped to their providers. Empty if conflict
+     *  reporting is disabled.
+     */
+    public SortedMap<String,List<Artifact>> getSplitPackages()
+    {
+        return splitPackages;
+    }
+
+
+    /**
+     *  Returns the names of the referenced classes (from mainline or test code)
+     *  that are provided by the passed dependency, which may be direct or
+     *  transitive. Empty if the dependency is not used.
+     */
+    public SortedSet<String> getReferencedClasses(Artifact dependency)
+    {
+        BitSet classes = dependencyClasses.get(dependency);
+        return (classes == null)
+             ? new TreeSet<String>()
+             : symbols.toNames(classes);
+    }
+
+
+    /**
+     *  Returns the names of the project classes (mainline or test) that reference
+     *  any class provided by the passed dependency. Empty unless evidence is being
+     *  recorded, or if the dependency is not used.
+     */
+    public SortedSet<String> getReferencingClasses(Artifact dependency)
+    {
+        BitSet classes = dependencyClasses.get(dependency);
+        if ((evidenceIndex == null) || (classes == null))
+            return new TreeSet<String>();
+
+        return symbols.toNames(evidenceIndex.getReferrers(classes));
+    }
+
+
+    /**
+     *  Returns the names of the project classes that reference the named class.
+     *  Empty unless evidence is being recorded, or if the class is not referenced.
+     */
+    public SortedSet<String> getReferencingClasses(String className)
+    {
+        if (evidenceIndex == null)
+            return new TreeSet<String>();
+
+        return symbols.toNames(evidenceIndex.getReferrers(className));
+    }
+
+
+    /**
+     *  Returns the chain of dependencies, starting with a direct dependency, by
+     *  which a transitive dependency is included.
+     */
+    public List<Artifact> getDependencyPath(Artifact transitiveDependency)
+    {
+        return dependencyScanner.getDependencyPath(transitiveDependency);
+    }
+
+
     /**
      *  Returns dependencies in mainline scope that are not referenced anywhere.
      *  Note that this does not overlap with {@link #getIncorrectMainlineDependencies}.
@@ -200,70 +416,165 @@ public class DependencyCheck
 //  Internals
 //----------------------------------------------------------------------------
 
-    private void selectReferencedClasses()
-    throws IOException
+    static ClassIndex createClassIndex(CommandLine args)
     {
-        ClassScanner mainlineScanner = new ClassScanner(new File(cwd, "target/classes"));
-        mainlineReferencedClasses.addAll(mainlineScanner.getReferencedClasses());
+        if (! args.isOptionEnabled(CommandLine.Options.USE_CLASS_INDEX))
+            return null;
 
-        ClassScanner testScanner = new ClassScanner(new File(cwd, "target/test-classes"));
-        testReferencedClasses.addAll(testScanner.getReferencedClasses());
+        List<String> indexDirs = args.getOptionValues(CommandLine.Options.CLASS_INDEX_DIR);
+        return indexDirs.isEmpty()
+             ? new ClassIndex()
+             : new ClassIndex(new File(indexDirs.get(indexDirs.size() - 1)));
+    }
 
-        Set<String> projectClasses = new TreeSet<String>();
-        projectClasses.addAll(mainlineScanner.getProcessedClasses());
-        projectClasses.addAll(testScanner.getProcessedClasses());
 
-        mainlineReferencedClasses.removeAll(projectClasses);
-        testReferencedClasses.removeAll(projectClasses);
+    static int parseParallelism(CommandLine args)
+    {
+        List<String> values = args.getOptionValues(CommandLine.Options.PARALLELISM);
+        if (values.isEmpty())
+            return 1;
+
+        String value = values.get(values.size() - 1);
+        try
+        {
+            int result = Integer.parseInt(value.trim());
+            if (result < 1)
+                throw new IllegalArgumentException("parallelism must be positive: " + value);
+            return result;
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid parallelism: " + value);
+        }
     }
 
 
-    private void removeJDKClasses()
+    private void selectReferencedClasses()
     throws IOException
     {
-        File rtJarFile = new File(System.getProperty("java.home"), "lib/rt.jar");
-        if (!rtJarFile.exists())
+        ClassfileCache cache = incremental
+                             ? new ClassfileCache(new File(cwd, CLASSFILE_CACHE))
+                             : null;
+
+        // if recording evidence, the scanners intern each class's references as they go
+        ClassNameTable evidenceSymbols = recordEvidence ? symbols : null;
+
+        // a packaged artifact replaces the mainline classes, but its bundled libraries are dependencies
+        ClassScanner mainlineScanner = (artifact != null)
+                                     ? new ClassScanner(artifact, false, evidenceSymbols)
+                                     : new ClassScanner(new File(cwd, "target/classes"), parallelism, cache, evidenceSymbols);
+        mainlineReferencedClasses = symbols.internAll(mainlineScanner.getReferencedClasses());
+
+        ClassScanner testScanner = new ClassScanner(new File(cwd, "target/test-classes"), parallelism, cache, evidenceSymbols);
+        if (cache != null)
         {
-            logger.warn("unable to find rt.jar; results will include Java classes");
-            return;
+            logger.debug("{} classfiles parsed, {} retrieved from cache", cache.getMissCount(), cache.getHitCount());
+            cache.save();
+        }
+        testReferencedClasses = symbols.internAll(testScanner.getReferencedClasses());
+
+        BitSet projectClasses = symbols.internAll(mainlineScanner.getProcessedClasses());
+        projectClasses.or(symbols.internAll(testScanner.getProcessedClasses()));
+
+        mainlineReferencedClasses.andNot(projectClasses);
+        testReferencedClasses.andNot(projectClasses);
+
+        if (recordEvidence)
+        {
+            List<Map<Integer,int[]>> classReferences = new ArrayList<Map<Integer,int[]>>();
+            classReferences.add(mainlineScanner.getClassReferences());
+            classReferences.add(testScanner.getClassReferences());
+            evidenceIndex = new EvidenceIndex(symbols, classReferences);
+            logger.debug("evidence index holds {} references from {} classes",
+                         evidenceIndex.size(), mainlineScanner.getClassReferences().size() + testScanner.getClassReferences().size());
         }
+    }
+
+
+    private void notifyListener(ResultListener listener, ResultType type)
+    throws IOException
+    {
+        if (listener != null)
+            listener.resultsAvailable(this, type);
+    }
+
+
+    private void removeJDKClasses()
+    {
+        JdkClasses jdkClasses = JdkClasses.forCurrentJvm();
+        removeJDKClasses(jdkClasses, mainlineReferencedClasses);
+        removeJDKClasses(jdkClasses, testReferencedClasses);
+    }
+
 
-        for (String className : Utils.extractClassesFromJar(rtJarFile))
+    private void removeJDKClasses(JdkClasses jdkClasses, BitSet referencedClasses)
+    {
+        for (int id = referencedClasses.nextSetBit(0) ; id >= 0 ; id = referencedClasses.nextSetBit(id + 1))
         {
-            mainlineReferencedClasses.remove(className);
-            testReferencedClasses.remove(className);
+            if (jdkClasses.isJdkClass(symbols.getName(id)))
+                referencedClasses.clear(id);
         }
     }
 
 
-    private void findReferencedDependencies(
-            Set<String> referencedClasses,
+    /**
+     *  Adds the dependencies that provide referenced classes to the passed set,
+     *  and returns the IDs of the referenced classes that aren't provided by any
+     *  dependency in the allowed scopes.
+     */
+    private BitSet findReferencedDependencies(
+            BitSet referencedClasses,
             Set<Artifact> referencedDependencies,
-            Set<String> unsupportedClasses,
             Scope... allowedScopes)
     {
-        Iterator<String> classItx = referencedClasses.iterator();
-        while (classItx.hasNext())
+        BitSet unsupportedClasses = new BitSet();
+        for (int id = referencedClasses.nextSetBit(0) ; id >= 0 ; id = referencedClasses.nextSetBit(id + 1))
         {
-            String classname = classItx.next();
-
             Artifact artifact = null;
             for (Scope scope : allowedScopes)
             {
-                artifact = dependencyScanner.getDependency(classname, scope);
+                artifact = dependencyScanner.getDependency(id, scope);
                 if (artifact != null)
                     break;
             }
 
             if (artifact == null)
             {
-                unsupportedClasses.add(classname);
+                unsupportedClasses.set(id);
             }
             else
             {
                 referencedDependencies.add(artifact);
+                recordDependencyClass(artifact, id);
             }
         }
+        return unsupportedClasses;
+    }
+
+
+    private void findTransitiveDependencies(BitSet unsupportedClasses, Set<Artifact> result)
+    {
+        for (int id = unsupportedClasses.nextSetBit(0) ; id >= 0 ; id = unsupportedClasses.nextSetBit(id + 1))
+        {
+            Artifact artifact = dependencyScanner.getTransitiveDependency(id);
+            if (artifact != null)
+            {
+                result.add(artifact);
+                recordDependencyClass(artifact, id);
+            }
+        }
+    }
+
+
+    private void recordDependencyClass(Artifact artifact, int classId)
+    {
+        BitSet classes = dependencyClasses.get(artifact);
+        if (classes == null)
+        {
+            classes = new BitSet();
+            dependencyClasses.put(artifact, classes);
+        }
+        classes.set(classId);
     }
 
 
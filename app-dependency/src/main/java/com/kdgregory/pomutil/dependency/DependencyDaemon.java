@@ -0,0 +1,372 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kdgregory.pomutil.util.ClassIndex;
+
+
+/**
+ *  A long-running server that performs dependency checks on behalf of
+ *  {@link DaemonClient}. Because it outlives any single check, the caches
+ *  that are normally rebuilt on every invocation stay warm: the in-memory
+ *  class index, the parent/imported POM cache, the transitive dependency
+ *  graph, and the list of JDK classes. Entries in those caches are validated
+ *  against the size and timestamp of the files they were read from, so a
+ *  changed JAR or POM in the repository is re-read on the next request.
+ *  <p>
+ *  The server only listens on the loopback interface, and only accepts requests
+ *  from clients that can read its token: a random value that's written, when
+ *  the server starts, to a file that's readable only by the user running the
+ *  server. The request is line-oriented UTF-8: the token, the client's
+ *  command-line arguments (one per line), and an empty line. The response
+ *  starts with a status line: {@link #STATUS_OK} followed by the length of the
+ *  report in bytes, which follows the status line, or {@link #STATUS_ERROR}
+ *  followed by a message. The server then closes the connection.
+ *  <p>
+ *  Requests are processed concurrently, each on its own thread.
+ */
+public class DependencyDaemon
+{
+    public final static int DEFAULT_PORT = 7654;
+    public final static String STATUS_OK = "OK";
+    public final static String STATUS_ERROR = "ERROR";
+
+    final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private ClassIndex classIndex;
+    private int port;
+    private File tokenDir;
+    private File tokenFile;
+    private byte[] token;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private AtomicLong requestCount = new AtomicLong();
+
+
+    /**
+     *  Standard constructor, which processes invocation arguments. The class
+     *  index is configured by these arguments; all other options are taken from
+     *  the individual requests.
+     */
+    public DependencyDaemon(CommandLine args)
+    {
+        classIndex = DependencyCheck.createClassIndex(args);
+        port = parsePort(args);
+        tokenDir = parseTokenDirectory(args);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Operational methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Opens the server socket and writes the token file. Returns itself as a
+     *  convenience for chained calls.
+     */
+    public DependencyDaemon start()
+    throws IOException
+    {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        tokenFile = tokenFile(tokenDir, getPort());
+        token = createToken().getBytes(UTF8);
+        writeToken(tokenFile, token);
+        executor = Executors.newCachedThreadPool();
+        logger.info("listening on port {}, token in {}", getPort(), tokenFile);
+        return this;
+    }
+
+
+    /**
+     *  Accepts and dispatches requests until {@link #shutdown} is called.
+     */
+    public void run()
+    throws IOException
+    {
+        while (! serverSocket.isClosed())
+        {
+            final Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch (SocketException ex)
+            {
+                if (serverSocket.isClosed())
+                    break;
+                throw ex;
+            }
+
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    handleRequest(socket);
+                }
+            });
+        }
+    }
+
+
+    /**
+     *  Closes the server socket and interrupts any in-progress requests.
+     */
+    public void shutdown()
+    {
+        try
+        {
+            if (serverSocket != null)
+                serverSocket.close();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("exception closing server socket", ex);
+        }
+
+        if (executor != null)
+            executor.shutdownNow();
+
+        if (tokenFile != null)
+            tokenFile.delete();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the port that the server is listening on. This is useful when
+     *  the server was started with port 0 (ie, an ephemeral port).
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+
+    /**
+     *  Returns the number of requests that have been processed (successfully
+     *  or not).
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    static int parsePort(CommandLine args)
+    {
+        List<String> values = args.getOptionValues(CommandLine.Options.DAEMON_PORT);
+        if (values.isEmpty())
+            return DEFAULT_PORT;
+
+        String value = values.get(values.size() - 1);
+        try
+        {
+            int result = Integer.parseInt(value.trim());
+            if ((result < 0) || (result > 65535))
+                throw new IllegalArgumentException("invalid daemon port: " + value);
+            return result;
+        }
+        catch (NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid daemon port: " + value);
+        }
+    }
+
+
+    /**
+     *  Returns the directory that holds token files, as specified by the
+     *  arguments or defaulted to <code>$HOME/.m2/pomutil</code>.
+     */
+    static File parseTokenDirectory(CommandLine args)
+    {
+        List<String> values = args.getOptionValues(CommandLine.Options.DAEMON_TOKEN_DIR);
+        if (! values.isEmpty())
+            return new File(values.get(values.size() - 1));
+
+        File userHome = new File(System.getProperty("user.home"));
+        File m2 = new File(userHome, ".m2");
+        return new File(m2, "pomutil");
+    }
+
+
+    /**
+     *  Returns the token file for a daemon listening on the specified port; each
+     *  port has its own, so that multiple daemons may run.
+     */
+    static File tokenFile(File tokenDir, int port)
+    {
+        return new File(tokenDir, "daemon-" + port + ".token");
+    }
+
+
+    private static String createToken()
+    {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     *  Writes the token to a newly-created file that only the current user can
+     *  read. Where the filesystem supports POSIX permissions, the file is created
+     *  with those permissions, so that there's no window where it's readable.
+     */
+    private static void writeToken(File file, byte[] token)
+    throws IOException
+    {
+        file.getParentFile().mkdirs();
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(
+                                        EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE)));
+        }
+        else
+        {
+            Files.createFile(path);
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+
+        Files.write(path, token);
+    }
+
+
+    private void handleRequest(Socket socket)
+    {
+        long start = System.currentTimeMillis();
+        try
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+            OutputStream out = socket.getOutputStream();
+
+            String requestToken = in.readLine();
+            if ((requestToken == null) || ! MessageDigest.isEqual(token, requestToken.getBytes(UTF8)))
+            {
+                logger.warn("rejected request with invalid token from {}", socket.getRemoteSocketAddress());
+                writeStatus(out, STATUS_ERROR + " invalid token");
+                return;
+            }
+
+            List<String> argv = readRequest(in);
+            logger.debug("request: {}", argv);
+
+            // the report is buffered so that the status can precede it
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
+            try
+            {
+                CommandLine args = new CommandLine(argv.toArray(new String[argv.size()]));
+                ClassIndex requestIndex = args.isOptionEnabled(CommandLine.Options.USE_CLASS_INDEX) ? classIndex : null;
+                Main.check(args, requestIndex, report);
+            }
+            catch (Exception ex)
+            {
+                logger.warn("request failed: {}", argv, ex);
+                writeStatus(out, STATUS_ERROR + " " + String.valueOf(ex.getMessage()).replaceAll("[\\r\\n]+", " "));
+                return;
+            }
+
+            writeStatus(out, STATUS_OK + " " + report.size());
+            report.writeTo(out);
+            out.flush();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to communicate with client", ex);
+        }
+        finally
+        {
+            requestCount.incrementAndGet();
+            logger.debug("request completed in {} ms", System.currentTimeMillis() - start);
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ignored)
+            {
+                // nothing we can do about it
+            }
+        }
+    }
+
+
+    private static List<String> readRequest(BufferedReader in)
+    throws IOException
+    {
+        List<String> argv = new ArrayList<String>();
+        for (String line = in.readLine() ; (line != null) && ! line.isEmpty() ; line = in.readLine())
+        {
+            argv.add(line);
+        }
+        return argv;
+    }
+
+
+    private static void writeStatus(OutputStream out, String status)
+    throws IOException
+    {
+        out.write((status + "\n").getBytes(UTF8));
+        out.flush();
+    }
+}
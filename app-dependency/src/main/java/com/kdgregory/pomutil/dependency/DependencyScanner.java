@@ -16,10 +16,17 @@ package com.kdgregory.pomutil.dependency;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.slf4j.Logger;
@@ -27,6 +34,8 @@ import org.slf4j.LoggerFactory;
 
 import com.kdgregory.pomutil.util.Artifact;
 import com.kdgregory.pomutil.util.Artifact.Scope;
+import com.kdgregory.pomutil.util.ClassIndex;
+import com.kdgregory.pomutil.util.DependencyGraph;
 import com.kdgregory.pomutil.util.LocalRepository;
 import com.kdgregory.pomutil.util.ResolvedPom;
 import com.kdgregory.pomutil.util.Utils;
@@ -34,7 +43,10 @@ import com.kdgregory.pomutil.util.Utils;
 
 /**
  *  Examines all direct dependencies referenced by the POM, to
- *  extract their contained classes.
+ *  extract their contained classes. Optionally resolves and examines
+ *  transitive dependencies, so that classes that are not provided by
+ *  a direct dependency can be attributed to the artifact that does
+ *  provide them.
  */
 public class DependencyScanner
 {
@@ -46,16 +58,59 @@ public class DependencyScanner
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     private LocalRepository repo;
+    private ClassIndex classIndex;
     private ResolvedPom pom;
 
+    private ClassNameTable symbols;
     private Set<Artifact> dependencies = new TreeSet<Artifact>();
-    private Map<String,Artifact> dependencyLookup = new HashMap<String,Artifact>();
+    private DependencyGraph dependencyGraph;
 
+    private ProviderLookup directProviders = new ProviderLookup();
+    private ProviderLookup transitiveProviders = new ProviderLookup();
 
+
+    /**
+     *  Creates an instance that uses the default class index.
+     */
     public DependencyScanner(File pomFile)
     throws IOException
     {
-        repo = new LocalRepository();
+        this(pomFile, new ClassIndex(), new ClassNameTable());
+    }
+
+
+    /**
+     *  Creates an instance that uses the specified class index and symbol table.
+     *  If passed a <code>null</code> index, will read every dependency JAR.
+     */
+    public DependencyScanner(File pomFile, ClassIndex classIndex, ClassNameTable symbols)
+    throws IOException
+    {
+        this(pomFile, classIndex, symbols, false);
+    }
+
+
+    /**
+     *  Creates an instance that uses the specified class index and symbol table,
+     *  optionally resolving transitive dependencies.
+     */
+    public DependencyScanner(File pomFile, ClassIndex classIndex, ClassNameTable symbols, boolean resolveTransitive)
+    throws IOException
+    {
+        this(pomFile, new LocalRepository(), classIndex, symbols, resolveTransitive);
+    }
+
+
+    /**
+     *  Base constructor, which also specifies the repository used to resolve
+     *  the POM and its dependencies.
+     */
+    public DependencyScanner(File pomFile, LocalRepository repo, ClassIndex classIndex, ClassNameTable symbols, boolean resolveTransitive)
+    throws IOException
+    {
+        this.repo = repo;
+        this.classIndex = classIndex;
+        this.symbols = symbols;
         pom = new ResolvedPom(pomFile, repo);
         for (ResolvedPom imported : pom.getImportedPoms())
         {
@@ -63,6 +118,8 @@ public class DependencyScanner
         }
         dependencies.addAll(pom.getDirectDependencies().values());
         buildDependencyLookup();
+        if (resolveTransitive)
+            buildTransitiveLookup();
     }
 
 
@@ -107,10 +164,152 @@ public class DependencyScanner
      */
     public Artifact getDependency(String className, Scope scope)
     {
-        Artifact dependency = dependencyLookup.get(className);
-        if ((dependency == null) || (dependency.scope != scope))
-            return null;
-        return dependency;
+        int classId = symbols.getId(className);
+        return (classId < 0) ? null : getDependency(classId, scope);
+    }
+
+
+    /**
+     *  Returns the dependency that provides the specified class and scope, where
+     *  the class is identified by its ID in this scanner's symbol table. If more
+     *  than one dependency in that scope provides the class, returns the first
+     *  (in the order of {@link #getDependencies}). Returns <code>null</code> if
+     *  the class is not provided by a dependency of this POM.
+     */
+    public Artifact getDependency(int classId, Scope scope)
+    {
+        Artifact dependency = directProviders.get(classId);
+        if ((dependency == null) || (dependency.scope == scope))
+            return dependency;
+
+        // the class is provided by a dependency in a different scope; this is
+        // only worth examining further if there are multiple providers
+
+        List<Artifact> candidates = new ArrayList<Artifact>(2);
+        directProviders.getAll(classId, candidates);
+        for (Artifact candidate : candidates)
+        {
+            if (candidate.scope == scope)
+                return candidate;
+        }
+        return null;
+    }
+
+
+    /**
+     *  Returns the transitive dependency that provides the specified class, where
+     *  the class is identified by its ID in this scanner's symbol table. If more
+     *  than one transitive dependency provides the class, returns the nearest.
+     *  Returns <code>null</code> if transitive dependencies weren't resolved, or
+     *  none of them provides the class.
+     */
+    public Artifact getTransitiveDependency(int classId)
+    {
+        return transitiveProviders.get(classId);
+    }
+
+
+    /**
+     *  Returns all transitive dependencies, with mediated versions and scopes.
+     *  Returns an empty list if transitive dependencies weren't resolved.
+     */
+    public List<Artifact> getTransitiveDependencies()
+    {
+        return (dependencyGraph == null)
+             ? Collections.<Artifact>emptyList()
+             : dependencyGraph.getTransitiveDependencies();
+    }
+
+
+    /**
+     *  Returns the chain of dependencies that leads from a direct dependency to
+     *  the passed transitive dependency (inclusive).
+     */
+    public List<Artifact> getDependencyPath(Artifact artifact)
+    {
+        return (dependencyGraph == null)
+             ? Collections.<Artifact>emptyList()
+             : dependencyGraph.getPath(artifact.toGAKey());
+    }
+
+
+    /**
+     *  Returns the classes that are provided by more than one dependency, direct
+     *  or transitive, along with the artifacts that provide them.
+     */
+    public SortedMap<String,List<Artifact>> getDuplicateClasses()
+    {
+        SortedMap<String,List<Artifact>> result = new TreeMap<String,List<Artifact>>();
+        int maxClassId = Math.max(directProviders.size(), transitiveProviders.size());
+        for (int classId = 0 ; classId < maxClassId ; classId++)
+        {
+            List<Artifact> classProviders = getAllProviders(classId);
+            if (classProviders.size() > 1)
+                result.put(symbols.getName(classId), classProviders);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the packages whose classes are provided by more than one dependency,
+     *  direct or transitive, along with the artifacts that provide them.
+     */
+    public SortedMap<String,List<Artifact>> getSplitPackages()
+    {
+        // we track providers by their position in a local list, so that each
+        // package needs only a bitset rather than a set of artifacts
+
+        List<Artifact> allProviders = new ArrayList<Artifact>();
+        Map<Artifact,Integer> providerIndexes = new HashMap<Artifact,Integer>();
+        Map<String,BitSet> packageProviders = new HashMap<String,BitSet>();
+
+        int maxClassId = Math.max(directProviders.size(), transitiveProviders.size());
+        for (int classId = 0 ; classId < maxClassId ; classId++)
+        {
+            List<Artifact> classProviders = getAllProviders(classId);
+            if (classProviders.isEmpty())
+                continue;
+
+            String packageName = packageOf(symbols.getName(classId));
+            if (packageName == null)
+                continue;
+
+            BitSet providerSet = packageProviders.get(packageName);
+            if (providerSet == null)
+            {
+                providerSet = new BitSet();
+                packageProviders.put(packageName, providerSet);
+            }
+
+            for (Artifact provider : classProviders)
+            {
+                Integer index = providerIndexes.get(provider);
+                if (index == null)
+                {
+                    index = Integer.valueOf(allProviders.size());
+                    allProviders.add(provider);
+                    providerIndexes.put(provider, index);
+                }
+                providerSet.set(index.intValue());
+            }
+        }
+
+        SortedMap<String,List<Artifact>> result = new TreeMap<String,List<Artifact>>();
+        for (Map.Entry<String,BitSet> entry : packageProviders.entrySet())
+        {
+            BitSet providerSet = entry.getValue();
+            if (providerSet.cardinality() < 2)
+                continue;
+
+            List<Artifact> providerList = new ArrayList<Artifact>(providerSet.cardinality());
+            for (int idx = providerSet.nextSetBit(0) ; idx >= 0 ; idx = providerSet.nextSetBit(idx + 1))
+            {
+                providerList.add(allProviders.get(idx));
+            }
+            result.put(entry.getKey(), providerList);
+        }
+        return result;
     }
 
 
@@ -127,10 +326,150 @@ public class DependencyScanner
             if (jarFile == null)
                 throw new IOException("dependency not in repository: " + dependency);
             logger.debug("processing {} from {}", dependency, jarFile);
-            for (String className : Utils.extractClassesFromJar(jarFile))
+            directProviders.add(dependency, getClasses(jarFile));
+        }
+    }
+
+
+    /**
+     *  Transitive dependencies are processed nearest-first, so that each class
+     *  is attributed to the nearest.
+     *  Unlike direct dependencies, a missing JAR is not an error: it's common
+     *  for a POM to declare dependencies that aren't actually needed.
+     */
+    private void buildTransitiveLookup()
+    throws IOException
+    {
+        dependencyGraph = new DependencyGraph(repo, dependencies, pom.getManagedVersions());
+        for (Artifact dependency : dependencyGraph.getTransitiveDependencies())
+        {
+            if (! dependency.packaging.equals("jar"))
+                continue;
+
+            File jarFile = repo.resolve(dependency);
+            if (jarFile == null)
+            {
+                logger.debug("transitive dependency not in repository: {}", dependency);
+                continue;
+            }
+            logger.debug("processing transitive {} from {}", dependency, jarFile);
+            transitiveProviders.add(dependency, getClasses(jarFile));
+        }
+    }
+
+
+    private List<Artifact> getAllProviders(int classId)
+    {
+        List<Artifact> result = new ArrayList<Artifact>(2);
+        directProviders.getAll(classId, result);
+        transitiveProviders.getAll(classId, result);
+        return result;
+    }
+
+
+    /**
+     *  Returns the package containing the passed class, <code>null</code> if
+     *  it's in the default package. Since nested classes are named with periods,
+     *  we skip over any prefix that is itself a known class.
+     */
+    private String packageOf(String className)
+    {
+        for (int idx = className.lastIndexOf('.') ; idx > 0 ; idx = className.lastIndexOf('.', idx - 1))
+        {
+            String prefix = className.substring(0, idx);
+            int prefixId = symbols.getId(prefix);
+            if ((prefixId < 0) || getAllProviders(prefixId).isEmpty())
+                return prefix;
+        }
+        return null;
+    }
+
+
+    private List<String> getClasses(File jarFile)
+    throws IOException
+    {
+        return (classIndex != null)
+             ? classIndex.getClasses(jarFile)
+             : Utils.extractClassesFromJar(jarFile);
+    }
+
+
+    /**
+     *  Maps class IDs to the artifacts that provide them. The first provider of
+     *  each class is held in an array indexed by class ID; since duplicates are
+     *  rare, any additional providers are held in a sparse map.
+     */
+    private class ProviderLookup
+    {
+        // the index of the providing artifact, plus one (so that 0 means none)
+        private List<Artifact> providers = new ArrayList<Artifact>();
+        private int[] lookup = new int[0];
+        private Map<Integer,int[]> additionalProviders = new HashMap<Integer,int[]>();
+
+        public void add(Artifact provider, List<String> classes)
+        {
+            providers.add(provider);
+            int providerValue = providers.size();
+            for (String className : classes)
             {
-                dependencyLookup.put(className, dependency);
+                // module descriptors aren't classes, and versioned entries duplicate the base entries
+                if (className.equals("module-info") || className.startsWith("META-INF."))
+                    continue;
+
+                int classId = symbols.intern(className);
+                if (classId >= lookup.length)
+                    lookup = Arrays.copyOf(lookup, Math.max(classId + 1, lookup.length * 2));
+
+                if (lookup[classId] == 0)
+                {
+                    lookup[classId] = providerValue;
+                    continue;
+                }
+
+                int[] additional = additionalProviders.get(classId);
+                additional = (additional == null) ? new int[1] : Arrays.copyOf(additional, additional.length + 1);
+                additional[additional.length - 1] = providerValue;
+                additionalProviders.put(classId, additional);
+            }
+        }
+
+        /**
+         *  Returns the first provider of the specified class, <code>null</code> if
+         *  there is none.
+         */
+        public Artifact get(int classId)
+        {
+            if (classId >= lookup.length)
+                return null;
+
+            int providerIdx = lookup[classId] - 1;
+            return (providerIdx < 0) ? null : providers.get(providerIdx);
+        }
+
+        /**
+         *  Adds all providers of the specified class to the passed list, in the
+         *  order that they were added to the lookup.
+         */
+        public void getAll(int classId, List<Artifact> result)
+        {
+            Artifact first = get(classId);
+            if (first == null)
+                return;
+
+            result.add(first);
+            int[] additional = additionalProviders.get(classId);
+            if (additional != null)
+            {
+                for (int providerValue : additional)
+                {
+                    result.add(providers.get(providerValue - 1));
+                }
             }
         }
+
+        public int size()
+        {
+            return lookup.length;
+        }
     }
 }
@@ -0,0 +1,156 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+
+/**
+ *  A reverse index from referenced classes to the project classes that
+ *  reference them, used to explain why a dependency is needed. Classes are
+ *  identified by their ID in a {@link ClassNameTable}.
+ *  <p>
+ *  The index is stored as compressed adjacency lists: a single array holds the
+ *  referring classes for all referenced classes, and a second array holds the
+ *  offset of each referenced class's entries. So memory is proportional to the
+ *  number of references, regardless of how many classes are involved.
+ *  <p>
+ *  Instances are immutable once constructed, and therefore thread-safe.
+ */
+public class EvidenceIndex
+{
+    private ClassNameTable symbols;
+
+    // the referrers for class ID N are at referrers[offsets[N]] .. referrers[offsets[N+1] - 1]
+    private int[] offsets;
+    private int[] referrers;
+
+
+    /**
+     *  Builds the index from one or more maps of referencing class IDs to the IDs
+     *  of the classes that they reference (as produced by {@link
+     *  ClassScanner#getClassReferences}). All IDs must come from the passed symbol
+     *  table. The maps are not retained.
+     */
+    public EvidenceIndex(ClassNameTable symbols, Collection<Map<Integer,int[]>> classReferences)
+    {
+        this.symbols = symbols;
+
+        // first pass counts references to each class
+
+        int[] counts = new int[symbols.size() + 1];
+        int referenceCount = 0;
+        for (Map<Integer,int[]> map : classReferences)
+        {
+            for (int[] ids : map.values())
+            {
+                for (int id : ids)
+                {
+                    counts[id]++;
+                }
+                referenceCount += ids.length;
+            }
+        }
+
+        // second pass fills the adjacency array, using the running offsets
+
+        offsets = new int[counts.length];
+        for (int ii = 1 ; ii < counts.length ; ii++)
+        {
+            offsets[ii] = offsets[ii - 1] + counts[ii - 1];
+        }
+
+        referrers = new int[referenceCount];
+        int[] next = offsets.clone();
+        for (Map<Integer,int[]> map : classReferences)
+        {
+            for (Map.Entry<Integer,int[]> entry : map.entrySet())
+            {
+                int source = entry.getKey().intValue();
+                for (int id : entry.getValue())
+                {
+                    referrers[next[id]++] = source;
+                }
+            }
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the IDs of the classes that reference the specified class.
+     */
+    public BitSet getReferrers(int classId)
+    {
+        BitSet result = new BitSet();
+        addReferrers(classId, result);
+        return result;
+    }
+
+
+    /**
+     *  Returns the IDs of the classes that reference any of the specified classes.
+     */
+    public BitSet getReferrers(BitSet classIds)
+    {
+        BitSet result = new BitSet();
+        for (int id = classIds.nextSetBit(0) ; id >= 0 ; id = classIds.nextSetBit(id + 1))
+        {
+            addReferrers(id, result);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the IDs of the classes that reference the named class; empty if
+     *  the class is not referenced.
+     */
+    public BitSet getReferrers(String className)
+    {
+        return getReferrers(symbols.getId(className));
+    }
+
+
+    /**
+     *  Returns the total number of references held by this index.
+     */
+    public int size()
+    {
+        return referrers.length;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private void addReferrers(int classId, BitSet result)
+    {
+        // classes interned after the index was built aren't referenced
+        if ((classId < 0) || (classId >= offsets.length - 1))
+            return;
+
+        for (int ii = offsets[classId] ; ii < offsets[classId + 1] ; ii++)
+        {
+            result.set(referrers[ii]);
+        }
+    }
+}
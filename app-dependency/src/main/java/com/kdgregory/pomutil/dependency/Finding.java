@@ -0,0 +1,133 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+import com.kdgregory.pomutil.util.Artifact;
+
+
+/**
+ *  A single result of a dependency check, as passed to a {@link ReportWriter}.
+ *  Depending on its type, a finding identifies either a package or class (with
+ *  the artifacts that provide it), or a dependency.
+ */
+public class Finding
+{
+    public enum Type
+    {
+        PACKAGE_MISSING_DEPENDENCY  (true,  "Referenced package is not provided by any direct dependency"),
+        TRANSITIVE_DEPENDENCY       (true,  "Referenced classes are provided by a transitive dependency"),
+        UNUSED_MAINLINE_DEPENDENCY  (false, "Dependency is not referenced by any class"),
+        UNUSED_TEST_DEPENDENCY      (false, "Test dependency is not referenced by any test class"),
+        UNSCOPED_TEST_DEPENDENCY    (false, "Dependency is only referenced by test classes"),
+        DUPLICATE_CLASS             (false, "Class is provided by multiple dependencies"),
+        SPLIT_PACKAGE               (false, "Package is split between multiple dependencies");
+
+        private boolean isError;
+        private String description;
+
+        private Type(boolean isError, String description)
+        {
+            this.isError = isError;
+            this.description = description;
+        }
+
+        /**
+         *  Returns <code>true</code> if this type of finding indicates that the
+         *  project's dependencies are incomplete, <code>false</code> if it only
+         *  indicates that they could be improved.
+         */
+        public boolean isError()
+        {
+            return isError;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+    }
+
+
+    public final Type type;
+    public final String name;
+    public final List<Artifact> artifacts;
+    public final List<Artifact> path;
+    public final SortedSet<String> classes;
+    public final SortedSet<String> referencingClasses;
+
+
+    /**
+     *  @param  type        The type of finding.
+     *  @param  name        The package or class name; <code>null</code> for
+     *                      findings that identify a dependency.
+     *  @param  artifacts   The dependency, or the artifacts that provide the
+     *                      named class or package.
+     *  @param  path        For transitive dependencies, the chain of dependencies
+     *                      that includes it, starting with a direct dependency.
+     *  @param  classes     The referenced classes that caused the finding.
+     *  @param  referencingClasses  The project classes that reference those
+     *                      classes; empty unless evidence is recorded.
+     */
+    public Finding(Type type, String name, List<Artifact> artifacts, List<Artifact> path,
+                   SortedSet<String> classes, SortedSet<String> referencingClasses)
+    {
+        this.type = type;
+        this.name = name;
+        this.artifacts = Collections.unmodifiableList(artifacts);
+        this.path = Collections.unmodifiableList(path);
+        this.classes = Collections.unmodifiableSortedSet(classes);
+        this.referencingClasses = Collections.unmodifiableSortedSet(referencingClasses);
+    }
+
+
+    /**
+     *  Constructs a finding that identifies a dependency.
+     */
+    public Finding(Type type, Artifact artifact, List<Artifact> path,
+                   SortedSet<String> classes, SortedSet<String> referencingClasses)
+    {
+        this(type, null, Collections.singletonList(artifact), path, classes, referencingClasses);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns a one-line description of the finding, for human consumption.
+     */
+    public String getMessage()
+    {
+        StringBuilder sb = new StringBuilder(type.getDescription()).append(": ");
+        if (name != null)
+        {
+            sb.append(name);
+            if (! artifacts.isEmpty())
+                sb.append(" ").append(artifacts);
+        }
+        else
+        {
+            sb.append(artifacts.get(0));
+            if (! path.isEmpty())
+                sb.append(" (via ").append(path.get(0)).append(")");
+        }
+        return sb.toString();
+    }
+}
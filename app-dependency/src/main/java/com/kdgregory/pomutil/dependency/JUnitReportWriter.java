@@ -0,0 +1,101 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import net.sf.practicalxml.XmlUtil;
+
+import com.kdgregory.pomutil.util.Artifact;
+
+
+/**
+ *  Writes findings in the JUnit XML format understood by most CI servers. Each
+ *  project becomes a <code>testsuite</code>, and each finding a failed
+ *  <code>testcase</code> whose classname is the finding type. Because findings
+ *  are written as they're received, suites do not carry summary counts; CI
+ *  servers compute these from the testcases.
+ */
+public class JUnitReportWriter
+extends ReportWriter
+{
+    public JUnitReportWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+
+    @Override
+    public void begin()
+    {
+        out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        out.println("<testsuites name=\"dependency-check\">");
+    }
+
+
+    @Override
+    public void startModule(String moduleName, File projectDir)
+    {
+        String name = (moduleName != null) ? moduleName : projectDir.getAbsoluteFile().getName();
+        out.println("  <testsuite name=\"" + XmlUtil.escape(name) + "\">");
+    }
+
+
+    @Override
+    public void write(Finding finding)
+    {
+        String testName = (finding.name != null) ? finding.name : finding.artifacts.get(0).toString();
+
+        StringBuilder details = new StringBuilder();
+        for (Artifact artifact : finding.artifacts)
+        {
+            details.append("artifact: ").append(artifact).append(" (").append(artifact.scope.name().toLowerCase()).append(")\n");
+        }
+        for (Artifact artifact : finding.path)
+        {
+            details.append("path: ").append(artifact).append("\n");
+        }
+        for (String className : finding.classes)
+        {
+            details.append("class: ").append(className).append("\n");
+        }
+        for (String className : finding.referencingClasses)
+        {
+            details.append("referenced by: ").append(className).append("\n");
+        }
+
+        out.println("    <testcase classname=\"" + finding.type.name() + "\" name=\"" + XmlUtil.escape(testName) + "\">");
+        out.println("      <failure type=\"" + finding.type.name() + "\" message=\"" + XmlUtil.escape(finding.getMessage()) + "\">"
+                    + XmlUtil.escape(details.toString()) + "</failure>");
+        out.println("    </testcase>");
+    }
+
+
+    @Override
+    public void endModule()
+    {
+        out.println("  </testsuite>");
+        out.flush();
+    }
+
+
+    @Override
+    public void end()
+    {
+        out.println("</testsuites>");
+        out.flush();
+    }
+}
@@ -0,0 +1,270 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ *  Identifies the classes provided by a JDK. For JDK 9 and later, this reads
+ *  the runtime image (the <code>jrt:/</code> filesystem); for earlier JDKs it
+ *  reads <code>rt.jar</code>. In either case a class is checked by its full
+ *  name, not its package: the nested-class names used by this application
+ *  don't identify where the package ends, and a package prefix would hide
+ *  missing dependencies on APIs removed from the JDK (for example, JAXB's
+ *  <code>javax.xml.bind</code> is not part of JDK 11, but <code>javax.xml</code>
+ *  is). Checking by class also handles JDK packages, such as
+ *  <code>javax.annotation</code>, that are commonly extended by libraries.
+ *  <p>
+ *  Instances are cached per <code>java.home</code>, and are thread-safe.
+ */
+public class JdkClasses
+{
+    private static Logger logger = LoggerFactory.getLogger(JdkClasses.class);
+
+    private static Map<String,JdkClasses> instances = new HashMap<String,JdkClasses>();
+
+    private SortedSet<String> packages = new TreeSet<String>();
+    private Set<String> classes = new HashSet<String>();
+
+
+    /**
+     *  Returns the instance for the running JVM.
+     */
+    public static JdkClasses forCurrentJvm()
+    {
+        return forJavaHome(System.getProperty("java.home"));
+    }
+
+
+    /**
+     *  Returns the instance for the JDK installed in the specified directory.
+     *  If unable to read the JDK's classes, logs a warning and returns an
+     *  instance that doesn't recognize any classes.
+     */
+    public static synchronized JdkClasses forJavaHome(String javaHome)
+    {
+        JdkClasses instance = instances.get(javaHome);
+        if (instance == null)
+        {
+            instance = new JdkClasses(javaHome);
+            instances.put(javaHome, instance);
+        }
+        return instance;
+    }
+
+
+    private JdkClasses(String javaHome)
+    {
+        try
+        {
+            if (loadFromRuntimeImage(javaHome))
+                return;
+            if (loadFromRtJar(javaHome))
+                return;
+            logger.warn("unable to find JDK classes in {}; results will include Java classes", javaHome);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to read JDK classes in " + javaHome + "; results will include Java classes", ex);
+            packages.clear();
+            classes.clear();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the names of all packages that contain JDK classes.
+     */
+    public SortedSet<String> getPackages()
+    {
+        return Collections.unmodifiableSortedSet(packages);
+    }
+
+
+    /**
+     *  Determines whether the passed class is provided by the JDK. The classname
+     *  must be in the form produced by {@link ClassScanner}, with nested classes
+     *  separated by periods.
+     */
+    public boolean isJdkClass(String className)
+    {
+        return classes.contains(className);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Attempts to read packages from a module image. This is only possible if
+     *  the current JVM supports the jrt filesystem, and requires an explicitly
+     *  constructed filesystem if the requested JDK isn't the one that's running.
+     */
+    private boolean loadFromRuntimeImage(String javaHome)
+    throws IOException
+    {
+        if (! new File(javaHome, "lib/modules").exists())
+            return false;
+
+        URI uri = URI.create("jrt:/");
+        FileSystem fs = null;
+        boolean closeWhenDone = false;
+        try
+        {
+            if (new File(javaHome).getCanonicalFile().equals(new File(System.getProperty("java.home")).getCanonicalFile()))
+            {
+                fs = FileSystems.getFileSystem(uri);
+            }
+            else
+            {
+                Map<String,String> env = new HashMap<String,String>();
+                env.put("java.home", javaHome);
+                fs = FileSystems.newFileSystem(uri, env);
+                closeWhenDone = true;
+            }
+        }
+        catch (ProviderNotFoundException ex)
+        {
+            return false;
+        }
+        catch (FileSystemNotFoundException ex)
+        {
+            return false;
+        }
+
+        try
+        {
+            logger.debug("reading JDK classes from runtime image in {}", javaHome);
+            DirectoryStream<Path> stream = Files.newDirectoryStream(fs.getPath("/packages"));
+            try
+            {
+                for (Path path : stream)
+                {
+                    String packageName = path.getFileName().toString();
+                    if (addClasses(fs, path, packageName))
+                        packages.add(packageName);
+                }
+            }
+            finally
+            {
+                stream.close();
+            }
+            return true;
+        }
+        finally
+        {
+            if (closeWhenDone)
+                fs.close();
+        }
+    }
+
+
+    /**
+     *  Adds the classes in a package, from all modules that provide it. Returns
+     *  false if there aren't any: the image's package list includes intermediate
+     *  directories (eg, "org").
+     */
+    private boolean addClasses(FileSystem fs, Path packagePath, String packageName)
+    throws IOException
+    {
+        String packageDir = packageName.replace('.', '/');
+        boolean result = false;
+        DirectoryStream<Path> moduleStream = Files.newDirectoryStream(packagePath);
+        try
+        {
+            for (Path modulePath : moduleStream)
+            {
+                Path dir = fs.getPath("/modules", modulePath.getFileName().toString(), packageDir);
+                DirectoryStream<Path> classStream = Files.newDirectoryStream(dir, "*.class");
+                try
+                {
+                    for (Path classPath : classStream)
+                    {
+                        String filename = classPath.getFileName().toString();
+                        classes.add(packageName + "." + filename.substring(0, filename.length() - 6).replace('$', '.'));
+                        result = true;
+                    }
+                }
+                finally
+                {
+                    classStream.close();
+                }
+            }
+            return result;
+        }
+        finally
+        {
+            moduleStream.close();
+        }
+    }
+
+
+    private boolean loadFromRtJar(String javaHome)
+    throws IOException
+    {
+        File rtJarFile = new File(javaHome, "lib/rt.jar");
+        if (! rtJarFile.exists())
+            return false;
+
+        logger.debug("reading JDK classes from {}", rtJarFile);
+        JarFile jar = new JarFile(rtJarFile);
+        try
+        {
+            for (Enumeration<JarEntry> entryItx = jar.entries() ; entryItx.hasMoreElements() ; )
+            {
+                String filename = entryItx.nextElement().getName();
+                if (! filename.endsWith(".class"))
+                    continue;
+                int pkgIdx = filename.lastIndexOf('/');
+                if (pkgIdx > 0)
+                    packages.add(filename.substring(0, pkgIdx).replace('/', '.'));
+                classes.add(filename.substring(0, filename.length() - 6).replace('/', '.').replace('$', '.'));
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+        return true;
+    }
+}
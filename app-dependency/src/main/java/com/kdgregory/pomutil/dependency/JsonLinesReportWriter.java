@@ -0,0 +1,152 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+import com.kdgregory.pomutil.util.Artifact;
+
+
+/**
+ *  Writes each finding as a single-line JSON object, for consumption by other
+ *  programs. Artifacts are written with full coordinates.
+ */
+public class JsonLinesReportWriter
+extends ReportWriter
+{
+    private String moduleName;
+    private File projectDir;
+
+
+    public JsonLinesReportWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+
+    @Override
+    public void startModule(String moduleName, File projectDir)
+    {
+        this.moduleName = moduleName;
+        this.projectDir = projectDir;
+    }
+
+
+    @Override
+    public void write(Finding finding)
+    {
+        StringBuilder sb = new StringBuilder(256).append("{");
+        appendField(sb, "type", finding.type.name()).append(",");
+        if (moduleName != null)
+            appendField(sb, "module", moduleName).append(",");
+        appendField(sb, "project", projectDir.getPath()).append(",");
+        if (finding.name != null)
+            appendField(sb, "name", finding.name).append(",");
+        appendArtifacts(sb.append("\"artifacts\":"), finding.artifacts).append(",");
+        if (! finding.path.isEmpty())
+            appendArtifacts(sb.append("\"path\":"), finding.path).append(",");
+        appendStrings(sb.append("\"classes\":"), finding.classes).append(",");
+        appendStrings(sb.append("\"referencingClasses\":"), finding.referencingClasses).append(",");
+        appendField(sb, "message", finding.getMessage());
+        out.println(sb.append("}"));
+    }
+
+
+//----------------------------------------------------------------------------
+//  JSON helpers, shared with SarifReportWriter
+//----------------------------------------------------------------------------
+
+    static StringBuilder appendField(StringBuilder sb, String name, String value)
+    {
+        appendString(sb, name).append(":");
+        return appendString(sb, value);
+    }
+
+
+    static StringBuilder appendString(StringBuilder sb, String value)
+    {
+        sb.append('"');
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            switch (c)
+            {
+                case '"' :
+                    sb.append("\\\"");
+                    break;
+                case '\\' :
+                    sb.append("\\\\");
+                    break;
+                case '\n' :
+                    sb.append("\\n");
+                    break;
+                case '\r' :
+                    sb.append("\\r");
+                    break;
+                case '\t' :
+                    sb.append("\\t");
+                    break;
+                default :
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int)c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
+
+    static StringBuilder appendStrings(StringBuilder sb, Collection<String> values)
+    {
+        sb.append("[");
+        boolean first = true;
+        for (String value : values)
+        {
+            if (! first)
+                sb.append(",");
+            appendString(sb, value);
+            first = false;
+        }
+        return sb.append("]");
+    }
+
+
+    static StringBuilder appendArtifacts(StringBuilder sb, Collection<Artifact> artifacts)
+    {
+        sb.append("[");
+        boolean first = true;
+        for (Artifact artifact : artifacts)
+        {
+            if (! first)
+                sb.append(",");
+            sb.append("{");
+            appendField(sb, "groupId", artifact.groupId).append(",");
+            appendField(sb, "artifactId", artifact.artifactId).append(",");
+            appendField(sb, "version", String.valueOf(artifact.version)).append(",");
+            if (! StringUtil.isBlank(artifact.classifier))
+                appendField(sb, "classifier", artifact.classifier).append(",");
+            appendField(sb, "type", artifact.packaging).append(",");
+            appendField(sb, "scope", artifact.scope.name().toLowerCase());
+            sb.append("}");
+            first = false;
+        }
+        return sb.append("]");
+    }
+}
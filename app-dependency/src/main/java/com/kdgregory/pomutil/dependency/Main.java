@@ -14,6 +14,14 @@
 
 package com.kdgregory.pomutil.dependency;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.sf.kdgcommons.lang.ObjectUtil;
+
+import com.kdgregory.pomutil.util.ClassIndex;
+
 
 /**
  *  Command-line invocation for {@link DependencyCheck}.
@@ -24,7 +32,54 @@ public class Main
     throws Exception
     {
         CommandLine args = new CommandLine(argv);
-        DependencyCheck checker = new DependencyCheck(args).run();
-        new Reporter(args, checker).output(System.out);
+        if (args.isOptionEnabled(CommandLine.Options.DAEMON))
+        {
+            new DependencyDaemon(args).start().run();
+        }
+        else if (args.isOptionEnabled(CommandLine.Options.USE_DAEMON))
+        {
+            new DaemonClient(args, argv).run(System.out);
+        }
+        else
+        {
+            check(args, DependencyCheck.createClassIndex(args), System.out);
+        }
+    }
+
+
+    /**
+     *  Performs a single or reactor check, as selected by the arguments, and
+     *  writes the report. Findings are written as they're produced: for a single
+     *  project, as each category of findings is available, and for a reactor,
+     *  as each module's check completes (in module order). Also invoked by {@link DependencyDaemon}, which
+     *  supplies a long-lived class index.
+     */
+    static void check(final CommandLine args, ClassIndex classIndex, OutputStream out)
+    throws IOException
+    {
+        if (args.isOptionEnabled(CommandLine.Options.REACTOR))
+        {
+            final ReportWriter writer = Reporter.createWriter(args, out);
+            writer.begin();
+            new ReactorCheck(args, classIndex).run(new ReactorCheck.ModuleListener()
+            {
+                @Override
+                public void moduleChecked(File moduleDir, DependencyCheck checker)
+                throws IOException
+                {
+                    new Reporter(args, checker, moduleDir.getName()).output(writer);
+                }
+            });
+            writer.end();
+        }
+        else
+        {
+            File projectDir = new File(ObjectUtil.defaultValue(args.shift(), System.getProperty("user.dir")));
+            DependencyCheck checker = new DependencyCheck(args, classIndex, DependencyCheck.parseParallelism(args), projectDir);
+            ReportWriter writer = Reporter.createWriter(args, out);
+            writer.begin();
+            new Reporter(args, checker).run(writer);
+            writer.end();
+        }
     }
 }
@@ -0,0 +1,248 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.kdgcommons.lang.ObjectUtil;
+
+import com.kdgregory.pomutil.util.ClassIndex;
+import com.kdgregory.pomutil.util.ReadOnlyPom;
+
+
+/**
+ *  Runs {@link DependencyCheck} against every module of a multi-module build.
+ *  Modules are discovered by recursively following the <code>&lt;modules&gt;</code>
+ *  section of the root POM; aggregator (<code>pom</code>-packaged) projects are
+ *  not themselves checked.
+ *  <p>
+ *  Modules are checked concurrently, one module per thread. All checks share a
+ *  single class index, along with the parent POM cache and JDK class list, so
+ *  a dependency used by many modules is only read once. Results may either be
+ *  retrieved after all modules have been checked, or passed to a listener as
+ *  each module completes.
+ */
+public class ReactorCheck
+{
+    /**
+     *  Notified by {@link #run(ModuleListener)} as each module's check completes.
+     *  Modules are reported in the order that they were discovered, so a module
+     *  is reported as soon as it and all preceding modules have been checked.
+     */
+    public interface ModuleListener
+    {
+        void moduleChecked(File moduleDir, DependencyCheck checker)
+        throws IOException;
+    }
+
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private CommandLine args;
+    private File rootDir;
+    private ClassIndex classIndex;
+    private int parallelism;
+
+    private Map<File,DependencyCheck> results = new LinkedHashMap<File,DependencyCheck>();
+
+
+    /**
+     *  Standard constructor, which processes invocation arguments. The first
+     *  non-option argument is the root project directory; if omitted, uses
+     *  the current directory.
+     */
+    public ReactorCheck(CommandLine args)
+    {
+        this(args, DependencyCheck.createClassIndex(args));
+    }
+
+
+    /**
+     *  Constructor for a long-running server, where the class index is shared
+     *  between requests.
+     */
+    ReactorCheck(CommandLine args, ClassIndex classIndex)
+    {
+        if (! args.getOptionValues(CommandLine.Options.ARTIFACT).isEmpty())
+            throw new IllegalArgumentException("--artifact can not be used with --reactor");
+
+        this.args = args;
+        this.classIndex = classIndex;
+        parallelism = DependencyCheck.parseParallelism(args);
+        String projectDir = ObjectUtil.defaultValue(args.shift(), System.getProperty("user.dir"));
+        rootDir = new File(projectDir);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Operational methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Discovers and checks all modules, retaining their results. Returns itself
+     *  as a convenience for chained calls.
+     *
+     *  @throws IOException if unable to read a POM, or if any module check
+     *          fails; in the latter case, the message identifies the module.
+     */
+    public ReactorCheck run()
+    throws IOException
+    {
+        return run(new ModuleListener()
+        {
+            @Override
+            public void moduleChecked(File moduleDir, DependencyCheck checker)
+            {
+                results.put(moduleDir, checker);
+            }
+        });
+    }
+
+
+    /**
+     *  Discovers and checks all modules, passing each module's results to the
+     *  provided listener rather than retaining them. Returns itself as a
+     *  convenience for chained calls.
+     *
+     *  @throws IOException if unable to read a POM, if any module check fails
+     *          (in which case the message identifies the module), or if thrown
+     *          by the listener. Remaining checks are cancelled.
+     */
+    public ReactorCheck run(ModuleListener listener)
+    throws IOException
+    {
+        List<File> modules = new ArrayList<File>();
+        discoverModules(rootDir.getCanonicalFile(), new HashSet<File>(), modules);
+        logger.debug("checking {} modules with parallelism {}", modules.size(), parallelism);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, modules.size())));
+        try
+        {
+            List<Future<DependencyCheck>> futures = new ArrayList<Future<DependencyCheck>>();
+            for (final File moduleDir : modules)
+            {
+                final DependencyCheck checker = new DependencyCheck(args, classIndex, 1, moduleDir);
+                futures.add(executor.submit(new Callable<DependencyCheck>()
+                {
+                    @Override
+                    public DependencyCheck call() throws Exception
+                    {
+                        return checker.run();
+                    }
+                }));
+            }
+
+            for (int ii = 0 ; ii < modules.size() ; ii++)
+            {
+                listener.moduleChecked(modules.get(ii), waitFor(modules.get(ii), futures.get(ii)));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return this;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Methods to return the results
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the results for each module, keyed by module directory, in the
+     *  order that the modules were discovered. This is empty if the check was
+     *  run with a listener.
+     */
+    public Map<File,DependencyCheck> getResults()
+    {
+        return results;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Depth-first traversal of the module tree. Module entries may name either
+     *  a directory or a POM file; the visited set protects against modules that
+     *  are listed by more than one aggregator.
+     */
+    private void discoverModules(File projectDir, Set<File> visited, List<File> modules)
+    throws IOException
+    {
+        if (! visited.add(projectDir))
+            return;
+
+        File pomFile = new File(projectDir, "pom.xml");
+        ReadOnlyPom pom = new ReadOnlyPom(pomFile);
+        if (! "pom".equals(pom.getGAV().packaging))
+            modules.add(projectDir);
+
+        for (String module : pom.getModules())
+        {
+            File moduleFile = new File(projectDir, module).getCanonicalFile();
+            if (moduleFile.isFile())
+                moduleFile = moduleFile.getParentFile();
+            if (! new File(moduleFile, "pom.xml").isFile())
+            {
+                logger.warn("module {} of {} does not contain a POM; skipping", module, pomFile);
+                continue;
+            }
+            discoverModules(moduleFile, visited, modules);
+        }
+    }
+
+
+    private static DependencyCheck waitFor(File moduleDir, Future<DependencyCheck> future)
+    throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while checking " + moduleDir, ex);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IOException("unable to check " + moduleDir + ": " + cause.getMessage(), cause);
+        }
+    }
+}
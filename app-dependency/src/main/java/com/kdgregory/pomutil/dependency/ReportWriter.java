@@ -0,0 +1,133 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+
+/**
+ *  Writes the findings of one or more dependency checks. Findings are written
+ *  as they are received, rather than being accumulated into a document; the
+ *  document-based formats write their envelope in {@link #begin} and {@link #end}.
+ *  <p>
+ *  Callers invoke {@link #begin} once, then {@link #startModule}, zero or more
+ *  calls to {@link #write}, and {@link #endModule} for each checked project,
+ *  and finally {@link #end}. Subclasses override the methods they need.
+ */
+public abstract class ReportWriter
+{
+    protected final static Charset UTF8 = Charset.forName("UTF-8");
+
+    protected PrintWriter out;
+
+
+    protected ReportWriter(OutputStream out)
+    {
+        this.out = new PrintWriter(new OutputStreamWriter(out, UTF8));
+    }
+
+
+    /**
+     *  Returns the writer for a named format: one of "text" (the default),
+     *  "jsonl", "sarif", or "junit".
+     *
+     *  @throws IllegalArgumentException if passed an unknown format.
+     */
+    public static ReportWriter forFormat(String format, OutputStream out)
+    {
+        if ((format == null) || format.equals("text"))
+            return new TextReportWriter(out);
+        if (format.equals("jsonl"))
+            return new JsonLinesReportWriter(out);
+        if (format.equals("sarif"))
+            return new SarifReportWriter(out);
+        if (format.equals("junit"))
+            return new JUnitReportWriter(out);
+
+        throw new IllegalArgumentException("unknown report format: " + format);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Called before any modules are written.
+     */
+    public void begin()
+    throws IOException
+    {
+        // default does nothing
+    }
+
+
+    /**
+     *  Called before the findings for a single project.
+     *
+     *  @param  moduleName  The module name, for a reactor build; <code>null</code>
+     *                      when checking a single project.
+     *  @param  projectDir  The project directory.
+     */
+    public void startModule(String moduleName, File projectDir)
+    throws IOException
+    {
+        // default does nothing
+    }
+
+
+    /**
+     *  Writes a single finding.
+     */
+    public abstract void write(Finding finding)
+    throws IOException;
+
+
+    /**
+     *  Flushes the findings written so far to the underlying stream. Document
+     *  formats may leave the stream in the middle of a document.
+     */
+    public void flush()
+    throws IOException
+    {
+        out.flush();
+    }
+
+
+    /**
+     *  Called after the findings for a single project.
+     */
+    public void endModule()
+    throws IOException
+    {
+        out.flush();
+    }
+
+
+    /**
+     *  Called after all modules are written. Flushes, but does not close, the
+     *  underlying stream.
+     */
+    public void end()
+    throws IOException
+    {
+        out.flush();
+    }
+}
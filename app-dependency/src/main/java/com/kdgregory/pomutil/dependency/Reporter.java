@@ -16,30 +16,45 @@ package com.kdgregory.pomutil.dependency;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
-import net.sf.kdgcommons.collections.CollectionUtil;
-
 import com.kdgregory.pomutil.util.Artifact;
 
 
 /**
- *  Invoked by DependencyCheck to write the report to StdOut.
+ *  Invoked by DependencyCheck to report its findings. The format of the report
+ *  is selected by the <code>--reportFormat</code> option; findings are passed
+ *  to the {@link ReportWriter} one at a time, as they are extracted from the
+ *  checker. If the reporter runs the check, each category of findings is
+ *  written (and flushed) as soon as the checker produces it.
  */
 public class Reporter
 {
-    private final static String OUTPUT_FORMAT = "%-32s %s%n";
-
     private CommandLine args;
     private DependencyCheck checker;
+    private String moduleName;
 
     public Reporter(CommandLine args, DependencyCheck checker)
+    {
+        this(args, checker, null);
+    }
+
+
+    /**
+     *  Constructor for reporting on one module of a reactor build: the report
+     *  identifies the module.
+     */
+    public Reporter(CommandLine args, DependencyCheck checker, String moduleName)
     {
         this.args = args;
         this.checker = checker;
+        this.moduleName = moduleName;
     }
 
 
@@ -48,18 +63,64 @@ public class Reporter
 //----------------------------------------------------------------------------
 
     /**
-     *  This method does the writing.
+     *  Creates a writer for the format specified by the invocation arguments.
      */
-    public void output(OutputStream out0)
+    public static ReportWriter createWriter(CommandLine args, OutputStream out)
+    {
+        List<String> formats = args.getOptionValues(CommandLine.Options.REPORT_FORMAT);
+        return ReportWriter.forFormat(formats.isEmpty() ? null : formats.get(formats.size() - 1), out);
+    }
+
+
+    /**
+     *  Writes a complete report for this checker.
+     */
+    public void output(OutputStream out)
     throws IOException
     {
-        PrintWriter out = new PrintWriter(new OutputStreamWriter(out0, "UTF-8"));
+        ReportWriter writer = createWriter(args, out);
+        writer.begin();
+        output(writer);
+        writer.end();
+    }
 
-        outputMissingDependencies(out);
-        outputUnusedDependencies(out);
-        outputIncorrectDependencies(out);
 
-        out.flush();
+    /**
+     *  Writes this checker's findings as one module of a larger report. The
+     *  checker must already have been run.
+     */
+    public void output(ReportWriter writer)
+    throws IOException
+    {
+        writer.startModule(moduleName, checker.getProjectDirectory());
+        for (DependencyCheck.ResultType type : DependencyCheck.ResultType.values())
+        {
+            output(writer, type);
+        }
+        writer.endModule();
+    }
+
+
+    /**
+     *  Runs the checker, writing its findings as one module of a larger report.
+     *  Each category of findings is written as soon as it's available, rather
+     *  than waiting for the entire check to finish.
+     */
+    public void run(final ReportWriter writer)
+    throws IOException
+    {
+        writer.startModule(moduleName, checker.getProjectDirectory());
+        checker.run(new DependencyCheck.ResultListener()
+        {
+            @Override
+            public void resultsAvailable(DependencyCheck ignored, DependencyCheck.ResultType type)
+            throws IOException
+            {
+                output(writer, type);
+                writer.flush();
+            }
+        });
+        writer.endModule();
     }
 
 
@@ -67,40 +128,129 @@ public class Reporter
 //  Internals
 //----------------------------------------------------------------------------
 
-    private void outputMissingDependencies(PrintWriter out)
+    private void output(ReportWriter writer, DependencyCheck.ResultType type)
+    throws IOException
+    {
+        switch (type)
+        {
+            case MISSING :
+                outputMissingDependencies(writer);
+                break;
+            case TRANSITIVE :
+                outputTransitiveDependencies(writer);
+                break;
+            case UNUSED :
+                outputUnusedDependencies(writer);
+                outputIncorrectDependencies(writer);
+                break;
+            case CONFLICTS :
+                outputConflicts(writer);
+                break;
+        }
+    }
+
+
+    private void outputMissingDependencies(ReportWriter writer)
+    throws IOException
     {
-        Set<String> missingDependencies
-                    = CollectionUtil.combine(new TreeSet<String>(),
-                            checker.getUnsupportedMainlinePackages(),
-                            checker.getUnsupportedTestPackages());
+        Set<String> missingDependencies = new TreeSet<String>();
+        missingDependencies.addAll(checker.getUnsupportedMainlinePackages());
+        missingDependencies.addAll(checker.getUnsupportedTestPackages());
 
         for (String pkg : missingDependencies)
         {
-            out.format(OUTPUT_FORMAT, "PACKAGE_MISSING_DEPENDENCY", pkg);
+            SortedSet<String> classes = new TreeSet<String>();
+            addPackageClasses(checker.getUnsupportedMainlineClasses(), pkg, classes);
+            addPackageClasses(checker.getUnsupportedTestClasses(), pkg, classes);
+            SortedSet<String> referencingClasses = new TreeSet<String>();
+            for (String className : classes)
+            {
+                referencingClasses.addAll(checker.getReferencingClasses(className));
+            }
+            writer.write(new Finding(Finding.Type.PACKAGE_MISSING_DEPENDENCY, pkg,
+                                     Collections.<Artifact>emptyList(), Collections.<Artifact>emptyList(),
+                                     classes, referencingClasses));
         }
     }
 
 
-    private void outputUnusedDependencies(PrintWriter out)
+    private void outputTransitiveDependencies(ReportWriter writer)
+    throws IOException
+    {
+        Set<Artifact> transitiveDependencies = new TreeSet<Artifact>();
+        transitiveDependencies.addAll(checker.getTransitiveMainlineDependencies());
+        transitiveDependencies.addAll(checker.getTransitiveTestDependencies());
+
+        for (Artifact artifact : transitiveDependencies)
+        {
+            // the path ends with the artifact itself
+            List<Artifact> path = new ArrayList<Artifact>(checker.getDependencyPath(artifact));
+            if (! path.isEmpty())
+                path.remove(path.size() - 1);
+            writer.write(new Finding(Finding.Type.TRANSITIVE_DEPENDENCY, artifact, path,
+                                     checker.getReferencedClasses(artifact), checker.getReferencingClasses(artifact)));
+        }
+    }
+
+
+    private void outputUnusedDependencies(ReportWriter writer)
+    throws IOException
     {
         for (Artifact artifact : checker.getUnusedMainlineDependencies())
         {
-            out.format(OUTPUT_FORMAT, "UNUSED_MAINLINE_DEPENDENCY", artifact.artifactId);
+            writer.write(new Finding(Finding.Type.UNUSED_MAINLINE_DEPENDENCY, artifact,
+                                     Collections.<Artifact>emptyList(), new TreeSet<String>(), new TreeSet<String>()));
         }
 
         for (Artifact artifact : checker.getUnusedTestDependencies())
         {
-            out.format(OUTPUT_FORMAT, "UNUSED_TEST_DEPENDENCY", artifact.artifactId);
+            writer.write(new Finding(Finding.Type.UNUSED_TEST_DEPENDENCY, artifact,
+                                     Collections.<Artifact>emptyList(), new TreeSet<String>(), new TreeSet<String>()));
         }
     }
 
 
-    private void outputIncorrectDependencies(PrintWriter out)
+    private void outputIncorrectDependencies(ReportWriter writer)
+    throws IOException
     {
-
         for (Artifact artifact : checker.getIncorrectMainlineDependencies())
         {
-            out.format(OUTPUT_FORMAT, "UNSCOPED_TEST_DEPENDENCY", artifact.artifactId);
+            writer.write(new Finding(Finding.Type.UNSCOPED_TEST_DEPENDENCY, artifact,
+                                     Collections.<Artifact>emptyList(), checker.getReferencedClasses(artifact),
+                                     checker.getReferencingClasses(artifact)));
+        }
+    }
+
+
+    private void outputConflicts(ReportWriter writer)
+    throws IOException
+    {
+        for (Map.Entry<String,List<Artifact>> entry : checker.getDuplicateClasses().entrySet())
+        {
+            writer.write(new Finding(Finding.Type.DUPLICATE_CLASS, entry.getKey(), entry.getValue(),
+                                     Collections.<Artifact>emptyList(), new TreeSet<String>(Collections.singleton(entry.getKey())),
+                                     checker.getReferencingClasses(entry.getKey())));
+        }
+
+        for (Map.Entry<String,List<Artifact>> entry : checker.getSplitPackages().entrySet())
+        {
+            writer.write(new Finding(Finding.Type.SPLIT_PACKAGE, entry.getKey(), entry.getValue(),
+                                     Collections.<Artifact>emptyList(), new TreeSet<String>(), new TreeSet<String>()));
+        }
+    }
+
+
+    /**
+     *  Adds the classes that belong directly to a package (not to sub-packages).
+     *  The source set is sorted, so we only need to examine the package's range.
+     */
+    private static void addPackageClasses(SortedSet<String> source, String pkg, Set<String> result)
+    {
+        String prefix = pkg + ".";
+        for (String className : source.subSet(prefix, prefix + Character.MAX_VALUE))
+        {
+            if (className.indexOf('.', prefix.length()) < 0)
+                result.add(className);
         }
     }
 }
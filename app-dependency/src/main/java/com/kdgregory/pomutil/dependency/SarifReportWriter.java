@@ -0,0 +1,117 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import static com.kdgregory.pomutil.dependency.JsonLinesReportWriter.*;
+
+
+/**
+ *  Writes findings as a SARIF 2.1.0 log, for code-scanning tools. The log
+ *  contains a single run, with one rule per finding type; each result is
+ *  located at the POM of the project that produced it, and carries the full
+ *  artifact coordinates and referenced classes as properties.
+ *  <p>
+ *  Results are written as they're received; the enclosing document is opened
+ *  by {@link #begin} and closed by {@link #end}.
+ */
+public class SarifReportWriter
+extends ReportWriter
+{
+    private final static String SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+    private final static String TOOL_NAME = "pomutil-dependency";
+
+    private String moduleName;
+    private String pomUri;
+    private boolean firstResult = true;
+
+
+    public SarifReportWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+
+    @Override
+    public void begin()
+    {
+        StringBuilder sb = new StringBuilder(1024).append("{");
+        appendField(sb, "$schema", SCHEMA).append(",");
+        appendField(sb, "version", "2.1.0").append(",");
+        sb.append("\"runs\":[{\"tool\":{\"driver\":{");
+        appendField(sb, "name", TOOL_NAME).append(",");
+        sb.append("\"rules\":[");
+        for (Finding.Type type : Finding.Type.values())
+        {
+            if (type.ordinal() > 0)
+                sb.append(",");
+            sb.append("{");
+            appendField(sb, "id", type.name()).append(",");
+            sb.append("\"shortDescription\":{");
+            appendField(sb, "text", type.getDescription());
+            sb.append("}}");
+        }
+        sb.append("]}},\"results\":[");
+        out.println(sb);
+    }
+
+
+    @Override
+    public void startModule(String moduleName, File projectDir)
+    {
+        this.moduleName = moduleName;
+        this.pomUri = new File(projectDir.getAbsoluteFile(), "pom.xml").toURI().toString();
+    }
+
+
+    @Override
+    public void write(Finding finding)
+    {
+        StringBuilder sb = new StringBuilder(512);
+        if (! firstResult)
+            sb.append(",");
+        firstResult = false;
+
+        sb.append("{");
+        appendField(sb, "ruleId", finding.type.name()).append(",");
+        appendField(sb, "level", finding.type.isError() ? "error" : "warning").append(",");
+        sb.append("\"message\":{");
+        appendField(sb, "text", finding.getMessage());
+        sb.append("},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{");
+        appendField(sb, "uri", pomUri);
+        sb.append("}}}],\"properties\":{");
+        if (moduleName != null)
+            appendField(sb, "module", moduleName).append(",");
+        if (finding.name != null)
+            appendField(sb, "name", finding.name).append(",");
+        appendArtifacts(sb.append("\"artifacts\":"), finding.artifacts).append(",");
+        if (! finding.path.isEmpty())
+            appendArtifacts(sb.append("\"path\":"), finding.path).append(",");
+        appendStrings(sb.append("\"classes\":"), finding.classes).append(",");
+        appendStrings(sb.append("\"referencingClasses\":"), finding.referencingClasses);
+        sb.append("}}");
+        out.println(sb);
+    }
+
+
+    @Override
+    public void end()
+    {
+        out.println("]}]}");
+        out.flush();
+    }
+}
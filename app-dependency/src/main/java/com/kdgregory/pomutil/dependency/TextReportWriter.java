@@ -0,0 +1,85 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import com.kdgregory.pomutil.util.Artifact;
+
+
+/**
+ *  Writes findings as fixed-width text, one per line, identifying artifacts
+ *  by their artifactId. This is the default format, intended for people. If
+ *  evidence is recorded, each finding is followed by indented lines that
+ *  identify the project classes responsible for it.
+ */
+public class TextReportWriter
+extends ReportWriter
+{
+    private final static String OUTPUT_FORMAT = "%-32s %s%n";
+
+
+    public TextReportWriter(OutputStream out)
+    {
+        super(out);
+    }
+
+
+    @Override
+    public void startModule(String moduleName, File projectDir)
+    {
+        if (moduleName != null)
+            out.format(OUTPUT_FORMAT, "MODULE", moduleName);
+    }
+
+
+    @Override
+    public void write(Finding finding)
+    {
+        StringBuilder sb = new StringBuilder();
+        if (finding.name == null)
+        {
+            sb.append(finding.artifacts.get(0).artifactId);
+            if (! finding.path.isEmpty())
+                sb.append(" (via ").append(finding.path.get(0).artifactId).append(")");
+        }
+        else
+        {
+            sb.append(finding.name);
+            if (! finding.artifacts.isEmpty())
+                sb.append(" ").append(formatArtifactIds(finding));
+        }
+        out.format(OUTPUT_FORMAT, finding.type.name(), sb);
+
+        for (String className : finding.referencingClasses)
+        {
+            out.format(OUTPUT_FORMAT, "    REFERENCED_BY", className);
+        }
+    }
+
+
+    private static String formatArtifactIds(Finding finding)
+    {
+        StringBuilder sb = new StringBuilder("(");
+        for (Artifact artifact : finding.artifacts)
+        {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(artifact.artifactId);
+        }
+        return sb.append(")").toString();
+    }
+}
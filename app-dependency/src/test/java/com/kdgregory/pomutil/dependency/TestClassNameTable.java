@@ -0,0 +1,64 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestClassNameTable
+{
+    @Test
+    public void testIntern() throws Exception
+    {
+        ClassNameTable table = new ClassNameTable();
+
+        int id1 = table.intern("com.example.Foo");
+        int id2 = table.intern("com.example.Bar");
+
+        assertEquals("first ID",            0, id1);
+        assertEquals("second ID",           1, id2);
+        assertEquals("repeated intern",     id1, table.intern("com.example.Foo"));
+        assertEquals("size",                2, table.size());
+
+        assertEquals("getId()",             id2, table.getId("com.example.Bar"));
+        assertEquals("getId(), missing",    -1, table.getId("com.example.Baz"));
+        assertEquals("getName()",           "com.example.Foo", table.getName(id1));
+
+        int[] ids = table.internEach(Arrays.asList("com.example.Bar", "com.example.Baz"));
+        assertEquals("internEach(), existing",  id2, ids[0]);
+        assertEquals("internEach(), new",       2, ids[1]);
+    }
+
+
+    @Test
+    public void testBitsets() throws Exception
+    {
+        ClassNameTable table = new ClassNameTable();
+
+        BitSet set1 = table.internAll(Arrays.asList("com.example.C", "com.example.A", "com.example.B"));
+        BitSet set2 = table.internAll(Arrays.asList("com.example.B", "com.example.D"));
+
+        assertEquals("interned all names",  4, table.size());
+        assertEquals("set 1 cardinality",   3, set1.cardinality());
+
+        set1.andNot(set2);
+        assertEquals("difference, sorted",  Arrays.asList("com.example.A", "com.example.C"),
+                                            Arrays.asList(table.toNames(set1).toArray()));
+    }
+}
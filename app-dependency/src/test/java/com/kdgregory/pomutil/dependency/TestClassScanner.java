@@ -14,16 +14,25 @@
 
 package com.kdgregory.pomutil.dependency;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Resource;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
 
@@ -57,6 +66,12 @@ public class TestClassScanner
         // nothing here either
     }
 
+    private final static String TESTDATA_PATH = "com/kdgregory/pomutil/testdata/";
+    private final static File TESTDATA_DIR = new File("../test-dependency/target/classes/" + TESTDATA_PATH);
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
     @MyFieldAnnotation
     private String foo;
 
@@ -66,6 +81,45 @@ public class TestClassScanner
     }
 
 
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes an archive containing the passed entries, given as name/content pairs.
+     */
+    private static byte[] createArchive(Object... entries)
+    throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bos);
+        for (int ii = 0 ; ii < entries.length ; ii += 2)
+        {
+            out.putNextEntry(new ZipEntry((String)entries[ii]));
+            out.write((byte[])entries[ii + 1]);
+            out.closeEntry();
+        }
+        out.close();
+        return bos.toByteArray();
+    }
+
+
+    private File writeArchive(String name, byte[] content)
+    throws Exception
+    {
+        File file = new File(tempDir.getRoot(), name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+
+    private static byte[] testdata(String className)
+    throws Exception
+    {
+        return Files.readAllBytes(new File(TESTDATA_DIR, className + ".class").toPath());
+    }
+
+
 //----------------------------------------------------------------------------
 //  Testcases
 //----------------------------------------------------------------------------
@@ -127,4 +181,139 @@ public class TestClassScanner
         assertTrue("processed class",   processedClasses.contains("com.kdgregory.pomutil.dependency.TestClassScanner.MyFieldAnnotation"));
         assertTrue("referenced class",  referencedClasses.contains("com.kdgregory.pomutil.dependency.TestClassScanner.MyFieldAnnotation"));
     }
+
+
+    @Test
+    public void testParallelScan() throws Exception
+    {
+        File file = new File("target/test-classes");
+        assertTrue("verify target directory exists", file.exists());
+
+        ClassScanner sequential = new ClassScanner(file, 1);
+        ClassScanner parallel = new ClassScanner(file, 4);
+
+        assertEquals("processed classes", sequential.getProcessedClasses(), parallel.getProcessedClasses());
+        assertEquals("referenced classes", sequential.getReferencedClasses(), parallel.getReferencedClasses());
+    }
+
+
+    @Test
+    public void testClassReferences() throws Exception
+    {
+        File file = new File("target/test-classes");
+
+        ClassNameTable symbols = new ClassNameTable();
+        ClassScanner sequential = new ClassScanner(file, 1, null, symbols);
+        ClassScanner parallel = new ClassScanner(file, 4, null, symbols);
+        ClassScanner notRecorded = new ClassScanner(file, 1, null, null);
+
+        Map<Integer,int[]> references = sequential.getClassReferences();
+        Set<String> referencingClasses = new HashSet<String>();
+        Set<String> combined = new HashSet<String>();
+        for (Map.Entry<Integer,int[]> entry : references.entrySet())
+        {
+            referencingClasses.add(symbols.getName(entry.getKey().intValue()));
+            for (int id : entry.getValue())
+            {
+                combined.add(symbols.getName(id));
+            }
+        }
+        assertEquals("references recorded for all classes", sequential.getProcessedClasses(), referencingClasses);
+
+        int[] thisClass = references.get(Integer.valueOf(symbols.getId("com.kdgregory.pomutil.dependency.TestClassScanner")));
+        int zipOutputStream = symbols.getId("java.util.zip.ZipOutputStream");
+        boolean found = false;
+        for (int id : thisClass)
+        {
+            found |= (id == zipOutputStream);
+        }
+        assertTrue("reference from this class", found);
+
+        assertEquals("combined references",     sequential.getReferencedClasses(), combined);
+        assertEquals("same as unrecorded scan",  notRecorded.getReferencedClasses(), sequential.getReferencedClasses());
+        assertEquals("parallel scan",            references.keySet(), parallel.getClassReferences().keySet());
+        assertEquals("not recorded",             0, notRecorded.getClassReferences().size());
+    }
+
+
+    @Test
+    public void testParallelScanOfMissingDirectory() throws Exception
+    {
+        ClassScanner scanner = new ClassScanner(new File("target/does-not-exist"), 4);
+
+        assertEquals("processed classes", 0, scanner.getProcessedClasses().size());
+        assertEquals("referenced classes", 0, scanner.getReferencedClasses().size());
+    }
+
+
+    @Test
+    public void testJar() throws Exception
+    {
+        File jar = writeArchive("test.jar", createArchive(
+                        "META-INF/MANIFEST.MF",                     "Manifest-Version: 1.0\n".getBytes("UTF-8"),
+                        TESTDATA_PATH + "SomeClass.class",          testdata("SomeClass"),
+                        TESTDATA_PATH + "AnInterface.class",        testdata("AnInterface"),
+                        "META-INF/versions/9/" + TESTDATA_PATH + "Foo.class", new byte[] { 1, 2, 3 }));
+
+        ClassScanner fromJar = new ClassScanner(jar, 4, null);
+        ClassScanner fromDir = new ClassScanner(TESTDATA_DIR);
+
+        assertEquals("processed classes",   fromDir.getProcessedClasses(), fromJar.getProcessedClasses());
+        assertEquals("referenced classes",  fromDir.getReferencedClasses(), fromJar.getReferencedClasses());
+    }
+
+
+    @Test
+    public void testWar() throws Exception
+    {
+        byte[] lib = createArchive(TESTDATA_PATH + "AnInterface.class", testdata("AnInterface"));
+        File war = writeArchive("test.war", createArchive(
+                        "index.html",                               "<html/>".getBytes("UTF-8"),
+                        "WEB-INF/classes/" + TESTDATA_PATH + "SomeClass.class", testdata("SomeClass"),
+                        "WEB-INF/lib/library.jar",                  lib));
+
+        ClassScanner byDefault = new ClassScanner(war);
+        assertEquals("processed classes, by default", 1, byDefault.getProcessedClasses().size());
+        assertTrue("processed project class",          byDefault.getProcessedClasses().contains("com.kdgregory.pomutil.testdata.SomeClass"));
+
+        ClassScanner withLibraries = new ClassScanner(war, true);
+        assertEquals("processed classes, with libraries", 2, withLibraries.getProcessedClasses().size());
+        assertTrue("processed library class",                withLibraries.getProcessedClasses().contains("com.kdgregory.pomutil.testdata.AnInterface"));
+
+        ClassScanner withoutLibraries = new ClassScanner(war, false);
+        assertEquals("processed classes, without libraries", 1, withoutLibraries.getProcessedClasses().size());
+        assertTrue("processed project class",                 withoutLibraries.getProcessedClasses().contains("com.kdgregory.pomutil.testdata.SomeClass"));
+        assertTrue("references library class",               withoutLibraries.getReferencedClasses().contains("com.kdgregory.pomutil.testdata.AnInterface"));
+    }
+
+
+    @Test
+    public void testEar() throws Exception
+    {
+        byte[] lib = createArchive(TESTDATA_PATH + "AnInterface.class", testdata("AnInterface"));
+        byte[] war = createArchive("WEB-INF/classes/" + TESTDATA_PATH + "SomeClass.class", testdata("SomeClass"));
+        File ear = writeArchive("test.ear", createArchive(
+                        "webapp.war",                               war,
+                        "lib/library.jar",                          lib));
+
+        ClassScanner scanner = new ClassScanner(ear, false);
+        assertEquals("processed classes",   1, scanner.getProcessedClasses().size());
+        assertTrue("processed module class", scanner.getProcessedClasses().contains("com.kdgregory.pomutil.testdata.SomeClass"));
+    }
+
+
+    @Test
+    public void testInvalidClassInArchive() throws Exception
+    {
+        File jar = writeArchive("test.jar", createArchive("com/example/Bogus.class", new byte[] { 1, 2, 3 }));
+        try
+        {
+            new ClassScanner(jar);
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertTrue("message identifies entry: " + ex.getMessage(), ex.getMessage().contains("test.jar!com/example/Bogus.class"));
+        }
+    }
 }
@@ -0,0 +1,174 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+
+public class TestClassfileCache
+{
+    private final static File TESTDATA_DIR = new File("../test-dependency/target/classes/com/kdgregory/pomutil/testdata");
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File classesDir;
+    private File cacheFile;
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception
+    {
+        classesDir = tempDir.newFolder("classes");
+        cacheFile = new File(tempDir.getRoot(), "classfile.cache");
+        copyClassfile("SomeClass.class");
+        copyClassfile("AnInterface.class");
+    }
+
+
+    private File copyClassfile(String name)
+    throws Exception
+    {
+        File dst = new File(classesDir, name);
+        Files.copy(new File(TESTDATA_DIR, name).toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return dst;
+    }
+
+
+    private ClassScanner scan(ClassfileCache cache)
+    throws Exception
+    {
+        return new ClassScanner(classesDir, 1, cache);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testUnchangedFilesAreNotParsed() throws Exception
+    {
+        ClassScanner expected = scan(null);
+
+        ClassfileCache cache1 = new ClassfileCache(cacheFile);
+        ClassScanner scanner1 = scan(cache1);
+        cache1.save();
+
+        assertEquals("first run hits",          0, cache1.getHitCount());
+        assertEquals("first run misses",        2, cache1.getMissCount());
+        assertEquals("first run processed",     expected.getProcessedClasses(), scanner1.getProcessedClasses());
+        assertEquals("first run referenced",    expected.getReferencedClasses(), scanner1.getReferencedClasses());
+        assertTrue("cache file written",        cacheFile.exists());
+
+        ClassfileCache cache2 = new ClassfileCache(cacheFile);
+        ClassScanner scanner2 = scan(cache2);
+
+        assertEquals("second run hits",         2, cache2.getHitCount());
+        assertEquals("second run misses",       0, cache2.getMissCount());
+        assertEquals("second run processed",    expected.getProcessedClasses(), scanner2.getProcessedClasses());
+        assertEquals("second run referenced",   expected.getReferencedClasses(), scanner2.getReferencedClasses());
+    }
+
+
+    @Test
+    public void testTouchedFileWithSameContentIsNotParsed() throws Exception
+    {
+        ClassfileCache cache1 = new ClassfileCache(cacheFile);
+        scan(cache1);
+        cache1.save();
+
+        File someClass = new File(classesDir, "SomeClass.class");
+        someClass.setLastModified(someClass.lastModified() + 10000);
+
+        ClassfileCache cache2 = new ClassfileCache(cacheFile);
+        scan(cache2);
+
+        assertEquals("hits",   2, cache2.getHitCount());
+        assertEquals("misses", 0, cache2.getMissCount());
+    }
+
+
+    @Test
+    public void testChangedAndDeletedFiles() throws Exception
+    {
+        ClassfileCache cache1 = new ClassfileCache(cacheFile);
+        scan(cache1);
+        cache1.save();
+
+        // replace one class with different content, delete the other
+        File someClass = new File(classesDir, "SomeClass.class");
+        Files.copy(new File(TESTDATA_DIR, "AnInterface.class").toPath(), someClass.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        someClass.setLastModified(someClass.lastModified() + 10000);
+        assertTrue("deleted", new File(classesDir, "AnInterface.class").delete());
+
+        ClassfileCache cache2 = new ClassfileCache(cacheFile);
+        ClassScanner scanner = scan(cache2);
+        cache2.save();
+
+        assertEquals("hits",      0, cache2.getHitCount());
+        assertEquals("misses",    1, cache2.getMissCount());
+        assertEquals("processed", 1, scanner.getProcessedClasses().size());
+        assertTrue("processed",   scanner.getProcessedClasses().contains("com.kdgregory.pomutil.testdata.AnInterface"));
+
+        // the deleted file's entry should have been dropped
+        assertEquals("lines in saved cache", 2, Files.readAllLines(cacheFile.toPath()).size());
+    }
+
+
+    @Test
+    public void testCorruptCacheIsIgnored() throws Exception
+    {
+        FileOutputStream out = new FileOutputStream(cacheFile);
+        out.write("pomutil-classfile-cache 1\nfoo\tbar\tbaz\tbiff\tbam\n".getBytes("UTF-8"));
+        out.close();
+
+        ClassfileCache cache = new ClassfileCache(cacheFile);
+        ClassScanner scanner = scan(cache);
+
+        assertEquals("misses",    2, cache.getMissCount());
+        assertEquals("processed", 2, scanner.getProcessedClasses().size());
+    }
+
+
+    @Test
+    public void testParallelScan() throws Exception
+    {
+        ClassfileCache cache1 = new ClassfileCache(cacheFile);
+        new ClassScanner(classesDir, 4, cache1);
+        cache1.save();
+
+        ClassfileCache cache2 = new ClassfileCache(cacheFile);
+        ClassScanner scanner = new ClassScanner(classesDir, 4, cache2);
+
+        assertEquals("hits",      2, cache2.getHitCount());
+        assertEquals("processed", 2, scanner.getProcessedClasses().size());
+    }
+}
@@ -0,0 +1,143 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.zip.Adler32;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestClassfileParser
+{
+//----------------------------------------------------------------------------
+//  Test data -- these classes exist to be parsed
+//----------------------------------------------------------------------------
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface ClassValuedAnnotation
+    {
+        Class<?> value();
+    }
+
+
+    @ClassValuedAnnotation(Adler32.class)
+    public static class GenericHolder<T extends Comparable<java.math.BigDecimal>>
+    {
+        public Map<String,List<Callable<java.net.URI>>> generic;
+        public java.sql.Timestamp[][] arrayField;
+        public int[] primitiveArray;
+
+        public <X extends java.util.concurrent.Future<?>> X method(java.util.Locale.Category cat)
+        throws java.util.zip.DataFormatException
+        {
+            return null;
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static byte[] loadClassfile(Class<?> klass)
+    throws IOException
+    {
+        String path = "target/test-classes/" + klass.getName().replace('.', '/') + ".class";
+        return Files.readAllBytes(new File(path).toPath());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testClassName() throws Exception
+    {
+        Set<String> referenced = new TreeSet<String>();
+
+        assertEquals("top-level class",
+                     "com.kdgregory.pomutil.dependency.TestClassfileParser",
+                     ClassfileParser.parse(loadClassfile(TestClassfileParser.class), referenced));
+        assertEquals("nested class",
+                     "com.kdgregory.pomutil.dependency.TestClassfileParser.GenericHolder",
+                     ClassfileParser.parse(loadClassfile(GenericHolder.class), referenced));
+    }
+
+
+    @Test
+    public void testReferences() throws Exception
+    {
+        Set<String> referenced = new TreeSet<String>();
+        ClassfileParser.parse(loadClassfile(GenericHolder.class), referenced);
+
+        assertTrue("superclass",                    referenced.contains("java.lang.Object"));
+        assertTrue("field type",                    referenced.contains("java.util.Map"));
+        assertTrue("generic type argument",         referenced.contains("java.util.concurrent.Callable"));
+        assertTrue("nested type argument",          referenced.contains("java.net.URI"));
+        assertTrue("array field",                   referenced.contains("java.sql.Timestamp"));
+        assertTrue("class type parameter bound",    referenced.contains("java.math.BigDecimal"));
+        assertTrue("method type parameter bound",   referenced.contains("java.util.concurrent.Future"));
+        assertTrue("nested parameter type",         referenced.contains("java.util.Locale.Category"));
+        assertTrue("declared exception",            referenced.contains("java.util.zip.DataFormatException"));
+        assertTrue("annotation",                    referenced.contains("com.kdgregory.pomutil.dependency.TestClassfileParser.ClassValuedAnnotation"));
+        assertTrue("annotation class value",        referenced.contains("java.util.zip.Adler32"));
+
+        for (String className : referenced)
+        {
+            assertTrue("no type variables or primitives: " + className, className.contains("."));
+        }
+    }
+
+
+    @Test
+    public void testEnumAnnotationValue() throws Exception
+    {
+        Set<String> referenced = new TreeSet<String>();
+        ClassfileParser.parse(loadClassfile(ClassValuedAnnotation.class), referenced);
+
+        assertTrue("annotation",                    referenced.contains("java.lang.annotation.Retention"));
+        assertTrue("enum value",                    referenced.contains("java.lang.annotation.RetentionPolicy"));
+    }
+
+
+    @Test(expected=IOException.class)
+    public void testInvalidClassfile() throws Exception
+    {
+        ClassfileParser.parse(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }, new TreeSet<String>());
+    }
+
+
+    @Test(expected=IOException.class)
+    public void testTruncatedClassfile() throws Exception
+    {
+        byte[] data = loadClassfile(GenericHolder.class);
+        byte[] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        ClassfileParser.parse(truncated, new TreeSet<String>());
+    }
+}
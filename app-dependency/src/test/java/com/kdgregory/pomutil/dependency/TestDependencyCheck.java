@@ -14,6 +14,7 @@
 
 package com.kdgregory.pomutil.dependency;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Set;
 import java.util.TreeSet;
@@ -143,6 +144,117 @@ public class TestDependencyCheck
     }
 
 
+    @Test
+    public void testParallel() throws Exception
+    {
+        CommandLine args = new CommandLine("../test-dependency", "--parallelism=4");
+        DependencyCheck checker = new DependencyCheck(args);
+        checker.run();
+
+        assertTrue("unsupported mainline class",                checker.getUnsupportedMainlineClasses().contains("org.apache.bcel.classfile.ClassParser"));
+
+        Set<String> unusedMainlineDependencies = extractArtifactIds(checker.getUnusedMainlineDependencies());
+        assertEquals("unused mainline dependency count",        2, unusedMainlineDependencies.size());
+    }
+
+
+    @Test
+    public void testIncremental() throws Exception
+    {
+        File cacheFile = new File("../test-dependency", DependencyCheck.CLASSFILE_CACHE);
+        cacheFile.delete();
+        try
+        {
+            DependencyCheck checker1 = new DependencyCheck(new CommandLine("../test-dependency", "--incremental")).run();
+            assertTrue("cache file written", cacheFile.exists());
+
+            DependencyCheck checker2 = new DependencyCheck(new CommandLine("../test-dependency", "--incremental")).run();
+            assertEquals("unsupported mainline classes",    checker1.getUnsupportedMainlineClasses(), checker2.getUnsupportedMainlineClasses());
+            assertEquals("unsupported test classes",        checker1.getUnsupportedTestClasses(), checker2.getUnsupportedTestClasses());
+            assertEquals("unused mainline dependencies",    checker1.getUnusedMainlineDependencies(), checker2.getUnusedMainlineDependencies());
+            assertEquals("incorrect mainline dependencies", checker1.getIncorrectMainlineDependencies(), checker2.getIncorrectMainlineDependencies());
+            assertEquals("unused test dependencies",        checker1.getUnusedTestDependencies(), checker2.getUnusedTestDependencies());
+        }
+        finally
+        {
+            cacheFile.delete();
+        }
+    }
+
+
+    @Test
+    public void testArtifact() throws Exception
+    {
+        File artifact = new File("../test-dependency/target/test-dependency-0.0-SNAPSHOT.jar");
+        assertTrue("verify artifact exists", artifact.exists());
+
+        DependencyCheck fromClasses = new DependencyCheck(new CommandLine("../test-dependency")).run();
+        DependencyCheck fromArtifact = new DependencyCheck(new CommandLine("../test-dependency", "--artifact=" + artifact.getPath())).run();
+
+        assertEquals("unsupported mainline classes",    fromClasses.getUnsupportedMainlineClasses(), fromArtifact.getUnsupportedMainlineClasses());
+        assertEquals("unused mainline dependencies",    fromClasses.getUnusedMainlineDependencies(), fromArtifact.getUnusedMainlineDependencies());
+        assertEquals("incorrect mainline dependencies", fromClasses.getIncorrectMainlineDependencies(), fromArtifact.getIncorrectMainlineDependencies());
+        assertEquals("unused test dependencies",        fromClasses.getUnusedTestDependencies(), fromArtifact.getUnusedTestDependencies());
+    }
+
+
+    @Test
+    public void testTransitiveProvider() throws Exception
+    {
+        DependencyCheck checker = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive")).run();
+
+        assertTrue("unsupported mainline class remains",        checker.getUnsupportedMainlineClasses().contains("org.apache.bcel.classfile.ClassParser"));
+        assertEquals("transitive mainline provider",            "[bcel]", extractArtifactIds(checker.getTransitiveMainlineDependencies()).toString());
+        assertEquals("transitive test provider",                "[bcel]", extractArtifactIds(checker.getTransitiveTestDependencies()).toString());
+
+        Artifact bcel = checker.getTransitiveMainlineDependencies().first();
+        assertEquals("provider included via", "bcelx", checker.getDependencyPath(bcel).get(0).artifactId);
+        assertTrue("classes provided by transitive dependency", checker.getReferencedClasses(bcel).contains("org.apache.bcel.classfile.ClassParser"));
+
+        DependencyCheck disabled = new DependencyCheck(new CommandLine("../test-dependency")).run();
+        assertEquals("no transitive providers by default",   0, disabled.getTransitiveMainlineDependencies().size());
+    }
+
+
+    @Test
+    public void testConflicts() throws Exception
+    {
+        DependencyCheck checker = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive", "--reportConflicts")).run();
+        assertTrue("duplicate class",                   checker.getDuplicateClasses().containsKey("org.hamcrest.Matcher"));
+        assertTrue("split package",                     checker.getSplitPackages().containsKey("org.hamcrest"));
+
+        DependencyCheck disabled = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive")).run();
+        assertEquals("no duplicates by default",        0, disabled.getDuplicateClasses().size());
+        assertEquals("no split packages by default",    0, disabled.getSplitPackages().size());
+    }
+
+
+    @Test
+    public void testEvidence() throws Exception
+    {
+        DependencyCheck checker = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive", "--evidence")).run();
+        Artifact bcel = checker.getTransitiveMainlineDependencies().first();
+
+        assertEquals("classes referencing dependency",
+                     "[com.kdgregory.pomutil.testdata.SomeClass, com.kdgregory.pomutil.testdata.TestSomeClass]",
+                     checker.getReferencingClasses(bcel).toString());
+        assertEquals("classes referencing class",
+                     "[com.kdgregory.pomutil.testdata.SomeClass]",
+                     checker.getReferencingClasses("org.apache.bcel.classfile.ClassParser").toString());
+
+        DependencyCheck disabled = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive")).run();
+        assertEquals("no evidence when disabled", 0, disabled.getReferencingClasses(bcel).size());
+        assertEquals("same results when disabled", disabled.getUnsupportedMainlineClasses(), checker.getUnsupportedMainlineClasses());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidParallelism() throws Exception
+    {
+        new DependencyCheck(new CommandLine("../test-dependency", "--parallelism=0"));
+    }
+
+
     public void testSelf() throws Exception
     {
         // running Main without a project directory will use cwd
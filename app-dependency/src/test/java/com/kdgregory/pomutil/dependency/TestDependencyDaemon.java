@@ -0,0 +1,214 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+
+public class TestDependencyDaemon
+{
+    private final static String PROJECT_DIR = "../test-dependency";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private String tokenDirOption;
+    private DependencyDaemon daemon;
+    private Thread daemonThread;
+
+
+//----------------------------------------------------------------------------
+//  Support code
+//----------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws Exception
+    {
+        tokenDirOption = "--daemonTokenDirectory=" + tempDir.getRoot().getPath();
+        daemon = new DependencyDaemon(new CommandLine("--daemonPort=0", "--noClassIndex", tokenDirOption)).start();
+        daemonThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    daemon.run();
+                }
+                catch (IOException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        daemonThread.start();
+    }
+
+
+    @After
+    public void tearDown() throws Exception
+    {
+        daemon.shutdown();
+        daemonThread.join(5000);
+    }
+
+
+    private String submit(String... argv)
+    throws Exception
+    {
+        String[] clientArgv = new String[argv.length + 2];
+        clientArgv[0] = "--daemonPort=" + daemon.getPort();
+        clientArgv[1] = tokenDirOption;
+        System.arraycopy(argv, 0, clientArgv, 2, argv.length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DaemonClient(new CommandLine(clientArgv), clientArgv).run(out);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testCheck() throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        CommandLine args = new CommandLine(PROJECT_DIR);
+        Main.check(args, null, expected);
+
+        String result1 = submit(PROJECT_DIR);
+        String result2 = submit(PROJECT_DIR);
+
+        assertTrue("report is not empty",   result1.length() > 0);
+        assertEquals("first report",        new String(expected.toByteArray(), "UTF-8"), result1);
+        assertEquals("second report",       result1, result2);
+        assertEquals("request count",       2, daemon.getRequestCount());
+    }
+
+
+    @Test
+    public void testRequestOptions() throws Exception
+    {
+        String result = submit("--resolveTransitive", "--reportConflicts", PROJECT_DIR);
+
+        assertTrue("report is not empty",       result.length() > 0);
+        assertTrue("options were forwarded",    result.contains("DUPLICATE_CLASS"));
+    }
+
+
+    @Test
+    public void testFailedCheck() throws Exception
+    {
+        try
+        {
+            submit("target/does-not-exist");
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertTrue("exception identifies project: " + ex.getMessage(), ex.getMessage().contains("does-not-exist"));
+        }
+
+        // the daemon should still be usable
+
+        assertTrue("subsequent request", submit(PROJECT_DIR).length() > 0);
+    }
+
+
+    @Test
+    public void testTokenFile() throws Exception
+    {
+        File tokenFile = DependencyDaemon.tokenFile(tempDir.getRoot(), daemon.getPort());
+        assertTrue("token file exists", tokenFile.isFile());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            assertEquals("token file permissions",
+                         "rw-------",
+                         PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath())));
+        }
+
+        daemon.shutdown();
+        assertFalse("token file removed at shutdown", tokenFile.exists());
+    }
+
+
+    @Test
+    public void testInvalidToken() throws Exception
+    {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+        try
+        {
+            OutputStream out = socket.getOutputStream();
+            out.write(("bogus\n" + new File(PROJECT_DIR).getAbsolutePath() + "\n\n").getBytes("UTF-8"));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            IOUtil.copy(in, response);
+            assertEquals("response", "ERROR invalid token\n", new String(response.toByteArray(), "UTF-8"));
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+
+    @Test
+    public void testNoDaemon() throws Exception
+    {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        try
+        {
+            new DaemonClient(new CommandLine("--daemonPort=" + port)).run(new ByteArrayOutputStream());
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertTrue("exception identifies port: " + ex.getMessage(), ex.getMessage().contains(String.valueOf(port)));
+        }
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPort() throws Exception
+    {
+        new DependencyDaemon(new CommandLine("--daemonPort=foo"));
+    }
+}
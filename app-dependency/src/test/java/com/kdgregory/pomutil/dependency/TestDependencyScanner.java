@@ -15,19 +15,29 @@
 package com.kdgregory.pomutil.dependency;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
 import com.kdgregory.pomutil.util.Artifact;
 import com.kdgregory.pomutil.util.Artifact.Scope;
+import com.kdgregory.pomutil.util.LocalRepository;
 
 
 public class TestDependencyScanner
 {
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
 //----------------------------------------------------------------------------
 //  Support Code
 //----------------------------------------------------------------------------
@@ -44,6 +54,32 @@ public class TestDependencyScanner
     }
 
 
+    /**
+     *  Writes a JAR into a local repository. Entries are empty: the scanner only
+     *  looks at their names.
+     */
+    private void writeJar(File repoDir, String groupId, String artifactId, String version, String... entries)
+    throws Exception
+    {
+        File dir = new File(repoDir, groupId.replace('.', '/') + "/" + artifactId + "/" + version);
+        dir.mkdirs();
+
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(new File(dir, artifactId + "-" + version + ".jar")));
+        try
+        {
+            for (String entry : entries)
+            {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
 //----------------------------------------------------------------------------
 //  Testcases
 //----------------------------------------------------------------------------
@@ -135,4 +171,102 @@ public class TestDependencyScanner
         assertTrue("test-scope select returned expected artifact",      testDependencies.containsKey("junit"));
         assertFalse("test-scope select returned compile artifact",      testDependencies.containsKey("commons-io"));
     }
+
+
+    @Test
+    public void testTransitiveDependencies() throws Exception
+    {
+        File pomFile = new File("../test-dependency/pom.xml");
+        ClassNameTable symbols = new ClassNameTable();
+
+        DependencyScanner scanner = new DependencyScanner(pomFile, null, symbols, true);
+
+        Map<String,Scope> transitiveDependencies = mapArtifacts(scanner.getTransitiveDependencies());
+        assertEquals("transitive compile dependency",   Scope.COMPILE, transitiveDependencies.get("bcel"));
+        assertEquals("transitive test dependency",      Scope.TEST,    transitiveDependencies.get("hamcrest-core"));
+        assertNull("direct dependency",                 transitiveDependencies.get("bcelx"));
+
+        int classId = symbols.getId("org.apache.bcel.classfile.ClassParser");
+        assertNull("not a direct dependency",           scanner.getDependency(classId, Scope.COMPILE));
+
+        Artifact provider = scanner.getTransitiveDependency(classId);
+        assertEquals("transitive provider",             "bcel", provider.artifactId);
+        assertEquals("path to provider",                2, scanner.getDependencyPath(provider).size());
+        assertEquals("path starts with direct",         "bcelx", scanner.getDependencyPath(provider).get(0).artifactId);
+    }
+
+
+    @Test
+    public void testTransitiveDisabled() throws Exception
+    {
+        DependencyScanner scanner = new DependencyScanner(new File("../test-dependency/pom.xml"), null, new ClassNameTable(), false);
+
+        assertEquals("no transitive dependencies", 0, scanner.getTransitiveDependencies().size());
+        assertNull("no transitive provider", scanner.getTransitiveDependency(0));
+    }
+
+
+    @Test
+    public void testDuplicateClassesAndSplitPackages() throws Exception
+    {
+        // junit 4.10 bundles the hamcrest classes, and also depends on hamcrest-core
+        DependencyScanner scanner = new DependencyScanner(new File("../test-dependency/pom.xml"), null, new ClassNameTable(), true);
+
+        // attribution is to the first provider in the requested scope
+        assertEquals("attributed to direct provider",       "junit", scanner.getDependency("org.hamcrest.Matcher", Scope.TEST).artifactId);
+
+        Map<String,List<Artifact>> duplicateClasses = scanner.getDuplicateClasses();
+        List<Artifact> matcherProviders = duplicateClasses.get("org.hamcrest.Matcher");
+        assertNotNull("duplicate class reported",           matcherProviders);
+        assertEquals("duplicate class providers",           2, matcherProviders.size());
+        assertEquals("first provider is direct",            "junit", matcherProviders.get(0).artifactId);
+        assertEquals("second provider is transitive",       "hamcrest-core", matcherProviders.get(1).artifactId);
+        assertFalse("unique class not reported",            duplicateClasses.containsKey("org.junit.Test"));
+
+        Map<String,List<Artifact>> splitPackages = scanner.getSplitPackages();
+        assertEquals("split package providers",             2, splitPackages.get("org.hamcrest").size());
+        assertFalse("unsplit package not reported",         splitPackages.containsKey("org.junit"));
+        for (String packageName : splitPackages.keySet())
+        {
+            assertFalse("nested class not treated as package: " + packageName,
+                        duplicateClasses.containsKey(packageName));
+        }
+    }
+
+
+    @Test
+    public void testMultiReleaseJars() throws Exception
+    {
+        File repoDir = tempDir.newFolder("repo");
+        writeJar(repoDir, "com.example.mr", "mr-a", "1",
+                 "module-info.class", "com/example/a/A.class",
+                 "META-INF/versions/9/module-info.class", "META-INF/versions/9/com/example/a/A.class");
+        writeJar(repoDir, "com.example.mr", "mr-b", "1",
+                 "module-info.class", "com/example/b/B.class",
+                 "META-INF/versions/9/module-info.class", "META-INF/versions/9/com/example/b/B.class");
+
+        File pomFile = tempDir.newFile("pom.xml");
+        FileOutputStream out = new FileOutputStream(pomFile);
+        try
+        {
+            out.write(("<project xmlns='http://maven.apache.org/POM/4.0.0'>"
+                       + "<modelVersion>4.0.0</modelVersion>"
+                       + "<groupId>com.example.mr</groupId><artifactId>project</artifactId><version>1</version>"
+                       + "<dependencies>"
+                       + "<dependency><groupId>com.example.mr</groupId><artifactId>mr-a</artifactId><version>1</version></dependency>"
+                       + "<dependency><groupId>com.example.mr</groupId><artifactId>mr-b</artifactId><version>1</version></dependency>"
+                       + "</dependencies>"
+                       + "</project>").getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+
+        DependencyScanner scanner = new DependencyScanner(pomFile, new LocalRepository(repoDir), null, new ClassNameTable(), true);
+
+        assertEquals("attributed class",        "mr-a", scanner.getDependency("com.example.a.A", Scope.COMPILE).artifactId);
+        assertEquals("no duplicate classes",    0, scanner.getDuplicateClasses().size());
+        assertEquals("no split packages",       0, scanner.getSplitPackages().size());
+    }
 }
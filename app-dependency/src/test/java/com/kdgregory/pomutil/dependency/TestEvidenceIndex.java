@@ -0,0 +1,79 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestEvidenceIndex
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static void addReferences(ClassNameTable symbols, Map<Integer,int[]> map, String className, String... references)
+    {
+        map.put(Integer.valueOf(symbols.intern(className)), symbols.internEach(Arrays.asList(references)));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testReferrers() throws Exception
+    {
+        ClassNameTable symbols = new ClassNameTable();
+
+        Map<Integer,int[]> mainline = new HashMap<Integer,int[]>();
+        addReferences(symbols, mainline, "com.example.A", "org.lib.X", "org.lib.Y");
+        addReferences(symbols, mainline, "com.example.B", "org.lib.Y");
+        addReferences(symbols, mainline, "com.example.C", "com.example.A");
+
+        Map<Integer,int[]> test = new HashMap<Integer,int[]>();
+        addReferences(symbols, test, "com.example.C", "org.lib.Z");
+        addReferences(symbols, test, "com.example.D");
+
+        List<Map<Integer,int[]>> references = new ArrayList<Map<Integer,int[]>>();
+        references.add(mainline);
+        references.add(test);
+        EvidenceIndex index = new EvidenceIndex(symbols, references);
+
+        assertEquals("size", 5, index.size());
+
+        assertEquals("referrers of X",              "[com.example.A]",                  symbols.toNames(index.getReferrers("org.lib.X")).toString());
+        assertEquals("referrers of Y",              "[com.example.A, com.example.B]",   symbols.toNames(index.getReferrers("org.lib.Y")).toString());
+        assertEquals("referrers of project class",  "[com.example.C]",                  symbols.toNames(index.getReferrers("com.example.A")).toString());
+        assertEquals("unreferenced class",          "[]",                               symbols.toNames(index.getReferrers("com.example.D")).toString());
+        assertEquals("unknown class",               "[]",                               symbols.toNames(index.getReferrers("org.lib.Unknown")).toString());
+
+        BitSet classes = new BitSet();
+        classes.set(symbols.getId("org.lib.X"));
+        classes.set(symbols.getId("org.lib.Z"));
+        assertEquals("referrers of multiple classes", "[com.example.A, com.example.C]", symbols.toNames(index.getReferrers(classes)).toString());
+
+        // classes interned after construction are not referenced
+        assertEquals("later class", 0, index.getReferrers(symbols.intern("org.lib.Later")).cardinality());
+    }
+}
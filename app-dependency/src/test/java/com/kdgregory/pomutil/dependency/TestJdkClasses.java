@@ -0,0 +1,63 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestJdkClasses
+{
+    @Test
+    public void testCurrentJvm() throws Exception
+    {
+        JdkClasses jdk = JdkClasses.forCurrentJvm();
+
+        assertTrue("top-level class",           jdk.isJdkClass("java.lang.String"));
+        assertTrue("nested class",              jdk.isJdkClass("java.util.Map.Entry"));
+        assertTrue("extension package",         jdk.isJdkClass("javax.xml.parsers.DocumentBuilder"));
+        assertFalse("third-party class",        jdk.isJdkClass("org.apache.bcel.classfile.ClassParser"));
+        assertFalse("this class",               jdk.isJdkClass(getClass().getName()));
+        assertFalse("unknown class in JDK package", jdk.isJdkClass("java.lang.NoSuchClass"));
+
+        assertTrue("package list",              jdk.getPackages().contains("java.lang"));
+        assertFalse("package list",             jdk.getPackages().contains("org.apache.bcel.classfile"));
+
+        assertSame("instance is cached",        jdk, JdkClasses.forCurrentJvm());
+    }
+
+
+    @Test
+    public void testMissingJdk() throws Exception
+    {
+        JdkClasses jdk = JdkClasses.forJavaHome("/does/not/exist");
+
+        assertFalse("no classes",               jdk.isJdkClass("java.lang.String"));
+        assertEquals("no packages",             0, jdk.getPackages().size());
+    }
+
+
+    @Test
+    public void testRemovedJdkPackage() throws Exception
+    {
+        JdkClasses jdk = JdkClasses.forCurrentJvm();
+
+        // JAXB and JAX-WS were removed in JDK 11, but their parent package remains
+        assertTrue("test precondition: parent package is in JDK", jdk.getPackages().contains("javax.xml"));
+        assertEquals("JAXB",   jdk.getPackages().contains("javax.xml.bind"), jdk.isJdkClass("javax.xml.bind.JAXBContext"));
+        assertEquals("JAX-WS", jdk.getPackages().contains("javax.xml.ws"),   jdk.isJdkClass("javax.xml.ws.Service"));
+        assertFalse("class in subpackage of JDK package", jdk.isJdkClass("javax.xml.nosuch.Example"));
+    }
+}
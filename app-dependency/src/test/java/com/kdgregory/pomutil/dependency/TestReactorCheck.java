@@ -0,0 +1,175 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pomutil.util.Artifact;
+
+
+public class TestReactorCheck
+{
+    // reactor POMs are written under target, so paths to the test projects
+    // are relative to that location
+
+    private final static File REACTOR_DIR = new File("target/test-reactor");
+
+
+//----------------------------------------------------------------------------
+//  Support code
+//----------------------------------------------------------------------------
+
+    private static File writeAggregator(File dir, String artifactId, String... modules)
+    throws IOException
+    {
+        dir.mkdirs();
+        StringBuilder sb = new StringBuilder()
+            .append("<project xmlns='http://maven.apache.org/POM/4.0.0'>\n")
+            .append("    <modelVersion>4.0.0</modelVersion>\n")
+            .append("    <groupId>com.kdgregory.pomutil.test</groupId>\n")
+            .append("    <artifactId>").append(artifactId).append("</artifactId>\n")
+            .append("    <version>1.0-SNAPSHOT</version>\n")
+            .append("    <packaging>pom</packaging>\n")
+            .append("    <modules>\n");
+        for (String module : modules)
+        {
+            sb.append("        <module>").append(module).append("</module>\n");
+        }
+        sb.append("    </modules>\n")
+          .append("</project>\n");
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(dir, "pom.xml")), "UTF-8");
+        try
+        {
+            out.write(sb.toString());
+        }
+        finally
+        {
+            out.close();
+        }
+        return dir;
+    }
+
+
+    private static Set<String> extractArtifactIds(Collection<Artifact> artifacts)
+    {
+        Set<String> result = new TreeSet<String>();
+        for (Artifact artifact : artifacts)
+            result.add(artifact.artifactId);
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        // the nested aggregator also lists a module from the root, to verify that
+        // modules are only checked once; the child is referenced by its POM
+
+        writeAggregator(new File(REACTOR_DIR, "nested"), "nested",
+                        "../../../../test-dependency-child/pom.xml",
+                        "../../../../test-dependency");
+        writeAggregator(REACTOR_DIR, "reactor",
+                        "../../../test-dependency",
+                        "nested");
+
+        ReactorCheck reactor = new ReactorCheck(new CommandLine("--reactor", "--parallelism=2", REACTOR_DIR.getPath())).run();
+        Map<File,DependencyCheck> results = reactor.getResults();
+
+        List<File> modules = new ArrayList<File>(results.keySet());
+        assertEquals("number of modules",   2, modules.size());
+        assertEquals("first module",        new File("../test-dependency").getCanonicalFile(), modules.get(0));
+        assertEquals("second module",       new File("../test-dependency-child").getCanonicalFile(), modules.get(1));
+
+        DependencyCheck checker1 = results.get(modules.get(0));
+        assertEquals("project directory of first result", modules.get(0), checker1.getProjectDirectory());
+        assertTrue("first module unsupported mainline class",   checker1.getUnsupportedMainlineClasses().contains("org.apache.bcel.classfile.ClassParser"));
+        assertEquals("first module unused mainline dependencies",
+                     new TreeSet<String>(Arrays.asList("bcelx", "commons-io")),
+                     extractArtifactIds(checker1.getUnusedMainlineDependencies()));
+
+        DependencyCheck checker2 = results.get(modules.get(1));
+        assertTrue("second module unsupported mainline class",  checker2.getUnsupportedMainlineClasses().contains("org.apache.bcel.classfile.ClassParser"));
+        assertEquals("second module unused mainline dependencies",
+                     new TreeSet<String>(Arrays.asList("bcelx", "commons-io", "commons-lang")),
+                     extractArtifactIds(checker2.getUnusedMainlineDependencies()));
+        assertEquals("second module incorrect mainline dependencies",
+                     new TreeSet<String>(Arrays.asList("commons-codec")),
+                     extractArtifactIds(checker2.getIncorrectMainlineDependencies()));
+    }
+
+
+    @Test
+    public void testListener() throws Exception
+    {
+        File dir = writeAggregator(new File(REACTOR_DIR, "listener"), "listener",
+                                   "../../../../test-dependency",
+                                   "../../../../test-dependency-child");
+
+        final List<File> modules = new ArrayList<File>();
+        ReactorCheck reactor = new ReactorCheck(new CommandLine("--parallelism=2", dir.getPath())).run(new ReactorCheck.ModuleListener()
+        {
+            @Override
+            public void moduleChecked(File moduleDir, DependencyCheck checker)
+            {
+                assertEquals("project directory", moduleDir, checker.getProjectDirectory());
+                modules.add(moduleDir);
+            }
+        });
+
+        assertEquals("modules reported in order",
+                     Arrays.asList(new File("../test-dependency").getCanonicalFile(),
+                                   new File("../test-dependency-child").getCanonicalFile()),
+                     modules);
+        assertEquals("results not retained", 0, reactor.getResults().size());
+    }
+
+
+    @Test
+    public void testMissingModuleIsSkipped() throws Exception
+    {
+        File dir = writeAggregator(new File(REACTOR_DIR, "missing"), "missing",
+                                   "../../../../test-dependency",
+                                   "does-not-exist");
+
+        ReactorCheck reactor = new ReactorCheck(new CommandLine(dir.getPath())).run();
+        assertEquals("number of modules", 1, reactor.getResults().size());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testArtifactNotAllowed() throws Exception
+    {
+        new ReactorCheck(new CommandLine("--artifact=foo.jar", REACTOR_DIR.getPath()));
+    }
+}
@@ -0,0 +1,224 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.dependency;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+
+public class TestReporter
+{
+    private static DependencyCheck checker;
+
+
+    @BeforeClass
+    public static void runCheck() throws Exception
+    {
+        checker = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive", "--reportConflicts")).run();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static String report(String format, String moduleName)
+    throws Exception
+    {
+        CommandLine args = (format == null)
+                         ? new CommandLine()
+                         : new CommandLine("--reportFormat=" + format);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Reporter(args, checker, moduleName).output(out);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+
+    private static String findLine(List<String> lines, String content)
+    {
+        for (String line : lines)
+        {
+            if (line.contains(content))
+                return line;
+        }
+        fail("no line containing: " + content);
+        return null;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testText() throws Exception
+    {
+        List<String> lines = Arrays.asList(report(null, "example").split("\n"));
+
+        assertEquals("module line",         String.format("%-32s %s", "MODULE", "example"), lines.get(0));
+        assertTrue("missing package",       lines.contains(String.format("%-32s %s", "PACKAGE_MISSING_DEPENDENCY", "org.apache.bcel.classfile")));
+        assertTrue("transitive dependency", lines.contains(String.format("%-32s %s", "TRANSITIVE_DEPENDENCY", "bcel (via bcelx)")));
+        assertTrue("unused dependency",     lines.contains(String.format("%-32s %s", "UNUSED_MAINLINE_DEPENDENCY", "bcelx")));
+        assertTrue("duplicate class",       lines.contains(String.format("%-32s %s", "DUPLICATE_CLASS", "org.hamcrest.Matcher (junit, hamcrest-core)")));
+    }
+
+
+    @Test
+    public void testJsonLines() throws Exception
+    {
+        List<String> lines = Arrays.asList(report("jsonl", null).split("\n"));
+        for (String line : lines)
+        {
+            assertTrue("line is an object: " + line, line.startsWith("{\"type\":") && line.endsWith("}"));
+        }
+
+        String transitive = findLine(lines, "\"type\":\"TRANSITIVE_DEPENDENCY\"");
+        assertTrue("full coordinates",      transitive.contains("{\"groupId\":\"org.apache.bcel\",\"artifactId\":\"bcel\",\"version\":\"5.2\""));
+        assertTrue("path",                  transitive.contains("\"path\":[{\"groupId\":\"com.kdgregory.bcelx\",\"artifactId\":\"bcelx\""));
+        assertTrue("referenced classes",    transitive.contains("\"org.apache.bcel.classfile.ClassParser\""));
+        assertFalse("no module",            transitive.contains("\"module\""));
+
+        String missing = findLine(lines, "\"type\":\"PACKAGE_MISSING_DEPENDENCY\"");
+        assertTrue("package name",          missing.contains("\"name\":\"org.apache.bcel.classfile\""));
+        assertTrue("mainline class",        missing.contains("\"org.apache.bcel.classfile.ClassParser\""));
+        assertTrue("test class",            missing.contains("\"org.apache.bcel.classfile.ConstantPool\""));
+    }
+
+
+    @Test
+    public void testSarif() throws Exception
+    {
+        String report = report("sarif", null);
+
+        assertTrue("header",                report.startsWith("{\"$schema\":"));
+        assertTrue("version",               report.contains("\"version\":\"2.1.0\""));
+        assertTrue("rule",                  report.contains("{\"id\":\"SPLIT_PACKAGE\","));
+        assertTrue("result",                report.contains("{\"ruleId\":\"TRANSITIVE_DEPENDENCY\",\"level\":\"error\""));
+        assertTrue("location",              report.contains("test-dependency/pom.xml\"}"));
+        assertTrue("footer",                report.trim().endsWith("]}]}"));
+
+        // a simple check of well-formedness
+        int depth = 0;
+        boolean inString = false;
+        for (int ii = 0 ; ii < report.length() ; ii++)
+        {
+            char c = report.charAt(ii);
+            if (c == '\\')
+                ii++;
+            else if (c == '"')
+                inString = ! inString;
+            else if (! inString && ((c == '{') || (c == '[')))
+                depth++;
+            else if (! inString && ((c == '}') || (c == ']')))
+                depth--;
+            assertTrue("nesting at " + ii, depth >= 0);
+        }
+        assertEquals("balanced", 0, depth);
+    }
+
+
+    @Test
+    public void testJUnit() throws Exception
+    {
+        String report = report("junit", "example");
+        Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                       .parse(new ByteArrayInputStream(report.getBytes("UTF-8")));
+
+        NodeList suites = dom.getDocumentElement().getElementsByTagName("testsuite");
+        assertEquals("one suite",           1, suites.getLength());
+        assertEquals("suite name",          "example", ((Element)suites.item(0)).getAttribute("name"));
+
+        NodeList testcases = dom.getDocumentElement().getElementsByTagName("testcase");
+        assertTrue("has testcases",         testcases.getLength() > 0);
+
+        Element failure = (Element)((Element)testcases.item(0)).getElementsByTagName("failure").item(0);
+        assertEquals("failure type",        "PACKAGE_MISSING_DEPENDENCY", failure.getAttribute("type"));
+        assertTrue("failure details",       failure.getTextContent().contains("class: org.apache.bcel.classfile.ClassParser"));
+    }
+
+
+    @Test
+    public void testEvidence() throws Exception
+    {
+        DependencyCheck evidenceChecker = new DependencyCheck(new CommandLine("../test-dependency", "--resolveTransitive", "--evidence")).run();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Reporter(new CommandLine("--reportFormat=jsonl"), evidenceChecker).output(out);
+        List<String> lines = Arrays.asList(new String(out.toByteArray(), "UTF-8").split("\n"));
+
+        String transitive = findLine(lines, "\"type\":\"TRANSITIVE_DEPENDENCY\"");
+        assertTrue("referencing classes", transitive.contains("\"referencingClasses\":[\"com.kdgregory.pomutil.testdata.SomeClass\""));
+
+        String unused = findLine(lines, "\"type\":\"UNUSED_MAINLINE_DEPENDENCY\"");
+        assertTrue("no referencing classes", unused.contains("\"referencingClasses\":[]"));
+
+        out = new ByteArrayOutputStream();
+        new Reporter(new CommandLine(), evidenceChecker).output(out);
+        assertTrue("text evidence", new String(out.toByteArray(), "UTF-8").contains(
+                   String.format("%-32s %s", "    REFERENCED_BY", "com.kdgregory.pomutil.testdata.SomeClass")));
+    }
+
+
+    @Test
+    public void testStreaming() throws Exception
+    {
+        // records the report as of each flush, to show that findings are written
+        // while the check is running
+
+        final List<String> flushes = new ArrayList<String>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        {
+            @Override
+            public void flush()
+            {
+                flushes.add(toString());
+            }
+        };
+
+        CommandLine args = new CommandLine("../test-dependency", "--resolveTransitive", "--reportConflicts");
+        DependencyCheck streamingChecker = new DependencyCheck(args);
+        ReportWriter writer = Reporter.createWriter(args, out);
+        writer.begin();
+        new Reporter(args, streamingChecker, "example").run(writer);
+        writer.end();
+
+        assertTrue("flushed for each category", flushes.size() >= 4);
+        assertTrue("missing dependency written first",  flushes.get(0).contains("PACKAGE_MISSING_DEPENDENCY"));
+        assertFalse("before unused dependencies",       flushes.get(0).contains("UNUSED_MAINLINE_DEPENDENCY"));
+        assertFalse("before conflicts",                 flushes.get(0).contains("DUPLICATE_CLASS"));
+        assertEquals("same as completed report",        report(null, "example"), new String(out.toByteArray(), "UTF-8"));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownFormat() throws Exception
+    {
+        report("bogus", null);
+    }
+}
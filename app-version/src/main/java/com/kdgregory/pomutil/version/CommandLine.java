@@ -14,7 +14,8 @@ extends SimpleCLIParser
 {
     public enum Options
     {
-        GROUP_ID, ARTIFACT_ID, OLD_VERSION, NEW_VERSION, AUTO_VERSION, UPDATE_PARENT, UPDATE_DEPENDENCIES
+        GROUP_ID, ARTIFACT_ID, OLD_VERSION, NEW_VERSION, AUTO_VERSION, UPDATE_PARENT, UPDATE_DEPENDENCIES,
+        FSYNC, ALL_OR_NOTHING, PRESERVE_FORMATTING, MANIFEST
     }
 
 
@@ -40,7 +41,19 @@ extends SimpleCLIParser
                 "If enabled, updates all parent references that match the selection criteria"),
         new OptionDefinition(
                 Options.UPDATE_DEPENDENCIES, "--updateDependencies", "", false,
-                "If enabled, updates all dependency references that match the selection criteria")
+                "If enabled, updates all dependency references that match the selection criteria"),
+        new OptionDefinition(
+                Options.FSYNC, "--fsync", "", false,
+                "If enabled, syncs each updated POM to disk before it replaces the original"),
+        new OptionDefinition(
+                Options.ALL_OR_NOTHING, "--allOrNothing", "", false,
+                "If enabled, no POM is replaced until all have been updated; if any fails, all are left unchanged"),
+        new OptionDefinition(
+                Options.PRESERVE_FORMATTING, "--preserveFormatting", "", false,
+                "If enabled, changes only the updated values, leaving whitespace and comments as-is"),
+        new OptionDefinition(
+                Options.MANIFEST, "--manifest", 1,
+                "A file of update rules, applied in a single pass (replaces --groupId and versions)")
     };
 
 
@@ -52,6 +65,14 @@ extends SimpleCLIParser
 
     public boolean isValid()
     {
+        // must specify list of POMs/directories
+        if (CollectionUtil.isEmpty(getParameters()))
+            return false;
+
+        // a manifest provides all rules
+        if (! CollectionUtil.isEmpty(getOptionValues(CommandLine.Options.MANIFEST)))
+            return true;
+
         // must specify group ID
         List<String> groupId = getOptionValues(CommandLine.Options.GROUP_ID);
         if (CollectionUtil.isEmpty(groupId))
@@ -64,10 +85,6 @@ extends SimpleCLIParser
         if ((! autoVersion) && (CollectionUtil.isEmpty(oldVersion) || CollectionUtil.isEmpty(newVersion)))
             return false;
 
-        // must specify list of POMs/directories
-        if (CollectionUtil.isEmpty(getParameters()))
-            return false;
-
         return true;
     }
 }
@@ -15,10 +15,12 @@
 package com.kdgregory.pomutil.version;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 
 import net.sf.kdgcommons.collections.CollectionUtil;
 
+import com.kdgregory.pomutil.util.AtomicFileWriter;
 import com.kdgregory.pomutil.util.Utils;
 
 /**
@@ -45,14 +47,24 @@ public class Main
 
         List<File> files = Utils.buildFileListFromStringList(commandLine.getParameters());
 
+        String manifest = CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.MANIFEST));
+        List<UpdateRule> rules = (manifest != null)
+                               ? UpdateRule.readManifest(new File(manifest))
+                               : Arrays.asList(new UpdateRule(
+                                     CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.GROUP_ID)),
+                                     CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.ARTIFACT_ID)),
+                                     CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.OLD_VERSION)),
+                                     CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.NEW_VERSION)),
+                                     commandLine.isOptionEnabled(CommandLine.Options.AUTO_VERSION)));
+
         new VersionUpdater(
-            CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.GROUP_ID)),
-            CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.ARTIFACT_ID)),
-            CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.OLD_VERSION)),
-            CollectionUtil.first(commandLine.getOptionValues(CommandLine.Options.NEW_VERSION)),
-            commandLine.isOptionEnabled(CommandLine.Options.AUTO_VERSION),
+            rules,
             commandLine.isOptionEnabled(CommandLine.Options.UPDATE_PARENT),
-            commandLine.isOptionEnabled(CommandLine.Options.UPDATE_DEPENDENCIES))
+            commandLine.isOptionEnabled(CommandLine.Options.UPDATE_DEPENDENCIES),
+            commandLine.isOptionEnabled(CommandLine.Options.PRESERVE_FORMATTING),
+            new AtomicFileWriter(
+                commandLine.isOptionEnabled(CommandLine.Options.FSYNC),
+                commandLine.isOptionEnabled(CommandLine.Options.ALL_OR_NOTHING)))
             .run(files);
     }
 }
@@ -0,0 +1,210 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.version;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.kdgcommons.io.IOUtil;
+import net.sf.kdgcommons.lang.ObjectUtil;
+import net.sf.kdgcommons.lang.StringUtil;
+
+
+/**
+ *  A single version update: the group (and optionally artifact) that it applies
+ *  to, the version that it replaces, and the version that replaces it.
+ *  <p>
+ *  Rules may be read from a manifest file, which contains one rule per line in
+ *  the form <code>GROUP_ID[:ARTIFACT_ID] FROM_VERSION TO_VERSION</code>. Either
+ *  version may be "<code>auto</code>", which has the same meaning as omitting it
+ *  with the <code>--autoVersion</code> option. Blank lines and lines starting
+ *  with "#" are ignored.
+ */
+public class UpdateRule
+{
+    private final static String AUTO = "auto";
+
+    private String groupId;
+    private String artifactId;
+    private String fromVersion;
+    private String toVersion;
+    private boolean autoVersion;
+
+
+    /**
+     *  Parameters are as for the {@link VersionUpdater} constructor.
+     */
+    public UpdateRule(String groupId, String artifactId, String fromVersion, String toVersion, boolean autoVersion)
+    {
+        // these checks simplify logic further down
+        if (StringUtil.isEmpty(groupId))
+            throw new IllegalArgumentException("groupId must be specified");
+        if ((fromVersion == null) && ! autoVersion)
+            throw new IllegalArgumentException("fromVersion must be specified if autoVersion not true");
+        if ((toVersion == null) && ! autoVersion)
+            throw new IllegalArgumentException("fromVersion must be specified if autoVersion not true");
+
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.autoVersion = autoVersion;
+    }
+
+
+    /**
+     *  Reads rules from a manifest file.
+     *
+     *  @throws IllegalArgumentException if any line is invalid; the message
+     *          identifies the line.
+     */
+    public static List<UpdateRule> readManifest(File file)
+    throws IOException
+    {
+        List<UpdateRule> result = new ArrayList<UpdateRule>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            int lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+                if ((line.length() == 0) || line.startsWith("#"))
+                    continue;
+
+                try
+                {
+                    result.add(parse(line));
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    throw new IllegalArgumentException(file + ", line " + lineNumber + ": " + ex.getMessage());
+                }
+            }
+            return result;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Accessors
+//----------------------------------------------------------------------------
+
+    public String getGroupId()
+    {
+        return groupId;
+    }
+
+
+    /**
+     *  Returns the artifact ID, <code>null</code> if the rule applies to all
+     *  artifacts in the group.
+     */
+    public String getArtifactId()
+    {
+        return artifactId;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Determines whether an existing version is one that this rule replaces.
+     *  Versions specified as properties never match.
+     */
+    public boolean versionMatches(String existingVersion)
+    {
+        // this can't be used to check versions specified as properties
+        if (existingVersion.startsWith("${"))
+            return false;
+
+        // auto-version doesn't need a from-version
+        if (fromVersion == null)
+            return autoVersion;
+
+        return ObjectUtil.equals(fromVersion, existingVersion.trim());
+    }
+
+
+    /**
+     *  Returns the version that replaces the passed version, <code>null</code>
+     *  if auto-versioning and the existing version can't be incremented.
+     */
+    public String newVersion(String existingVersion)
+    {
+        if (toVersion != null)
+            return toVersion;
+
+        if (existingVersion.endsWith("-SNAPSHOT"))
+            return StringUtil.extractLeft(existingVersion, "-SNAPSHOT");
+
+        String preservedPart = StringUtil.extractLeftOfLast(existingVersion, ".");
+        String updatedPart = StringUtil.extractRightOfLast(existingVersion, ".");
+        try
+        {
+            int oldValue = Integer.parseInt(updatedPart);
+            return preservedPart + "." + (oldValue + 1) + "-SNAPSHOT";
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return groupId + ((artifactId != null) ? ":" + artifactId : "")
+             + " " + (fromVersion != null ? fromVersion : AUTO)
+             + " " + (toVersion != null ? toVersion : AUTO);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static UpdateRule parse(String line)
+    {
+        String[] fields = line.split("\\s+");
+        if (fields.length != 3)
+            throw new IllegalArgumentException("expected GROUP_ID[:ARTIFACT_ID] FROM_VERSION TO_VERSION");
+
+        String[] coordinates = fields[0].split(":");
+        if (coordinates.length > 2)
+            throw new IllegalArgumentException("invalid coordinates: " + fields[0]);
+
+        String groupId = coordinates[0];
+        String artifactId = (coordinates.length > 1) ? coordinates[1] : null;
+        String fromVersion = fields[1].equals(AUTO) ? null : fields[1];
+        String toVersion = fields[2].equals(AUTO) ? null : fields[2];
+        boolean autoVersion = (fromVersion == null) || (toVersion == null);
+        return new UpdateRule(groupId, artifactId, fromVersion, toVersion, autoVersion);
+    }
+}
@@ -1,9 +1,13 @@
 package com.kdgregory.pomutil.version;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.w3c.dom.Element;
@@ -11,32 +15,37 @@ import org.w3c.dom.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import net.sf.kdgcommons.io.IOUtil;
-import net.sf.kdgcommons.lang.ObjectUtil;
-import net.sf.kdgcommons.lang.StringUtil;
 import net.sf.practicalxml.DomUtil;
-import net.sf.practicalxml.OutputUtil;
 
+import com.kdgregory.pomutil.util.AtomicFileWriter;
+import com.kdgregory.pomutil.util.GAKey;
 import com.kdgregory.pomutil.util.GAV;
+import com.kdgregory.pomutil.util.PomPatcher;
 import com.kdgregory.pomutil.util.PomPaths;
+import com.kdgregory.pomutil.util.PomSerializer;
 import com.kdgregory.pomutil.util.PomWrapper;
 
 
 /**
  *  Version updater: identifies POMs or dependencies that match a
- *  specified version and updates them to a new version.
+ *  specified version and updates them to a new version. Multiple
+ *  {@link UpdateRule}s may be applied in a single pass.
  */
 public class VersionUpdater {
 
     Logger logger = LoggerFactory.getLogger(getClass());
 
-    private String groupId;
-    private String artifactId;
-    private String fromVersion;
-    private String toVersion;
-    private boolean autoVersion;
+    private List<UpdateRule> rules;
+    private Map<GAKey,UpdateRule> artifactRules = new HashMap<GAKey,UpdateRule>();
+    private Map<String,UpdateRule> groupRules = new HashMap<String,UpdateRule>();
     private boolean updateParent;
     private boolean updateDependencies;
+    private boolean preserveFormatting;
+    private AtomicFileWriter writer;
+    private PomSerializer serializer = PomSerializer.compact();
+
+    private List<File> changedFiles = new ArrayList<File>();
+    private List<File> unchangedFiles = new ArrayList<File>();
 
 
     /**
@@ -55,90 +64,184 @@ public class VersionUpdater {
         String groupId, String artifactId, String fromVersion, String toVersion,
         boolean autoVersion, boolean updateParent, boolean updateDependencies)
     {
-        // these checks simplify logic further down
-        if (StringUtil.isEmpty(groupId))
-            throw new IllegalArgumentException("groupId must be specified");
-        if ((fromVersion == null) && ! autoVersion)
-            throw new IllegalArgumentException("fromVersion must be specified if autoVersion not true");
-        if ((toVersion == null) && ! autoVersion)
-            throw new IllegalArgumentException("fromVersion must be specified if autoVersion not true");
-
-        this.groupId = groupId;
-        this.artifactId = artifactId;
-        this.fromVersion = fromVersion;
-        this.toVersion = toVersion;
-        this.autoVersion = autoVersion;
+        this(groupId, artifactId, fromVersion, toVersion, autoVersion, updateParent, updateDependencies,
+             false, new AtomicFileWriter());
+    }
+
+
+    /**
+     *  Base single-rule constructor, which allows the caller to specify how files
+     *  are written. Other parameters are as above.
+     *
+     *  @param preserveFormatting   If true, changed values are spliced into the
+     *                              original file content, rather than re-serializing
+     *                              the POM; this preserves whitespace and comments.
+     *  @param writer               Writes the updated files (and determines whether
+     *                              they're synced, or all-or-nothing).
+     */
+    public VersionUpdater(
+        String groupId, String artifactId, String fromVersion, String toVersion,
+        boolean autoVersion, boolean updateParent, boolean updateDependencies,
+        boolean preserveFormatting, AtomicFileWriter writer)
+    {
+        this(Arrays.asList(new UpdateRule(groupId, artifactId, fromVersion, toVersion, autoVersion)),
+             updateParent, updateDependencies, preserveFormatting, writer);
+    }
+
+
+    /**
+     *  Creates an instance that applies multiple rules in a single pass over each
+     *  POM. Each POM, parent, or dependency reference is updated by at most one
+     *  rule: the one for its group and artifact if it exists, otherwise the one
+     *  for its group.
+     *
+     *  @throws IllegalArgumentException if there's more than one rule for the
+     *          same group and artifact (or for the same group, without artifact).
+     */
+    public VersionUpdater(
+        List<UpdateRule> rules, boolean updateParent, boolean updateDependencies,
+        boolean preserveFormatting, AtomicFileWriter writer)
+    {
+        this.rules = rules;
         this.updateParent = updateParent;
         this.updateDependencies = updateDependencies;
+        this.preserveFormatting = preserveFormatting;
+        this.writer = writer;
+
+        for (UpdateRule rule : rules)
+        {
+            UpdateRule prev = (rule.getArtifactId() != null)
+                            ? artifactRules.put(new GAKey(rule.getGroupId(), rule.getArtifactId()), rule)
+                            : groupRules.put(rule.getGroupId(), rule);
+            if (prev != null)
+                throw new IllegalArgumentException("conflicting rules: " + prev + ", " + rule);
+        }
     }
 
 
+    /**
+     *  Updates the passed files. A file is only rewritten if its content would
+     *  change; this is not the same as having a matching version, since the new
+     *  version may be the same as the old.
+     *  <p>
+     *  Files that can't be parsed are logged and skipped. Failure to write a file
+     *  is thrown; files are replaced atomically, so the failed file is unchanged
+     *  (as are all files, if the writer is all-or-nothing).
+     */
     public void run(List<File> files)
     throws Exception
     {
-        for (File file : files)
+        try
         {
-            logger.info("processing: " + file.getPath());
-            try
+            for (File file : files)
             {
-                PomWrapper wrapped = new PomWrapper(file);
-                boolean changed = possiblyUpdateProjectVersion(wrapped)
+                logger.info("processing: " + file.getPath());
+                PomPatcher patcher = preserveFormatting ? openPatcher(file) : null;
+                PomWrapper wrapped = (patcher != null) ? new PomWrapper(patcher.getDom()) : openFile(file);
+                if (wrapped == null)
+                    continue;
+
+                boolean updated = possiblyUpdateProjectVersion(wrapped)
                                 | possiblyUpdateParentVersion(wrapped)
                                 | possiblyUpdateDependencies(wrapped);
-                if (changed)
-                {
-                    FileOutputStream out = new FileOutputStream(file);
-                    try
-                    {
-                        OutputUtil.compactStream(wrapped.getDom(), out);
-                    }
-                    finally
-                    {
-                        IOUtil.closeQuietly(out);
-                    }
-                }
-            }
-            catch (Exception ex)
-            {
-                logger.warn("unable to parse file: " + file);
+                if (updated && writeIfChanged(wrapped, patcher, file))
+                    changedFiles.add(file);
+                else
+                    unchangedFiles.add(file);
             }
+            writer.commit();
         }
+        catch (Exception ex)
+        {
+            writer.rollback();
+            throw ex;
+        }
+
+        logger.info("applied {} rules: {} files changed, {} unchanged", rules.size(), changedFiles.size(), unchangedFiles.size());
+    }
+
+
+    /**
+     *  Returns the files that were rewritten by {@link #run}.
+     */
+    public List<File> getChangedFiles()
+    {
+        return Collections.unmodifiableList(changedFiles);
+    }
+
+
+    /**
+     *  Returns the files that were examined by {@link #run} but not rewritten,
+     *  either because they didn't match or because the update didn't change
+     *  their content.
+     */
+    public List<File> getUnchangedFiles()
+    {
+        return Collections.unmodifiableList(unchangedFiles);
     }
 
 //----------------------------------------------------------------------------
 //  Internals
 //----------------------------------------------------------------------------
 
-    private boolean possiblyUpdateProjectVersion(PomWrapper wrapped)
+    private PomWrapper openFile(File file)
     {
-        Element projectElement = wrapped.selectElement(PomPaths.PROJECT);
-        if (groupAndArtifactMatches(projectElement) && oldVersionMatches(projectElement))
+        try
         {
-            updateVersionElement("project", projectElement);
-            return true;
+            return new PomWrapper(file);
         }
-        else
+        catch (Exception ex)
         {
-            return false;
+            logger.warn("unable to parse file: " + file);
+            return null;
         }
     }
 
 
+    /**
+     *  Returns a patcher for the file, null if it can't be used (in which case
+     *  the file will be parsed normally, and reported if it can't be parsed).
+     */
+    private PomPatcher openPatcher(File file)
+    {
+        try
+        {
+            return new PomPatcher(file);
+        }
+        catch (Exception ex)
+        {
+            logger.debug("unable to preserve formatting of {}: {}", file, ex.getMessage());
+            return null;
+        }
+    }
+
+
+    private boolean writeIfChanged(PomWrapper wrapped, PomPatcher patcher, File file)
+    throws Exception
+    {
+        byte[] content = (patcher != null) ? patcher.apply() : null;
+        if ((content == null) && (patcher != null))
+            logger.warn("unable to preserve formatting; rewriting: {}", file);
+        if (content == null)
+            content = serializer.toBytes(wrapped.getDom());
+        return writer.write(file, content);
+    }
+
+
+    private boolean possiblyUpdateProjectVersion(PomWrapper wrapped)
+    {
+        Element projectElement = wrapped.selectElement(PomPaths.PROJECT);
+        return possiblyUpdateVersionElement("project", projectElement, findRule(projectElement));
+    }
+
+
     private boolean possiblyUpdateParentVersion(PomWrapper wrapped)
     {
         if (! updateParent)
             return false;
 
         Element parentElement = wrapped.selectElement(PomPaths.PARENT);
-        if (groupAndArtifactMatches(parentElement) && oldVersionMatches(parentElement))
-        {
-            updateVersionElement("parent", parentElement);
-            return true;
-        }
-        else
-        {
-            return false;
-        }
+        return possiblyUpdateVersionElement("parent", parentElement, findRule(parentElement));
     }
 
 
@@ -148,19 +251,26 @@ public class VersionUpdater {
             return false;
 
         boolean result = false;
-        Set<String> targetProperties = new HashSet<String>();
-
-        Set<Element> targetDependencies = new HashSet<Element>(
-                                                wrapped.filterByGroupAndArtifact(
-                                                    wrapped.selectElements(PomPaths.PROJECT_DEPENDENCIES,
-                                                                           PomPaths.MANAGED_DEPENDENCIES),
-                                                    groupId, artifactId));
+        Map<UpdateRule,Set<Element>> targetDependencies = new HashMap<UpdateRule,Set<Element>>();
+        Map<String,UpdateRule> targetProperties = new HashMap<String,UpdateRule>();
 
-        for (Element dependencyElement : targetDependencies)
+        for (Element dependencyElement : wrapped.selectElements(PomPaths.PROJECT_DEPENDENCIES,
+                                                                PomPaths.MANAGED_DEPENDENCIES))
         {
-            if (groupAndArtifactMatches(dependencyElement) && oldVersionMatches(dependencyElement))
+            UpdateRule rule = findRule(dependencyElement);
+            if (rule == null)
+                continue;
+
+            Set<Element> ruleTargets = targetDependencies.get(rule);
+            if (ruleTargets == null)
+            {
+                ruleTargets = new HashSet<Element>();
+                targetDependencies.put(rule, ruleTargets);
+            }
+            ruleTargets.add(dependencyElement);
+
+            if (possiblyUpdateVersionElement("dependency", dependencyElement, rule))
             {
-                updateVersionElement("dependency", dependencyElement);
                 result = true;
             }
             else
@@ -169,23 +279,26 @@ public class VersionUpdater {
                 if (dependencyVersion.startsWith("${"))
                 {
                     String propertyName = dependencyVersion.substring(2, dependencyVersion.length() - 1);
-                    targetProperties.add(propertyName);
+                    targetProperties.put(propertyName, rule);
                 }
             }
         }
 
-        return result || possiblyUpdateProperties(wrapped, targetDependencies, targetProperties);
+        return possiblyUpdateProperties(wrapped, targetDependencies, targetProperties) | result;
     }
 
 
-    private boolean possiblyUpdateProperties(PomWrapper wrapped, Set<Element> targetDependencies, Set<String> targetProperties)
+    private boolean possiblyUpdateProperties(PomWrapper wrapped, Map<UpdateRule,Set<Element>> targetDependencies, Map<String,UpdateRule> targetProperties)
     {
         boolean result = false;
 
-        for (String property : targetProperties)
+        for (Map.Entry<String,UpdateRule> entry : targetProperties.entrySet())
         {
+            String property = entry.getKey();
+            UpdateRule rule = entry.getValue();
+
             String existingVersion = wrapped.getProperty(property);
-            if (! oldVersionMatches(existingVersion))
+            if (! versionMatches(rule, existingVersion))
             {
                 continue;
             }
@@ -194,13 +307,16 @@ public class VersionUpdater {
             elementsWithProperty.addAll(wrapped.selectElements(PomPaths.PROJECT_DEPENDENCIES + "[mvn:version='${" + property + "}']"));
             elementsWithProperty.addAll(wrapped.selectElements(PomPaths.MANAGED_DEPENDENCIES + "[mvn:version='${" + property + "}']"));
 
-            if (! elementsWithProperty.equals(targetDependencies))
+            // this also catches properties used by dependencies selected by different rules
+            if (! elementsWithProperty.equals(targetDependencies.get(rule)))
             {
                 logger.warn("unselected dependencies use property {}; not updating", property);
                 continue;
             }
 
-            String newVersion = determineNewVersion(existingVersion);
+            String newVersion = determineNewVersion(rule, existingVersion);
+            if (newVersion == null)
+                continue;
 
             logger.warn("updating property {} from {} to {}", property, existingVersion, newVersion);
             wrapped.setProperty(property, newVersion);
@@ -210,90 +326,70 @@ public class VersionUpdater {
     }
 
 
-    private boolean groupAndArtifactMatches(Element reference)
+    /**
+     *  Finds the rule that applies to a project, parent, or dependency reference,
+     *  preferring one that specifies the artifact ID.
+     */
+    private UpdateRule findRule(Element reference)
     {
+        // this is a bogus file
+        if (reference == null)
+            return null;
+
         Element groupElement = DomUtil.getChild(reference, "groupId");
         if (groupElement == null)
-            return false;
-        if (! groupId.equals(DomUtil.getText(groupElement)))
-            return false;
-
-        if (artifactId == null)
-            return true;
+            return null;
+        String referenceGroupId = DomUtil.getText(groupElement).trim();
 
         Element artifactElement = DomUtil.getChild(reference, "artifactId");
-        if (artifactElement == null)
-            return false;
-        if (! artifactId.equals(DomUtil.getText(artifactElement)))
-            return false;
+        if (artifactElement != null)
+        {
+            UpdateRule rule = artifactRules.get(new GAKey(referenceGroupId, DomUtil.getText(artifactElement).trim()));
+            if (rule != null)
+                return rule;
+        }
 
-        return true;
+        return groupRules.get(referenceGroupId);
     }
 
 
-    private boolean oldVersionMatches(Element container)
+    private boolean versionMatches(UpdateRule rule, String existingVersion)
     {
-        // this is a bogus file
-        if (container == null)
-            return false;
-
-        Element versionElement = DomUtil.getChild(container, "version");
-        if (versionElement == null)
-            return false;
-
-        return oldVersionMatches(DomUtil.getText(versionElement));
+        logger.debug("testing version {}; rule = {}", existingVersion, rule);
+        return rule.versionMatches(existingVersion);
     }
 
 
-    private boolean oldVersionMatches(String existingVersion)
+    /**
+     *  Updates the version of a project, parent, or dependency if it matches the
+     *  rule. Returns true if the version matched (even if it couldn't be updated).
+     */
+    private boolean possiblyUpdateVersionElement(String containerType, Element container, UpdateRule rule)
     {
-        logger.debug("testing version {}; fromVersion = {}, autoVersion = {}", existingVersion, fromVersion, autoVersion);
-
-        // this can't be used to check versions specified as properties
-        if (existingVersion.startsWith("${"))
+        if (rule == null)
             return false;
 
-        // auto-version doesn't need a from-version
-        if (fromVersion == null)
-            return autoVersion;
-
-        return ObjectUtil.equals(fromVersion, existingVersion.trim());
-    }
-
+        Element versionElement = DomUtil.getChild(container, "version");
+        if ((versionElement == null) || ! versionMatches(rule, DomUtil.getText(versionElement)))
+            return false;
 
-    private void updateVersionElement(String containerType, Element container)
-    {
         GAV gav = new GAV(container);
-        String newVersion = determineNewVersion(gav.version);
+        String newVersion = determineNewVersion(rule, gav.version);
 
         if (newVersion != null)
         {
             logger.info("new {} version: {}:{}:{}", containerType, gav.groupId, gav.artifactId, newVersion);
-            Element versionElement = DomUtil.getChild(container, "version");
             DomUtil.setText(versionElement, newVersion);
         }
+        return true;
     }
 
 
-    private String determineNewVersion(String existingVersion)
+    private String determineNewVersion(UpdateRule rule, String existingVersion)
     {
-        if (toVersion != null)
-            return toVersion;
-
-        if (existingVersion.endsWith("-SNAPSHOT"))
-            return StringUtil.extractLeft(existingVersion, "-SNAPSHOT");
-
-        String preservedPart = StringUtil.extractLeftOfLast(existingVersion, ".");
-        String updatedPart = StringUtil.extractRightOfLast(existingVersion, ".");
-        try
-        {
-            int oldValue = Integer.parseInt(updatedPart);
-            return preservedPart + "." + (oldValue + 1) + "-SNAPSHOT";
-        }
-        catch (NumberFormatException ex)
-        {
+        String newVersion = rule.newVersion(existingVersion);
+        if (newVersion == null)
             logger.error("unable to autoversion: " + existingVersion);
-            return null;
-        }
+        return newVersion;
     }
 }
@@ -108,4 +108,16 @@ public class TestCommandLine {
         CommandLine c = new CommandLine("--fromVersion", "1.0", "--toVersion", "2.0");
         assertFalse("command line is valid", c.isValid());
     }
+
+
+    @Test
+    public void testManifest() throws Exception
+    {
+        CommandLine c1 = new CommandLine("--manifest", "rules.txt", "--updateDependencies", "pom.xml");
+        assertTrue("command line is valid", c1.isValid());
+        assertEquals("manifest",            Arrays.asList("rules.txt"), c1.getOptionValues(Options.MANIFEST));
+
+        CommandLine c2 = new CommandLine("--manifest", "rules.txt");
+        assertFalse("command line is valid without files", c2.isValid());
+    }
 }
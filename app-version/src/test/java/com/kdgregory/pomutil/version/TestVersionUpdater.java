@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -18,6 +19,7 @@ import net.sf.kdgcommons.io.IOUtil;
 import net.sf.practicalxml.DomUtil;
 import net.sf.practicalxml.OutputUtil;
 
+import com.kdgregory.pomutil.util.AtomicFileWriter;
 import com.kdgregory.pomutil.util.PomPaths;
 import com.kdgregory.pomutil.util.PomWrapper;
 
@@ -418,6 +420,154 @@ public class TestVersionUpdater
     }
 
 
+    @Test
+    public void testUnchangedContentNotWritten() throws Exception
+    {
+        logger.info("*** testUnchangedContentNotWritten ***");
+
+        List<File> poms = createTestPoms("basepom.xml", 2);
+        File pomToUpdate = poms.get(0);
+        File pomToIgnore = poms.get(1);
+        updatePom(pomToIgnore, PomPaths.PROJECT_VERSION, "1.2.3-SNAPSHOT");
+
+        // the first update converts the POM to its serialized form, so the second
+        // update matches the version but doesn't change the content
+
+        new VersionUpdater("com.example.pomutil.test", "example", "1.0.0", "1.1.0", false, false, false).run(poms);
+        pomToUpdate.setLastModified(10000);
+        pomToIgnore.setLastModified(10000);
+
+        VersionUpdater updater = new VersionUpdater("com.example.pomutil.test", "example", "1.1.0", "1.1.0", false, false, false);
+        updater.run(poms);
+
+        assertEquals("changed files",   Arrays.asList(), updater.getChangedFiles());
+        assertEquals("unchanged files", poms, updater.getUnchangedFiles());
+        assertEquals("modification time of matching POM",     10000, pomToUpdate.lastModified());
+        assertEquals("modification time of non-matching POM", 10000, pomToIgnore.lastModified());
+        assertEquals("version", "1.1.0", new PomWrapper(pomToUpdate).getGAV().version);
+    }
+
+
+    @Test
+    public void testAllOrNothing() throws Exception
+    {
+        logger.info("*** testAllOrNothing ***");
+
+        List<File> poms = createTestPoms("basepom.xml", 3);
+        final File failingPom = poms.get(1);
+
+        AtomicFileWriter writer = new AtomicFileWriter(false, true)
+        {
+            @Override
+            public boolean write(File file, byte[] content) throws IOException
+            {
+                if (file.equals(failingPom))
+                    throw new IOException("simulated failure");
+                return super.write(file, content);
+            }
+        };
+
+        try
+        {
+            new VersionUpdater("com.example.pomutil.test", "example", "1.0.0", "1.1.0", false, false, false, false, writer).run(poms);
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            assertEquals("exception message", "simulated failure", ex.getMessage());
+        }
+
+        for (File pom : poms)
+        {
+            assertEquals("version not updated: " + pom, "1.0.0", new PomWrapper(pom).getGAV().version);
+        }
+    }
+
+
+    @Test
+    public void testPreserveFormatting() throws Exception
+    {
+        logger.info("*** testPreserveFormatting ***");
+
+        List<File> poms = createTestPoms("propertyDependencyPom.xml", 1);
+        File pom = poms.get(0);
+        String original = new String(Files.readAllBytes(pom.toPath()), "UTF-8");
+
+        new VersionUpdater("com.example.pomutil.test", "updated-dependency", "1.0.1-SNAPSHOT", "1.0.1", false, false, true,
+                           true, new AtomicFileWriter())
+            .run(poms);
+
+        String expected = original.replace("<expectUpdate.version>1.0.1-SNAPSHOT</expectUpdate.version>",
+                                           "<expectUpdate.version>1.0.1</expectUpdate.version>");
+        assertFalse("test precondition: property was replaced", expected.equals(original));
+        assertEquals("only the property was changed", expected, new String(Files.readAllBytes(pom.toPath()), "UTF-8"));
+    }
+
+
+    @Test
+    public void testMultipleRules() throws Exception
+    {
+        logger.info("*** testMultipleRules ***");
+
+        List<File> poms = createTestPoms("explicitDependencyPom.xml", 1);
+        File pom = poms.get(0);
+
+        File manifest = IOUtil.createTempFile(
+                new ByteArrayInputStream(("# project and one dependency; the group rule doesn't apply to the latter\n"
+                                          + "\n"
+                                          + "com.example.pomutil.test      1.0.0           1.0.1-SNAPSHOT\n"
+                                          + "com.example.pomutil.test:updated-dependency   auto   auto\n").getBytes("UTF-8")),
+                getClass().getName() + "-");
+
+        new VersionUpdater(UpdateRule.readManifest(manifest), false, true, false, new AtomicFileWriter()).run(poms);
+
+        PomWrapper check = new PomWrapper(pom);
+        assertEquals("project version",                     "1.0.1-SNAPSHOT",   check.selectValue(PomPaths.PROJECT_VERSION));
+        assertEquals("updated dependency version",          "1.0.1",            check.selectValue(PomPaths.PROJECT_DEPENDENCIES + "[mvn:artifactId='updated-dependency']/mvn:version"));
+        assertEquals("nonupdated dependency version",       "1.0.1-SNAPSHOT",   check.selectValue(PomPaths.PROJECT_DEPENDENCIES + "[mvn:artifactId='non-updated-dependency']/mvn:version"));
+        assertEquals("updated dependency mgmt version",     "1.0.1",            check.selectValue(PomPaths.MANAGED_DEPENDENCIES + "[mvn:artifactId='updated-dependency']/mvn:version"));
+    }
+
+
+    @Test
+    public void testConflictingRules() throws Exception
+    {
+        logger.info("*** testConflictingRules ***");
+
+        try
+        {
+            new VersionUpdater(Arrays.asList(new UpdateRule("com.example.pomutil.test", "example", "1.0", "1.1", false),
+                                             new UpdateRule("com.example.pomutil.test", "example", "1.0", "2.0", false)),
+                               false, true, false, new AtomicFileWriter());
+            fail("constructor accepted conflicting rules");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // success
+        }
+    }
+
+
+    @Test
+    public void testInvalidManifest() throws Exception
+    {
+        logger.info("*** testInvalidManifest ***");
+
+        File manifest = IOUtil.createTempFile(
+                new ByteArrayInputStream("com.example.pomutil.test 1.0 1.1\ncom.example.pomutil.test 1.0\n".getBytes("UTF-8")),
+                getClass().getName() + "-");
+        try
+        {
+            UpdateRule.readManifest(manifest);
+            fail("read invalid manifest");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            assertTrue("message identifies line: " + ex.getMessage(), ex.getMessage().contains("line 2"));
+        }
+    }
+
+
     @Test
     public void testBogusFile() throws Exception
     {
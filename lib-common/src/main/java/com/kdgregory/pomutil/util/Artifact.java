@@ -16,6 +16,8 @@ package com.kdgregory.pomutil.util;
 
 import java.io.Serializable;
 import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.w3c.dom.Element;
 
@@ -52,6 +54,10 @@ extends GAV
     public Scope scope          = Scope.COMPILE;
     public boolean optional;
 
+    // for dependencies, artifacts excluded from transitive resolution; either
+    // component may be "*"
+    public Set<GAKey> exclusions = new TreeSet<GAKey>();
+
 
     /**
      *  Base constructor, allowing explicit specification of all fields.
@@ -108,6 +114,8 @@ extends GAV
                 this.scope = lookupScope(value);
             else if (localName.equals("optional"))
                 this.optional = value.equalsIgnoreCase("true");
+            else if (localName.equals("exclusions"))
+                extractExclusions(child);
         }
     }
 
@@ -122,6 +130,17 @@ extends GAV
         this.packaging = that.packaging;
         this.scope = that.scope;
         this.optional = that.optional;
+        this.exclusions.addAll(that.exclusions);
+    }
+
+
+    private void extractExclusions(Element exclusionsElement)
+    {
+        for (Element exclusion : DomUtil.getChildren(exclusionsElement))
+        {
+            GAV excluded = new GAV(exclusion);
+            exclusions.add(new GAKey(StringUtil.trim(excluded.groupId), StringUtil.trim(excluded.artifactId)));
+        }
     }
 
 
@@ -166,7 +185,25 @@ extends GAV
      */
     public Artifact withVersion(String newVersion)
     {
-        return new Artifact(groupId, artifactId, newVersion, classifier, packaging, scope.name(), optional);
+        Artifact result = new Artifact(this);
+        result.version = newVersion;
+        return result;
+    }
+
+
+    /**
+     *  Determines whether the passed artifact is excluded by this dependency's
+     *  exclusions, taking wildcards into account.
+     */
+    public boolean isExcluded(GAKey key)
+    {
+        for (GAKey exclusion : exclusions)
+        {
+            if ((exclusion.get0().equals("*") || exclusion.get0().equals(key.get0()))
+                    && (exclusion.get1().equals("*") || exclusion.get1().equals(key.get1())))
+                return true;
+        }
+        return false;
     }
 
 //----------------------------------------------------------------------------
@@ -0,0 +1,351 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+
+/**
+ *  Replaces the content of files without ever leaving a partially-written file:
+ *  content is written to a temporary file in the same directory, which is then
+ *  renamed over the original. Files whose content would not change are not
+ *  written at all, so their modification times are preserved.
+ *  <p>
+ *  Optionally, the temporary file is synced to disk before being renamed, so
+ *  that an operating system crash can't leave an empty or truncated file.
+ *  <p>
+ *  In all-or-nothing mode, writes are staged and the originals left untouched
+ *  until {@link #commit} is called. If the commit fails part-way, files that
+ *  were already replaced are restored from backups. Callers should invoke
+ *  {@link #rollback} if they abandon a set of writes.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class AtomicFileWriter
+{
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private boolean sync;
+    private boolean allOrNothing;
+
+    private List<Staged> staged = new ArrayList<Staged>();
+
+
+    /**
+     *  Creates an instance that replaces files immediately, without syncing.
+     */
+    public AtomicFileWriter()
+    {
+        this(false, false);
+    }
+
+
+    /**
+     *  @param  sync            If <code>true</code>, the written content is synced
+     *                          to disk before the original file is replaced.
+     *  @param  allOrNothing    If <code>true</code>, writes are staged until
+     *                          {@link #commit} is called.
+     */
+    public AtomicFileWriter(boolean sync, boolean allOrNothing)
+    {
+        this.sync = sync;
+        this.allOrNothing = allOrNothing;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes the passed content to the specified file, unless the file already
+     *  holds exactly that content. Returns <code>true</code> if the file was
+     *  written (or, in all-or-nothing mode, will be written when committed),
+     *  <code>false</code> if it was left untouched.
+     *  <p>
+     *  If this method throws, the original file is unchanged.
+     */
+    public boolean write(File file, byte[] content)
+    throws IOException
+    {
+        if (contentMatches(file, content))
+            return false;
+
+        File tempFile = writeTempFile(file, content);
+        if (allOrNothing)
+        {
+            synchronized (staged)
+            {
+                staged.add(new Staged(file, tempFile));
+            }
+        }
+        else
+        {
+            try
+            {
+                replace(tempFile, file);
+            }
+            catch (IOException ex)
+            {
+                delete(tempFile);
+                throw ex;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     *  Replaces all files written since the last commit or rollback. If unable
+     *  to replace any file, restores those that were already replaced, deletes
+     *  remaining temporary files, and throws. This is a no-op if the writer is
+     *  not in all-or-nothing mode.
+     */
+    public void commit()
+    throws IOException
+    {
+        List<Staged> toCommit = takeStaged();
+        List<Staged> committed = new ArrayList<Staged>();
+        try
+        {
+            for (Staged entry : toCommit)
+            {
+                if (entry.file.exists())
+                {
+                    entry.backup = File.createTempFile(entry.file.getName() + ".", ".bak", entry.file.getAbsoluteFile().getParentFile());
+                    Files.copy(entry.file.toPath(), entry.backup.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                                                                          StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                replace(entry.tempFile, entry.file);
+                committed.add(entry);
+            }
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to commit changes; restoring {} files", committed.size());
+            for (Staged entry : committed)
+            {
+                restore(entry);
+            }
+            for (Staged entry : toCommit)
+            {
+                if (committed.contains(entry))
+                    continue;
+                delete(entry.tempFile);
+                delete(entry.backup);
+            }
+            throw ex;
+        }
+
+        for (Staged entry : committed)
+        {
+            delete(entry.backup);
+        }
+    }
+
+
+    /**
+     *  Discards all files written since the last commit or rollback, leaving the
+     *  originals untouched. This is a no-op if the writer is not in all-or-nothing
+     *  mode.
+     */
+    public void rollback()
+    {
+        for (Staged entry : takeStaged())
+        {
+            delete(entry.tempFile);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  A file that has been written but not yet replaced.
+     */
+    private static class Staged
+    {
+        public File file;
+        public File tempFile;
+        public File backup;
+
+        public Staged(File file, File tempFile)
+        {
+            this.file = file;
+            this.tempFile = tempFile;
+        }
+    }
+
+
+    private List<Staged> takeStaged()
+    {
+        synchronized (staged)
+        {
+            List<Staged> result = new ArrayList<Staged>(staged);
+            staged.clear();
+            return result;
+        }
+    }
+
+
+    /**
+     *  Compares the file's content with that passed. If the lengths differ this
+     *  doesn't read the file at all, otherwise it stops at the first difference.
+     */
+    private static boolean contentMatches(File file, byte[] content)
+    throws IOException
+    {
+        if (! file.isFile() || (file.length() != content.length))
+            return false;
+
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buf = new byte[8192];
+            int offset = 0;
+            int count;
+            while ((count = in.read(buf)) > 0)
+            {
+                if (offset + count > content.length)
+                    return false;
+                for (int ii = 0 ; ii < count ; ii++)
+                {
+                    if (buf[ii] != content[offset + ii])
+                        return false;
+                }
+                offset += count;
+            }
+            return offset == content.length;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     *  Writes the content to a temporary file in the same directory as the target
+     *  (so that it can be renamed), with the same permissions as the target. The
+     *  temporary file is deleted if unable to write.
+     */
+    private File writeTempFile(File file, byte[] content)
+    throws IOException
+    {
+        File tempFile = File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+        FileOutputStream out = null;
+        try
+        {
+            out = new FileOutputStream(tempFile);
+            out.write(content);
+            if (sync)
+                out.getFD().sync();
+            out.close();
+            copyPermissions(file, tempFile);
+            return tempFile;
+        }
+        catch (IOException ex)
+        {
+            IOUtil.closeQuietly(out);
+            delete(tempFile);
+            throw ex;
+        }
+    }
+
+
+    private static void copyPermissions(File src, File dst)
+    throws IOException
+    {
+        if (! src.exists())
+            return;
+
+        PosixFileAttributeView srcView = Files.getFileAttributeView(src.toPath(), PosixFileAttributeView.class);
+        PosixFileAttributeView dstView = Files.getFileAttributeView(dst.toPath(), PosixFileAttributeView.class);
+        if ((srcView != null) && (dstView != null))
+        {
+            dstView.setPermissions(srcView.readAttributes().permissions());
+        }
+        else
+        {
+            dst.setReadable(src.canRead());
+            dst.setWritable(src.canWrite());
+            dst.setExecutable(src.canExecute());
+        }
+    }
+
+
+    /**
+     *  Renames the temporary file over the target. Falls back to a non-atomic
+     *  rename on filesystems that don't support atomic moves (which will still
+     *  never leave a partially-written file).
+     */
+    private static void replace(File tempFile, File file)
+    throws IOException
+    {
+        try
+        {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                                                         StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException ex)
+        {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     *  Restores a replaced file from its backup (or deletes it, if it didn't
+     *  previously exist). If unable to restore, the backup is left in place.
+     */
+    private void restore(Staged entry)
+    {
+        try
+        {
+            if (entry.backup != null)
+                replace(entry.backup, entry.file);
+            else
+                delete(entry.file);
+        }
+        catch (IOException ex)
+        {
+            logger.error("unable to restore {}; original content is in {}", entry.file, entry.backup);
+        }
+    }
+
+
+    private static void delete(File file)
+    {
+        if (file != null)
+            file.delete();
+    }
+}
@@ -0,0 +1,301 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.kdgcommons.io.IOUtil;
+
+
+/**
+ *  A persistent index of the classes contained in JAR files. Each JAR's class
+ *  list is stored in its own file within the index directory, along with the
+ *  JAR's path, size, and last-modified time; if any of those change, the JAR
+ *  is re-read and the index entry replaced.
+ *  <p>
+ *  Entries are also retained in memory, so that a process that examines many
+ *  projects (eg, a reactor build) reads each entry at most once.
+ *  <p>
+ *  The index is an optimization: failure to read or write an entry is logged
+ *  and the JAR is read directly. Entries are written to a temporary file and
+ *  then renamed, so concurrent processes sharing the same directory will see
+ *  either a complete entry or none at all.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+public class ClassIndex
+{
+    private static Logger logger = LoggerFactory.getLogger(ClassIndex.class);
+
+    private final static String HEADER = "pomutil-class-index 1";
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private File indexDir;
+    private ConcurrentHashMap<File,MemoryEntry> memoryEntries = new ConcurrentHashMap<File,MemoryEntry>();
+
+    private AtomicLong hitCount = new AtomicLong();
+    private AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     *  Creates an instance that stores its entries in the default location,
+     *  <code>$HOME/.m2/pomutil/class-index</code>.
+     */
+    public ClassIndex()
+    {
+        this(defaultIndexDir());
+    }
+
+
+    /**
+     *  Creates an instance that stores its entries in the specified directory.
+     *  The directory will be created on first write if it doesn't exist.
+     */
+    public ClassIndex(File indexDir)
+    {
+        this.indexDir = indexDir;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the names of all classes in the specified JAR, in the form
+     *  produced by {@link Utils#extractClassesFromJar}. If the index holds
+     *  a current entry for the JAR it's used, otherwise the JAR is read and
+     *  the index updated. The returned list is unmodifiable.
+     */
+    public List<String> getClasses(File jarFile)
+    throws IOException
+    {
+        jarFile = jarFile.getCanonicalFile();
+        long length = jarFile.length();
+        long lastModified = jarFile.lastModified();
+
+        MemoryEntry memoryEntry = memoryEntries.get(jarFile);
+        if ((memoryEntry != null) && (memoryEntry.length == length) && (memoryEntry.lastModified == lastModified))
+        {
+            hitCount.incrementAndGet();
+            return memoryEntry.classes;
+        }
+
+        File entryFile = entryFile(jarFile);
+        List<String> classes = readEntry(entryFile, jarFile);
+        if (classes != null)
+        {
+            hitCount.incrementAndGet();
+        }
+        else
+        {
+            missCount.incrementAndGet();
+            logger.debug("indexing {}", jarFile);
+            classes = Utils.extractClassesFromJar(jarFile);
+            writeEntry(entryFile, jarFile, length, lastModified, classes);
+        }
+
+        classes = Collections.unmodifiableList(classes);
+        memoryEntries.put(jarFile, new MemoryEntry(length, lastModified, classes));
+        return classes;
+    }
+
+
+    /**
+     *  Returns the directory where index entries are stored.
+     */
+    public File getIndexDirectory()
+    {
+        return indexDir;
+    }
+
+
+    /**
+     *  Returns the number of JARs whose classes were retrieved from the index.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+
+    /**
+     *  Returns the number of JARs that had to be read.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static File defaultIndexDir()
+    {
+        File userHome = new File(System.getProperty("user.home"));
+        File m2 = new File(userHome, ".m2");
+        File pomutil = new File(m2, "pomutil");
+        return new File(pomutil, "class-index");
+    }
+
+
+    private static class MemoryEntry
+    {
+        public long length;
+        public long lastModified;
+        public List<String> classes;
+
+        public MemoryEntry(long length, long lastModified, List<String> classes)
+        {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.classes = classes;
+        }
+    }
+
+
+    /**
+     *  Entries are named after the JAR, with a hash of its full path to
+     *  distinguish identically-named JARs in different locations.
+     */
+    private File entryFile(File jarFile)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(jarFile.getPath().getBytes(UTF8));
+            StringBuilder sb = new StringBuilder(jarFile.getName().length() + 24)
+                               .append(jarFile.getName()).append("-");
+            for (int ii = 0 ; ii < 8 ; ii++)
+            {
+                sb.append(String.format("%02x", hash[ii] & 0xFF));
+            }
+            return new File(indexDir, sb.append(".idx").toString());
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // every JVM is required to support SHA-1
+            throw new IllegalStateException("SHA-1 not available", ex);
+        }
+    }
+
+
+    /**
+     *  Reads an index entry, returning <code>null</code> if it doesn't exist,
+     *  can't be read, or doesn't match the current state of the JAR.
+     */
+    private List<String> readEntry(File entryFile, File jarFile)
+    {
+        if (! entryFile.exists())
+            return null;
+
+        BufferedReader in = null;
+        try
+        {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(entryFile), UTF8));
+            if (! HEADER.equals(in.readLine()))
+                return null;
+            if (! jarFile.getPath().equals(in.readLine()))
+                return null;
+            if (! String.valueOf(jarFile.length()).equals(in.readLine()))
+                return null;
+            if (! String.valueOf(jarFile.lastModified()).equals(in.readLine()))
+                return null;
+
+            List<String> classes = new ArrayList<String>();
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (line.length() > 0)
+                    classes.add(line);
+            }
+            return classes;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to read class index entry {}: {}", entryFile, ex.getMessage());
+            return null;
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     *  Writes an index entry. The size and timestamp are those observed before
+     *  the JAR was read, so a JAR that changes while being read will be re-read
+     *  on the next request.
+     */
+    private void writeEntry(File entryFile, File jarFile, long length, long lastModified, List<String> classes)
+    {
+        File tempFile = null;
+        Writer out = null;
+        try
+        {
+            indexDir.mkdirs();
+            tempFile = File.createTempFile(entryFile.getName(), ".tmp", indexDir);
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), UTF8));
+            out.write(HEADER + "\n");
+            out.write(jarFile.getPath() + "\n");
+            out.write(length + "\n");
+            out.write(lastModified + "\n");
+            for (String className : classes)
+            {
+                out.write(className + "\n");
+            }
+            out.close();
+            out = null;
+
+            Files.move(tempFile.toPath(), entryFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tempFile = null;
+        }
+        catch (IOException ex)
+        {
+            logger.warn("unable to write class index entry {}: {}", entryFile, ex.getMessage());
+        }
+        finally
+        {
+            IOUtil.closeQuietly(out);
+            if (tempFile != null)
+                tempFile.delete();
+        }
+    }
+}
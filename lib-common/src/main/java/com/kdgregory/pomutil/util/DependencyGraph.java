@@ -0,0 +1,294 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kdgregory.pomutil.util.Artifact.Scope;
+
+
+/**
+ *  Resolves the transitive dependencies of a project from the local repository,
+ *  following Maven's rules: test- and provided-scoped dependencies of a dependency
+ *  are not inherited, optional dependencies are not inherited, exclusions apply
+ *  to the entire subtree below the dependency that declares them, the project's
+ *  managed versions override those of its dependencies, and where an artifact is
+ *  reachable by multiple paths the nearest wins (with ties going to the first
+ *  declared). Unlike Maven, the scope of a dependency is not widened if it is
+ *  reachable by a broader-scoped but more distant path.
+ *  <p>
+ *  The dependencies declared by each artifact are held in a process-wide cache
+ *  of graph nodes, so that an artifact's POM is examined once no matter how many
+ *  paths (or projects) reach it. Each node remembers the POM it was built from,
+ *  and is rebuilt if {@link PomCache} returns a different POM (because the file
+ *  changed, or a different repository is used). Missing POMs are logged and
+ *  treated as having no dependencies.
+ */
+public class DependencyGraph
+{
+    private static Logger logger = LoggerFactory.getLogger(DependencyGraph.class);
+
+    private static Map<GAV,Node> nodes = new ConcurrentHashMap<GAV,Node>();
+    private static AtomicLong nodeLoadCount = new AtomicLong();
+
+    private LocalRepository repo;
+    private Map<GAKey,String> managedVersions;
+
+    // all reachable artifacts, in order of resolution (ie, nearest first)
+    private Map<GAKey,PathEntry> resolved = new LinkedHashMap<GAKey,PathEntry>();
+
+
+    /**
+     *  Resolves the transitive dependencies of the passed direct dependencies.
+     *
+     *  @param  repo                The repository used to find dependency POMs.
+     *  @param  directDependencies  The project's dependencies, with versions and
+     *                              scopes already resolved (eg, from {@link ResolvedPom}).
+     *  @param  managedVersions     The project's managed versions, which override
+     *                              the versions of transitive dependencies.
+     */
+    public DependencyGraph(LocalRepository repo, Collection<Artifact> directDependencies, Map<GAKey,String> managedVersions)
+    throws IOException
+    {
+        this.repo = repo;
+        this.managedVersions = managedVersions;
+        resolve(directDependencies);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns all transitive dependencies (ie, those that are not direct
+     *  dependencies), with their mediated versions and scopes, nearest first.
+     */
+    public List<Artifact> getTransitiveDependencies()
+    {
+        List<Artifact> result = new ArrayList<Artifact>();
+        for (PathEntry entry : resolved.values())
+        {
+            if (entry.parent != null)
+                result.add(entry.artifact);
+        }
+        return result;
+    }
+
+
+    /**
+     *  Returns the resolved artifact with the specified group and artifact ID,
+     *  <code>null</code> if it isn't part of the graph.
+     */
+    public Artifact getArtifact(GAKey key)
+    {
+        PathEntry entry = resolved.get(key);
+        return (entry == null) ? null : entry.artifact;
+    }
+
+
+    /**
+     *  Returns the chain of dependencies that leads to the specified artifact,
+     *  starting with a direct dependency and ending with the artifact itself.
+     *  Returns an empty list if the artifact is not part of the graph.
+     */
+    public List<Artifact> getPath(GAKey key)
+    {
+        List<Artifact> result = new ArrayList<Artifact>();
+        for (PathEntry entry = resolved.get(key) ; entry != null ; entry = entry.parent)
+        {
+            result.add(entry.artifact);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+
+    /**
+     *  Returns the number of nodes that have been loaded into the shared cache
+     *  (ie, the number of POMs examined). Exposed for testing.
+     */
+    public static long getNodeLoadCount()
+    {
+        return nodeLoadCount.get();
+    }
+
+
+    /**
+     *  Removes all shared nodes and resets statistics.
+     */
+    public static void clear()
+    {
+        nodes.clear();
+        nodeLoadCount.set(0);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  An artifact and the dependencies declared by its POM. Nodes are shared,
+     *  so the dependencies are those of the POM, before project-specific
+     *  mediation.
+     */
+    private static class Node
+    {
+        public ResolvedPom pom;
+        public List<Artifact> dependencies;
+
+        public Node(ResolvedPom pom, List<Artifact> dependencies)
+        {
+            this.pom = pom;
+            this.dependencies = dependencies;
+        }
+    }
+
+
+    /**
+     *  A resolved artifact, along with the entry that caused it to be included;
+     *  direct dependencies have no parent. The artifact's exclusions include all
+     *  those of its ancestors.
+     */
+    private static class PathEntry
+    {
+        public Artifact artifact;
+        public PathEntry parent;
+
+        public PathEntry(Artifact artifact, PathEntry parent)
+        {
+            this.artifact = artifact;
+            this.parent = parent;
+        }
+    }
+
+
+    /**
+     *  A breadth-first traversal, so that the first time we see an artifact is
+     *  via its shortest path.
+     */
+    private void resolve(Collection<Artifact> directDependencies)
+    throws IOException
+    {
+        Deque<PathEntry> queue = new ArrayDeque<PathEntry>();
+        for (Artifact dependency : directDependencies)
+        {
+            GAKey key = dependency.toGAKey();
+            if (resolved.containsKey(key))
+                continue;
+            PathEntry entry = new PathEntry(dependency, null);
+            resolved.put(key, entry);
+            queue.add(entry);
+        }
+
+        while (! queue.isEmpty())
+        {
+            PathEntry current = queue.removeFirst();
+            for (Artifact dependency : getNode(current.artifact).dependencies)
+            {
+                GAKey key = dependency.toGAKey();
+                if (dependency.optional || resolved.containsKey(key) || current.artifact.isExcluded(key))
+                    continue;
+
+                Scope scope = mediateScope(current.artifact.scope, dependency.scope);
+                if (scope == null)
+                    continue;
+
+                String managedVersion = managedVersions.get(key);
+                Artifact artifact = (managedVersion != null)
+                                  ? dependency.withVersion(managedVersion)
+                                  : new Artifact(dependency);
+                artifact.scope = scope;
+                artifact.exclusions.addAll(current.artifact.exclusions);
+
+                PathEntry entry = new PathEntry(artifact, current);
+                resolved.put(key, entry);
+                queue.add(entry);
+            }
+        }
+
+        logger.debug("resolved {} dependencies from {} direct", resolved.size(), directDependencies.size());
+    }
+
+
+    /**
+     *  Returns the scope of a transitive dependency, given the scope of the artifact
+     *  that depends on it and its declared scope; <code>null</code> if it is not
+     *  inherited. This is the table from the Maven "Introduction to the Dependency
+     *  Mechanism," with system scope treated as provided.
+     */
+    private static Scope mediateScope(Scope parentScope, Scope declaredScope)
+    {
+        if (parentScope == Scope.SYSTEM)
+            parentScope = Scope.PROVIDED;
+
+        switch (declaredScope)
+        {
+            case COMPILE :
+                return parentScope;
+            case RUNTIME :
+                return (parentScope == Scope.COMPILE) ? Scope.RUNTIME : parentScope;
+            default :
+                return null;
+        }
+    }
+
+
+    private Node getNode(Artifact artifact)
+    throws IOException
+    {
+        GAV key = new GAV(artifact.groupId, artifact.artifactId, artifact.version);
+        ResolvedPom pom = PomCache.getResolvedPom(repo, key);
+        Node node = nodes.get(key);
+        if ((node != null) && (node.pom == pom))
+            return node;
+
+        // if two threads load the same node we'll waste some effort, but the
+        // results will be identical
+
+        nodeLoadCount.incrementAndGet();
+        List<Artifact> dependencies = new ArrayList<Artifact>();
+        if (pom == null)
+        {
+            logger.debug("no POM for {}; treating as having no dependencies", key);
+        }
+        else
+        {
+            for (ResolvedPom imported : pom.getImportedPoms())
+            {
+                dependencies.addAll(imported.getDirectDependencies().values());
+            }
+            dependencies.addAll(pom.getDirectDependencies().values());
+        }
+
+        node = new Node(pom, Collections.unmodifiableList(dependencies));
+        nodes.put(key, node);
+        return node;
+    }
+}
@@ -0,0 +1,284 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ *  A process-wide, bounded cache of POMs read from the local repository. This
+ *  holds two kinds of entries: parsed POMs, used to build a project's parent
+ *  chain, and fully resolved POMs, used for imported BOMs (which are resolved
+ *  in their own context, so may be shared between projects). Both are keyed
+ *  by coordinates, and evicted in least-recently-used order once the cache
+ *  reaches its maximum size.
+ *  <p>
+ *  Entries remember the file that they were loaded from, along with its size
+ *  and timestamp; a request that resolves to a different file (ie, a different
+ *  repository), or to a file that has since changed, is treated as a miss and
+ *  replaces the entry. Resolved POMs also remember the entries that they were
+ *  built from (parents and imports), and are replaced if any of those changes.
+ *  This allows the cache to be used by a long-running process.
+ *  <p>
+ *  All methods are thread-safe. POMs are loaded outside of the cache lock, so
+ *  concurrent callers may occasionally load the same POM twice.
+ */
+public class PomCache
+{
+    private static Logger logger = LoggerFactory.getLogger(PomCache.class);
+
+    public final static int DEFAULT_MAX_SIZE = 1000;
+
+    private static int maxSize = DEFAULT_MAX_SIZE;
+    private static Map<GAV,CacheEntry<ReadOnlyPom>> parsedPoms = new LruMap<ReadOnlyPom>();
+    private static Map<GAV,CacheEntry<ResolvedPom>> resolvedPoms = new LruMap<ResolvedPom>();
+
+    private static AtomicLong hitCount = new AtomicLong();
+    private static AtomicLong missCount = new AtomicLong();
+
+    // while resolving a POM, collects the entries that it was built from
+    private static ThreadLocal<List<CacheEntry<?>>> sources = new ThreadLocal<List<CacheEntry<?>>>();
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the parsed POM for the specified coordinates, loading it from the
+     *  repository if it's not already cached. Returns <code>null</code> if the
+     *  POM does not exist in the repository.
+     */
+    public static ReadOnlyPom getPom(LocalRepository repo, GAV gav)
+    throws IOException
+    {
+        GAV key = new GAV(gav.groupId, gav.artifactId, gav.version);
+        File file = repo.resolve(new Artifact(key.groupId, key.artifactId, key.version, "pom"));
+        if (file == null)
+            return null;
+
+        CacheEntry<ReadOnlyPom> entry = retrieve(parsedPoms, key, file);
+        if (entry == null)
+        {
+            logger.debug("parsing {} from {}", key, file);
+            entry = new CacheEntry<ReadOnlyPom>(file, new ReadOnlyPom(file), Collections.<CacheEntry<?>>emptyList());
+            store(parsedPoms, key, entry);
+        }
+        recordSource(entry);
+        return entry.value;
+    }
+
+
+    /**
+     *  Returns the resolved POM for the specified coordinates, loading and resolving
+     *  it if it's not already cached. Returns <code>null</code> if the POM does not
+     *  exist in the repository.
+     */
+    public static ResolvedPom getResolvedPom(LocalRepository repo, GAV gav)
+    throws IOException
+    {
+        GAV key = new GAV(gav.groupId, gav.artifactId, gav.version);
+        File file = repo.resolve(new Artifact(key.groupId, key.artifactId, key.version, "pom"));
+        if (file == null)
+            return null;
+
+        CacheEntry<ResolvedPom> entry = retrieve(resolvedPoms, key, file);
+        if (entry == null)
+        {
+            logger.debug("resolving {} from {}", key, file);
+            List<CacheEntry<?>> outerSources = sources.get();
+            List<CacheEntry<?>> pomSources = new ArrayList<CacheEntry<?>>();
+            sources.set(pomSources);
+            try
+            {
+                entry = new CacheEntry<ResolvedPom>(file, new ResolvedPom(getPom(repo, key), repo), pomSources);
+            }
+            finally
+            {
+                sources.set(outerSources);
+            }
+            store(resolvedPoms, key, entry);
+        }
+        recordSource(entry);
+        return entry.value;
+    }
+
+
+    /**
+     *  Sets the maximum number of entries of each type (parsed and resolved) that
+     *  will be retained. If the cache currently holds more than this number, the
+     *  excess will be evicted as new entries are stored.
+     */
+    public static synchronized void setMaxSize(int value)
+    {
+        if (value < 1)
+            throw new IllegalArgumentException("cache size must be positive: " + value);
+        maxSize = value;
+    }
+
+
+    /**
+     *  Returns the maximum number of entries of each type.
+     */
+    public static synchronized int getMaxSize()
+    {
+        return maxSize;
+    }
+
+
+    /**
+     *  Removes all entries and resets statistics.
+     */
+    public static synchronized void clear()
+    {
+        parsedPoms.clear();
+        resolvedPoms.clear();
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+
+    /**
+     *  Returns the number of requests that were satisfied from the cache.
+     */
+    public static long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+
+    /**
+     *  Returns the number of requests that required a POM to be loaded.
+     */
+    public static long getMissCount()
+    {
+        return missCount.get();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the cached entry if it's still current, <code>null</code> if not.
+     *  The check touches the filesystem, so is made outside of the lock.
+     */
+    private static <T> CacheEntry<T> retrieve(Map<GAV,CacheEntry<T>> cache, GAV key, File file)
+    {
+        CacheEntry<T> entry = lookup(cache, key);
+        if ((entry != null) && entry.isCurrent(file))
+        {
+            hitCount.incrementAndGet();
+            return entry;
+        }
+
+        if (entry != null)
+            logger.debug("cached entry for {} is stale", key);
+
+        missCount.incrementAndGet();
+        return null;
+    }
+
+
+    private static synchronized <T> CacheEntry<T> lookup(Map<GAV,CacheEntry<T>> cache, GAV key)
+    {
+        return cache.get(key);
+    }
+
+
+    private static synchronized <T> void store(Map<GAV,CacheEntry<T>> cache, GAV key, CacheEntry<T> entry)
+    {
+        cache.put(key, entry);
+    }
+
+
+    private static void recordSource(CacheEntry<?> entry)
+    {
+        List<CacheEntry<?>> current = sources.get();
+        if (current != null)
+            current.add(entry);
+    }
+
+
+    private static class CacheEntry<T>
+    {
+        public File file;
+        public long length;
+        public long lastModified;
+        public T value;
+        public List<CacheEntry<?>> sources;
+
+        public CacheEntry(File file, T value, List<CacheEntry<?>> sources)
+        {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.value = value;
+            this.sources = sources;
+        }
+
+        /**
+         *  Determines whether this entry was loaded from the specified file, and
+         *  neither that file nor any of the entries it was built from has changed.
+         */
+        public boolean isCurrent(File requestedFile)
+        {
+            if (! file.equals(requestedFile)
+                    || (file.length() != length)
+                    || (file.lastModified() != lastModified))
+                return false;
+
+            for (CacheEntry<?> source : sources)
+            {
+                if (! source.isCurrent(source.file))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     *  An access-ordered map that evicts its eldest entry once it exceeds the
+     *  configured cache size. Must only be accessed while holding the class lock.
+     */
+    private static class LruMap<T>
+    extends LinkedHashMap<GAV,CacheEntry<T>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        public LruMap()
+        {
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GAV,CacheEntry<T>> eldest)
+        {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+
+
+/**
+ *  Supports updating a POM without re-serializing it. The POM is parsed into a
+ *  DOM, recording the location of each element's content in the original file.
+ *  After the DOM has been modified, {@link #apply} splices the new text of any
+ *  changed element into the original content, leaving everything else (including
+ *  whitespace, comments, and the XML declaration) byte-for-byte unchanged.
+ *  <p>
+ *  Only changes to the text of elements that contain no other elements can be
+ *  applied this way. If elements have been added, removed, or reordered, or an
+ *  element's text can't be replaced (for example, because it was written as an
+ *  empty tag), {@link #apply} returns <code>null</code> and the caller must
+ *  serialize the DOM instead. The same is true if the recorded location of a
+ *  changed element can't be verified against the original text. Changes to
+ *  attributes, comments, and processing instructions are not detected, and
+ *  will be lost.
+ *  <p>
+ *  Files that use CR (without LF) as a line separator are rejected: the parser
+ *  doesn't report reliable locations for them.
+ */
+public class PomPatcher
+{
+    private final static String SPAN_KEY = PomPatcher.class.getName();
+    private final static Pattern LONE_CR_PATTERN = Pattern.compile("\r(?!\n)");
+    private final static Pattern ENTITY_PATTERN = Pattern.compile("&(#x[0-9A-Fa-f]+|#[0-9]+|lt|gt|amp|quot|apos);");
+    private final static Pattern ENCODING_PATTERN = Pattern.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private byte[] original;
+    private Charset charset;
+    private String text;
+    private Document dom;
+    private int elementCount;
+
+
+    /**
+     *  Reads and parses the specified file.
+     *
+     *  @throws IOException if unable to read or parse the file, if its content
+     *          can't be decoded and re-encoded without change, or if it uses
+     *          CR as a line separator.
+     */
+    public PomPatcher(File file)
+    throws IOException
+    {
+        this(Files.readAllBytes(file.toPath()));
+    }
+
+
+    /**
+     *  Parses the provided content.
+     *
+     *  @throws IOException if unable to parse the content, if it can't be
+     *          decoded and re-encoded without change, or if it uses CR as a
+     *          line separator.
+     */
+    public PomPatcher(byte[] content)
+    throws IOException
+    {
+        original = content;
+        charset = detectCharset(content);
+        text = decode(content, charset);
+        if (! Arrays.equals(text.getBytes(charset), content))
+            throw new IOException("content does not survive conversion to/from " + charset);
+        if (LONE_CR_PATTERN.matcher(text).find())
+            throw new IOException("content uses CR as line separator");
+
+        parse();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the parsed DOM. Callers may change the text of any element.
+     */
+    public Document getDom()
+    {
+        return dom;
+    }
+
+
+    /**
+     *  Returns the original content, with the current text of all changed
+     *  elements substituted for their original content. Returns <code>null</code>
+     *  if the DOM has been changed in a way that can't be applied.
+     */
+    public byte[] apply()
+    {
+        List<Span> changes = new ArrayList<Span>();
+        List<Span> visited = new ArrayList<Span>(elementCount);
+        if (! findChanges(dom.getDocumentElement(), visited, changes) || (visited.size() != elementCount))
+            return null;
+
+        if (changes.isEmpty())
+            return original;
+
+        for (Span change : changes)
+        {
+            if (! verify(change))
+                return null;
+        }
+
+        StringBuilder sb = new StringBuilder(text.length() + 64);
+        int offset = 0;
+        for (Span change : changes)
+        {
+            sb.append(text, offset, change.start);
+            escape(change.element, sb);
+            offset = change.end;
+        }
+        sb.append(text, offset, text.length());
+        return sb.toString().getBytes(charset);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  The location of an element's content in the original text, along with
+     *  that content's value if the element only contained text (otherwise null).
+     */
+    private static class Span
+    {
+        public Element element;
+        public int start;
+        public int end;
+        public String originalText;
+        public boolean selfClosing;
+    }
+
+
+    private static Charset detectCharset(byte[] content)
+    {
+        if ((content.length >= 2) && (((content[0] & 0xFF) == 0xFE) && ((content[1] & 0xFF) == 0xFF)
+                                  ||  ((content[0] & 0xFF) == 0xFF) && ((content[1] & 0xFF) == 0xFE)))
+            return Charset.forName("UTF-16");
+
+        String prolog = new String(content, 0, Math.min(content.length, 200), Charset.forName("ISO-8859-1"));
+        if (prolog.startsWith("\u00EF\u00BB\u00BF"))
+            return Charset.forName("UTF-8");
+
+        Matcher matcher = ENCODING_PATTERN.matcher(prolog);
+        return matcher.find() ? Charset.forName(matcher.group(1)) : Charset.forName("UTF-8");
+    }
+
+
+    private static String decode(byte[] content, Charset charset)
+    throws CharacterCodingException
+    {
+        CharsetDecoder decoder = charset.newDecoder()
+                                 .onMalformedInput(CodingErrorAction.REPORT)
+                                 .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = decoder.decode(ByteBuffer.wrap(content));
+        return chars.toString();
+    }
+
+
+    /**
+     *  Builds the DOM from SAX events, so that the parser's locator can be used
+     *  to identify the content of each element.
+     */
+    private void parse()
+    throws IOException
+    {
+        // the parser doesn't want to see a BOM when reading from a string
+        int base = text.startsWith("\uFEFF") ? 1 : 0;
+
+        try
+        {
+            dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XMLReader reader = factory.newSAXParser().getXMLReader();
+            reader.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+
+            Handler handler = new Handler(base);
+            reader.setContentHandler(handler);
+            reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+            reader.parse(new InputSource(new StringReader(text.substring(base))));
+        }
+        catch (IOException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            throw new IOException("unable to parse: " + ex.getMessage(), ex);
+        }
+    }
+
+
+    /**
+     *  Walks the DOM, recording the spans of all elements and those whose text
+     *  has changed. Returns false if there's a change that can't be represented
+     *  as a span (including elements that are not in their original order).
+     */
+    private static boolean findChanges(Element elem, List<Span> visited, List<Span> changes)
+    {
+        Span span = (Span)elem.getUserData(SPAN_KEY);
+        if ((span == null) || (span.element != elem))
+            return false;
+
+        if (! visited.isEmpty() && (visited.get(visited.size() - 1).start >= span.start))
+            return false;
+        visited.add(span);
+
+        boolean hasChildElements = false;
+        for (Node child = elem.getFirstChild() ; child != null ; child = child.getNextSibling())
+        {
+            if (child.getNodeType() == Node.ELEMENT_NODE)
+            {
+                hasChildElements = true;
+                if (! findChanges((Element)child, visited, changes))
+                    return false;
+            }
+        }
+
+        if (hasChildElements)
+            return true;
+
+        String currentText = getText(elem);
+        if ((currentText == null) ? (span.originalText == null) : currentText.equals(span.originalText))
+            return true;
+
+        if ((currentText == null) || (span.originalText == null) || span.selfClosing)
+            return false;
+
+        changes.add(span);
+        return true;
+    }
+
+
+    /**
+     *  Verifies that a span's location is consistent with the original text: it
+     *  must follow a start tag, precede an end tag, and contain the element's
+     *  original value.
+     */
+    private boolean verify(Span span)
+    {
+        if ((span.start == 0) || (text.charAt(span.start - 1) != '>') || ! text.startsWith("</", span.end))
+            return false;
+
+        return span.originalText.equals(decodeContent(text.substring(span.start, span.end)));
+    }
+
+
+    /**
+     *  Converts the literal content of an element to its parsed value: line
+     *  endings are normalized, CDATA sections are unwrapped, and character and
+     *  predefined entity references are replaced. Returns <code>null</code> if
+     *  the content contains anything else (eg, a reference to a DTD entity).
+     */
+    private static String decodeContent(String content)
+    {
+        content = content.replace("\r\n", "\n");
+
+        StringBuilder sb = new StringBuilder(content.length());
+        int offset = 0;
+        while (offset < content.length())
+        {
+            if (content.startsWith("<![CDATA[", offset))
+            {
+                int end = content.indexOf("]]>", offset);
+                if (end < 0)
+                    return null;
+                sb.append(content, offset + 9, end);
+                offset = end + 3;
+            }
+            else if (content.charAt(offset) == '&')
+            {
+                Matcher matcher = ENTITY_PATTERN.matcher(content);
+                if (! matcher.find(offset) || (matcher.start() != offset))
+                    return null;
+                sb.append(decodeEntity(matcher.group(1)));
+                offset = matcher.end();
+            }
+            else if (content.charAt(offset) == '<')
+            {
+                return null;
+            }
+            else
+            {
+                sb.append(content.charAt(offset++));
+            }
+        }
+        return sb.toString();
+    }
+
+
+    private static String decodeEntity(String name)
+    {
+        if (name.startsWith("#x"))
+            return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+        if (name.startsWith("#"))
+            return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+        if (name.equals("lt"))
+            return "<";
+        if (name.equals("gt"))
+            return ">";
+        if (name.equals("amp"))
+            return "&";
+        if (name.equals("quot"))
+            return "\"";
+        return "'";
+    }
+
+
+    /**
+     *  Returns the concatenated text of an element's children, null if it has
+     *  any children other than text.
+     */
+    private static String getText(Element elem)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Node child = elem.getFirstChild() ; child != null ; child = child.getNextSibling())
+        {
+            switch (child.getNodeType())
+            {
+                case Node.TEXT_NODE :
+                case Node.CDATA_SECTION_NODE :
+                    sb.append(child.getNodeValue());
+                    break;
+                default :
+                    return null;
+            }
+        }
+        return sb.toString();
+    }
+
+
+    private static void escape(Element elem, StringBuilder sb)
+    {
+        String value = getText(elem);
+        for (int ii = 0 ; ii < value.length() ; ii++)
+        {
+            char c = value.charAt(ii);
+            switch (c)
+            {
+                case '&' :  sb.append("&amp;"); break;
+                case '<' :  sb.append("&lt;");  break;
+                case '>' :  sb.append("&gt;");  break;
+                default :   sb.append(c);
+            }
+        }
+    }
+
+
+    /**
+     *  Builds the DOM. Adjacent text and CDATA are combined into a single text
+     *  node, as with a coalescing DOM parser.
+     */
+    private class Handler
+    extends DefaultHandler2
+    {
+        private int base;
+        private int[] lineStarts;
+        private Locator locator;
+        private Node current;
+        private List<Span> openSpans = new ArrayList<Span>();
+        private boolean inDTD;
+
+        public Handler(int base)
+        {
+            this.base = base;
+            this.current = dom;
+            this.lineStarts = findLineStarts(text, base);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator value)
+        {
+            locator = value;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs)
+        {
+            Element elem = dom.createElementNS(uri.isEmpty() ? null : uri, qName);
+            for (int ii = 0 ; ii < attrs.getLength() ; ii++)
+            {
+                String attrName = attrs.getQName(ii);
+                String attrUri = attrName.equals("xmlns") || attrName.startsWith("xmlns:")
+                               ? XMLConstants.XMLNS_ATTRIBUTE_NS_URI
+                               : attrs.getURI(ii);
+                elem.setAttributeNS(attrUri.isEmpty() ? null : attrUri, attrName, attrs.getValue(ii));
+            }
+            current.appendChild(elem);
+            current = elem;
+
+            Span span = new Span();
+            span.element = elem;
+            span.start = currentOffset();
+            elem.setUserData(SPAN_KEY, span, null);
+            openSpans.add(span);
+            elementCount++;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            Span span = openSpans.remove(openSpans.size() - 1);
+            int offset = currentOffset();
+            if (offset == span.start)
+            {
+                span.end = offset;
+                span.selfClosing = true;
+            }
+            else
+            {
+                span.end = text.lastIndexOf("</", offset - 1);
+            }
+            span.originalText = getText(span.element);
+            current = current.getParentNode();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            Node last = current.getLastChild();
+            if ((last != null) && (last.getNodeType() == Node.TEXT_NODE))
+                ((Text)last).appendData(new String(ch, start, length));
+            else
+                current.appendChild(dom.createTextNode(new String(ch, start, length)));
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+        {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data)
+        {
+            current.appendChild(dom.createProcessingInstruction(target, data));
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length)
+        {
+            if (! inDTD)
+                current.appendChild(dom.createComment(new String(ch, start, length)));
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId)
+        {
+            inDTD = true;
+        }
+
+        @Override
+        public void endDTD()
+        {
+            inDTD = false;
+        }
+
+        /**
+         *  Converts the locator's line and column (which refer to the position
+         *  just after the current event) to an offset in the original text.
+         */
+        private int currentOffset()
+        {
+            return lineStarts[locator.getLineNumber() - 1] + locator.getColumnNumber() - 1;
+        }
+    }
+
+
+    /**
+     *  Returns the offsets of the start of each line, using the XML definition
+     *  of line ending (CR, LF, or CR-LF). Note that the constructor rejects
+     *  content with lone CRs, as the parser's columns are wrong after them.
+     */
+    private static int[] findLineStarts(String text, int base)
+    {
+        int[] result = new int[64];
+        int count = 0;
+        result[count++] = base;
+        for (int ii = base ; ii < text.length() ; ii++)
+        {
+            char c = text.charAt(ii);
+            if ((c == '\r') && (ii + 1 < text.length()) && (text.charAt(ii + 1) == '\n'))
+                ii++;
+            if ((c == '\r') || (c == '\n'))
+            {
+                if (count == result.length)
+                    result = Arrays.copyOf(result, count * 2);
+                result[count++] = ii + 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
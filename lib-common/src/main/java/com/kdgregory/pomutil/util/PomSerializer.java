@@ -0,0 +1,418 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+
+/**
+ *  Writes a DOM as XML text, without going through a JAXP transformer. The
+ *  output is the same as that of an identity transform with the XML declaration
+ *  omitted (as used by practicalxml's <code>OutputUtil</code>), including its
+ *  rules for indentation, escaping, and namespace declarations.
+ *  <p>
+ *  When indenting, whitespace-only text nodes are ignored, as if they had been
+ *  removed before serialization. Text (and CDATA) suppresses indentation of the
+ *  nodes that follow it, so mixed content isn't altered. This matches the JDK 8
+ *  transformer; later JDKs indent mixed content, changing its text.
+ *  <p>
+ *  Instances are immutable and may be shared between threads. Output is built
+ *  in a per-thread buffer, which is retained for the next document unless it
+ *  has grown unusually large.
+ */
+public class PomSerializer
+{
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+    private static ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>()
+    {
+        @Override
+        protected StringBuilder initialValue()
+        {
+            return new StringBuilder(16384);
+        }
+    };
+
+    private String indentUnit;
+    private String lineSeparator;
+
+
+    private PomSerializer(String indentUnit)
+    {
+        this.indentUnit = indentUnit;
+        this.lineSeparator = System.getProperty("line.separator", "\n");
+    }
+
+
+    /**
+     *  Returns a serializer that writes the DOM as-is.
+     */
+    public static PomSerializer compact()
+    {
+        return new PomSerializer(null);
+    }
+
+
+    /**
+     *  Returns a serializer that indents each level of nested elements by the
+     *  specified number of spaces.
+     */
+    public static PomSerializer indented(int indent)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int ii = 0 ; ii < indent ; ii++)
+        {
+            sb.append(' ');
+        }
+        return new PomSerializer(sb.toString());
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Serializes the passed document to a string.
+     */
+    public String toString(Document dom)
+    {
+        StringBuilder buf = buffers.get();
+        try
+        {
+            new Output(buf).writeChildren(dom);
+            if (indentUnit != null)
+                buf.append(lineSeparator);
+            return buf.toString();
+        }
+        finally
+        {
+            if (buf.capacity() > MAX_RETAINED_BUFFER)
+                buffers.remove();
+            else
+                buf.setLength(0);
+        }
+    }
+
+
+    /**
+     *  Serializes the passed document to UTF-8 bytes.
+     */
+    public byte[] toBytes(Document dom)
+    {
+        return toString(dom).getBytes(UTF8);
+    }
+
+
+    /**
+     *  Serializes the passed document to a writer. The caller is responsible for
+     *  closing the writer.
+     */
+    public void write(Document dom, Writer out)
+    throws IOException
+    {
+        out.write(toString(dom));
+        out.flush();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Holds the state for serializing a single document.
+     */
+    private class Output
+    {
+        private StringBuilder buf;
+        private int depth;
+        private boolean prevText;
+
+        // in-scope namespace bindings, as prefix/URI pairs; the first is implicit
+        private List<String> namespaces = new ArrayList<String>();
+
+        public Output(StringBuilder buf)
+        {
+            this.buf = buf;
+            namespaces.add("");
+            namespaces.add("");
+        }
+
+
+        public void writeChildren(Node parent)
+        {
+            for (Node child = parent.getFirstChild() ; child != null ; child = child.getNextSibling())
+            {
+                writeNode(child);
+            }
+        }
+
+
+        private void writeNode(Node node)
+        {
+            switch (node.getNodeType())
+            {
+                case Node.ELEMENT_NODE :
+                    writeElement((Element)node);
+                    break;
+                case Node.TEXT_NODE :
+                    if (! isIgnorable(node))
+                    {
+                        escapeText(node.getNodeValue());
+                        prevText = true;
+                    }
+                    break;
+                case Node.CDATA_SECTION_NODE :
+                    buf.append("<![CDATA[")
+                       .append(node.getNodeValue().replace("]]>", "]]]]><![CDATA[>"))
+                       .append("]]>");
+                    prevText = true;
+                    break;
+                case Node.COMMENT_NODE :
+                    indent();
+                    buf.append("<!--").append(node.getNodeValue()).append("-->");
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE :
+                    indent();
+                    buf.append("<?").append(node.getNodeName());
+                    if (node.getNodeValue().length() > 0)
+                        buf.append(' ').append(node.getNodeValue());
+                    buf.append("?>");
+                    break;
+                case Node.ENTITY_REFERENCE_NODE :
+                    writeChildren(node);
+                    break;
+                default :
+                    // document type and the like aren't written
+            }
+        }
+
+
+        private void writeElement(Element elem)
+        {
+            indent();
+
+            int scopeMark = namespaces.size();
+            String name = elem.getNodeName();
+            buf.append('<').append(name);
+            writeAttributes(elem);
+
+            if (! hasContent(elem))
+            {
+                buf.append("/>");
+            }
+            else
+            {
+                buf.append('>');
+                prevText = false;
+                depth++;
+                writeChildren(elem);
+                depth--;
+                newLine();
+                buf.append("</").append(name).append('>');
+            }
+
+            prevText = false;
+            namespaces.subList(scopeMark, namespaces.size()).clear();
+        }
+
+
+        /**
+         *  Writes namespace declarations (both explicit and those needed for the
+         *  element and its attributes), followed by the remaining attributes.
+         */
+        private void writeAttributes(Element elem)
+        {
+            NamedNodeMap attrs = elem.getAttributes();
+            List<Attr> regularAttrs = new ArrayList<Attr>(attrs.getLength());
+            for (int ii = 0 ; ii < attrs.getLength() ; ii++)
+            {
+                Attr attr = (Attr)attrs.item(ii);
+                String attrName = attr.getName();
+                if (attrName.equals("xmlns"))
+                    declareNamespace("", attr.getValue());
+                else if (attrName.startsWith("xmlns:"))
+                    declareNamespace(attrName.substring(6), attr.getValue());
+                else
+                    regularAttrs.add(attr);
+            }
+
+            if (elem.getLocalName() != null)
+                ensureNamespace(elem.getPrefix(), elem.getNamespaceURI(), true);
+
+            for (Attr attr : regularAttrs)
+            {
+                if ((attr.getLocalName() != null) && (attr.getPrefix() != null))
+                    ensureNamespace(attr.getPrefix(), attr.getNamespaceURI(), false);
+            }
+
+            for (Attr attr : regularAttrs)
+            {
+                writeAttribute(attr.getName(), attr.getValue());
+            }
+        }
+
+
+        private void ensureNamespace(String prefix, String uri, boolean isElement)
+        {
+            prefix = (prefix == null) ? "" : prefix;
+            uri = (uri == null) ? "" : uri;
+            if (! uri.equals(lookupNamespace(prefix)) && (isElement || uri.length() > 0))
+                declareNamespace(prefix, uri);
+        }
+
+
+        private String lookupNamespace(String prefix)
+        {
+            for (int ii = namespaces.size() - 2 ; ii >= 0 ; ii -= 2)
+            {
+                if (namespaces.get(ii).equals(prefix))
+                    return namespaces.get(ii + 1);
+            }
+            return null;
+        }
+
+
+        private void declareNamespace(String prefix, String uri)
+        {
+            namespaces.add(prefix);
+            namespaces.add(uri);
+            writeAttribute((prefix.length() == 0) ? "xmlns" : "xmlns:" + prefix, uri);
+        }
+
+
+        private void writeAttribute(String name, String value)
+        {
+            buf.append(' ').append(name).append("=\"");
+            for (int ii = 0 ; ii < value.length() ; ii++)
+            {
+                char c = value.charAt(ii);
+                switch (c)
+                {
+                    case '&' :  buf.append("&amp;");    break;
+                    case '<' :  buf.append("&lt;");     break;
+                    case '>' :  buf.append("&gt;");     break;
+                    case '"' :  buf.append("&quot;");   break;
+                    default :
+                        if ((c < 0x20) || Character.isHighSurrogate(c))
+                            ii = appendCharRef(value, ii);
+                        else
+                            buf.append(c);
+                }
+            }
+            buf.append('"');
+        }
+
+
+        private void escapeText(String value)
+        {
+            for (int ii = 0 ; ii < value.length() ; ii++)
+            {
+                char c = value.charAt(ii);
+                switch (c)
+                {
+                    case '&' :  buf.append("&amp;");        break;
+                    case '<' :  buf.append("&lt;");         break;
+                    case '>' :  buf.append("&gt;");         break;
+                    case '\n' : buf.append(lineSeparator);  break;
+                    case '\t' : buf.append(c);              break;
+                    default :
+                        if ((c < 0x20) || ((c >= 0x7F) && (c <= 0x9F)) || Character.isHighSurrogate(c))
+                            ii = appendCharRef(value, ii);
+                        else
+                            buf.append(c);
+                }
+            }
+        }
+
+
+        /**
+         *  Writes the character (or surrogate pair) at the specified index as a
+         *  numeric reference, returning the index of its last char.
+         */
+        private int appendCharRef(String value, int index)
+        {
+            int codePoint = value.codePointAt(index);
+            buf.append("&#").append(codePoint).append(';');
+            return index + Character.charCount(codePoint) - 1;
+        }
+
+
+        /**
+         *  Starts a new line before a node, if indenting and the node is within
+         *  an element and doesn't follow text.
+         */
+        private void indent()
+        {
+            if (depth > 0)
+                newLine();
+        }
+
+
+        /**
+         *  Starts a new line at the current depth, unless following text. This is
+         *  called directly for end tags, since the root's end tag is on its own line.
+         */
+        private void newLine()
+        {
+            if ((indentUnit == null) || prevText)
+                return;
+
+            buf.append(lineSeparator);
+            for (int ii = 0 ; ii < depth ; ii++)
+            {
+                buf.append(indentUnit);
+            }
+        }
+
+
+        private boolean hasContent(Element elem)
+        {
+            for (Node child = elem.getFirstChild() ; child != null ; child = child.getNextSibling())
+            {
+                if ((child.getNodeType() != Node.TEXT_NODE) || ! isIgnorable(child))
+                    return true;
+            }
+            return false;
+        }
+
+
+        private boolean isIgnorable(Node text)
+        {
+            if (indentUnit == null)
+                return false;
+
+            String value = text.getNodeValue();
+            for (int ii = 0 ; ii < value.length() ; ii++)
+            {
+                if (! Character.isWhitespace(value.charAt(ii)))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
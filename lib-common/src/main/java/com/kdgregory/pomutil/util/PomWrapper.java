@@ -29,8 +29,7 @@ import net.sf.kdgcommons.lang.ObjectUtil;
 import net.sf.kdgcommons.lang.StringUtil;
 import net.sf.practicalxml.DomUtil;
 import net.sf.practicalxml.ParseUtil;
-import net.sf.practicalxml.xpath.XPathWrapperFactory;
-import net.sf.practicalxml.xpath.XPathWrapperFactory.CacheType;
+import net.sf.practicalxml.xpath.XPathWrapper;
 
 
 /**
@@ -40,10 +39,17 @@ public class PomWrapper
 {
     private Document dom;
 
-    private XPathWrapperFactory xpFact = new XPathWrapperFactory(CacheType.SIMPLE)
-                                         .bindNamespace("mvn", "http://maven.apache.org/POM/4.0.0");
     private boolean pomWithoutNamespace;
 
+    private PropertyResolver propertyResolver = new PropertyResolver(false)
+    {
+        @Override
+        protected String lookup(String propName)
+        {
+            return lookupPropertyValue(propName);
+        }
+    };
+
     private String groupId;
     private String artifactId;
     private String version;
@@ -125,8 +131,7 @@ public class PomWrapper
      */
     public String selectValue(Node node, String xpath)
     {
-        xpath = mungePath(xpath);
-        return xpFact.newXPath(xpath).evaluateAsString(node);
+        return compile(xpath).evaluateAsString(node);
     }
 
 
@@ -148,8 +153,7 @@ public class PomWrapper
      */
     public Element selectElement(Node node, String xpath)
     {
-        xpath = mungePath(xpath);
-        return xpFact.newXPath(xpath).evaluateAsElement(node);
+        return compile(xpath).evaluateAsElement(node);
     }
 
 
@@ -174,8 +178,7 @@ public class PomWrapper
         List<Element> result = new ArrayList<Element>();
         for (String path : paths)
         {
-            String mungedPath = mungePath(path);
-            List<Element> fromPath = xpFact.newXPath(mungedPath).evaluate(node, Element.class);
+            List<Element> fromPath = compile(path).evaluate(node, Element.class);
             result.addAll(fromPath);
         }
         return result;
@@ -193,7 +196,6 @@ public class PomWrapper
      */
     public Element selectOrCreateElement(String xpath)
     {
-        xpath = mungePath(xpath);
         Element elem = selectElement(xpath);
         if (elem != null)
             return elem;
@@ -280,37 +282,7 @@ public class PomWrapper
      */
     public String resolveProperties(String src)
     {
-        if (src == null)
-            return "";
-
-        StringBuilder dst = new StringBuilder(256).append(src);
-
-        int propIdx = 0;
-        while ((propIdx = dst.indexOf("${", propIdx)) >= 0)
-        {
-            int endPropIdx = dst.indexOf("}", propIdx);
-            if (endPropIdx < 0)
-                break;  // unterminated propname
-            String propName = dst.substring(propIdx+2, endPropIdx);
-            if (propName.contains("{"))
-                break;  // unterminated propname that causes problems with XPath
-            String propValue = lookupPropertyValue(propName);
-            if (! StringUtil.isBlank(propValue))
-            {
-                dst.delete(propIdx, endPropIdx + 1);
-                if (propIdx < dst.length())
-                    dst.insert(propIdx, propValue);
-                else
-                    dst.append(propValue);
-            }
-            else
-            {
-                // leave the unresolved property in place
-                propIdx = endPropIdx;
-            }
-        }
-
-        return dst.toString();
+        return propertyResolver.resolve(src);
     }
 
 
@@ -383,10 +355,9 @@ public class PomWrapper
 //  Internals
 //----------------------------------------------------------------------------
 
-    private String mungePath(String xpath)
+    private XPathWrapper compile(String xpath)
     {
-        if (pomWithoutNamespace) xpath = xpath.replace("mvn:", "");
-        return xpath;
+        return XPathCache.get(xpath, pomWithoutNamespace);
     }
 
 
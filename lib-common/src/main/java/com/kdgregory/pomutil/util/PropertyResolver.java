@@ -0,0 +1,162 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.kdgcommons.lang.StringUtil;
+
+
+/**
+ *  Performs <code>${...}</code> substitution on strings. Subclasses are responsible
+ *  for looking up the raw value of individual properties; this class handles
+ *  parsing, replacement, and recursive resolution of property values.
+ *  <p>
+ *  If constructed with <code>memoize</code> true, the fully-resolved value of each
+ *  property is retained for the life of the instance; this is only appropriate
+ *  if the underlying values never change. Otherwise, resolved values are only
+ *  retained for the duration of a single call to {@link #resolve}.
+ *  <p>
+ *  Cyclic references (eg, <code>${a}</code> refers to <code>${b}</code>, which
+ *  refers to <code>${a}</code>) are logged and left unresolved. Since the value
+ *  produced for such a property depends on where the cycle was entered, it is
+ *  never memoized.
+ *  <p>
+ *  Instances are thread-safe.
+ */
+abstract class PropertyResolver
+{
+    private static Logger logger = LoggerFactory.getLogger(PropertyResolver.class);
+
+    private boolean memoize;
+    private Map<String,String> resolvedValues = new HashMap<String,String>();
+    private Set<String> inProgress = new LinkedHashSet<String>();
+    private int cycleCount;
+
+
+    protected PropertyResolver(boolean memoize)
+    {
+        this.memoize = memoize;
+    }
+
+
+    /**
+     *  Performs property substitution on the passed string. Properties that can't
+     *  be resolved are left in place. If passed <code>null</code>, returns an empty
+     *  string.
+     */
+    public synchronized String resolve(String src)
+    {
+        if (src == null)
+            return "";
+
+        try
+        {
+            return substitute(src);
+        }
+        finally
+        {
+            if (! memoize)
+                resolvedValues.clear();
+        }
+    }
+
+
+    /**
+     *  Returns the raw value of the named property, which may itself contain property
+     *  references. Returns an empty string or <code>null</code> if the property is not
+     *  defined.
+     */
+    protected abstract String lookup(String propName);
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private String substitute(String src)
+    {
+        if (! src.contains("${"))
+            return src;
+
+        StringBuilder dst = new StringBuilder(src.length() + 64).append(src);
+
+        int propIdx = 0;
+        while ((propIdx = dst.indexOf("${", propIdx)) >= 0)
+        {
+            int endPropIdx = dst.indexOf("}", propIdx);
+            if (endPropIdx < 0)
+                break;  // unterminated propname
+            String propName = dst.substring(propIdx+2, endPropIdx);
+            if (propName.contains("{"))
+                break;  // unterminated propname that causes problems with XPath
+            String propValue = resolveProperty(propName);
+            if (! StringUtil.isBlank(propValue))
+            {
+                // the value is fully resolved, so we can skip past it
+                dst.replace(propIdx, endPropIdx + 1, propValue);
+                propIdx += propValue.length();
+            }
+            else
+            {
+                // leave the unresolved property in place
+                propIdx = endPropIdx;
+            }
+        }
+
+        return dst.toString();
+    }
+
+
+    private String resolveProperty(String propName)
+    {
+        if (resolvedValues.containsKey(propName))
+            return resolvedValues.get(propName);
+
+        if (inProgress.contains(propName))
+        {
+            StringBuilder chain = new StringBuilder(128);
+            for (String name : inProgress)
+            {
+                chain.append(name).append(" -> ");
+            }
+            logger.warn("cyclic property reference: {}{}", chain, propName);
+            cycleCount++;
+            return null;
+        }
+
+        int cyclesBefore = cycleCount;
+        inProgress.add(propName);
+        try
+        {
+            String value = lookup(propName);
+            if (value != null)
+                value = substitute(value);
+            if (cycleCount == cyclesBefore)
+                resolvedValues.put(propName, value);
+            return value;
+        }
+        finally
+        {
+            inProgress.remove(propName);
+        }
+    }
+}
@@ -0,0 +1,480 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+
+import net.sf.kdgcommons.io.IOUtil;
+import net.sf.kdgcommons.lang.ObjectUtil;
+import net.sf.kdgcommons.lang.StringUtil;
+import net.sf.practicalxml.OutputUtil;
+import net.sf.practicalxml.XmlException;
+
+
+/**
+ *  A read-only view of a POM, holding only the information needed to resolve
+ *  dependencies: coordinates, parent, properties, dependencies, and managed
+ *  dependencies. This is built with a single streaming pass over the file,
+ *  and does not retain a DOM; use {@link PomWrapper} if you need to examine
+ *  or modify other parts of the POM.
+ *  <p>
+ *  Elements are identified by local name, so POMs without a namespace are
+ *  handled the same as those with.
+ */
+public class ReadOnlyPom
+{
+    private static XMLInputFactory inputFactory = createInputFactory();
+
+    private File file;
+
+    private String groupId = "";
+    private String artifactId = "";
+    private String version = "";
+    private String packaging = "";
+
+    private Artifact parent;
+    private String parentGroupId = "";
+    private String parentArtifactId = "";
+    private String parentVersion = "";
+
+    private Map<String,String> properties = new TreeMap<String,String>();
+    private Map<String,String> projectValues = new HashMap<String,String>();
+    private List<Artifact> dependencies = new ArrayList<Artifact>();
+    private List<Artifact> managedDependencies = new ArrayList<Artifact>();
+    private List<String> modules = new ArrayList<String>();
+
+    private PropertyResolver propertyResolver = new PropertyResolver(true)
+    {
+        @Override
+        protected String lookup(String propName)
+        {
+            return lookupPropertyValue(propName);
+        }
+    };
+
+
+    /**
+     *  Constructs an instance from a file.
+     *
+     *  @throws XmlException if unable to parse (for any reason other than I/O).
+     */
+    public ReadOnlyPom(File file)
+    throws IOException
+    {
+        this.file = file;
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try
+        {
+            parse(inputFactory.createXMLStreamReader(in));
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new XmlException("unable to parse " + file, ex);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     *  Constructs an instance from an arbitrary stream. The caller is responsible
+     *  for closing the stream.
+     *
+     *  @throws XmlException if unable to parse (for any reason other than I/O).
+     */
+    public ReadOnlyPom(InputStream in)
+    throws IOException
+    {
+        try
+        {
+            parse(inputFactory.createXMLStreamReader(in));
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new XmlException("unable to parse stream", ex);
+        }
+    }
+
+
+    /**
+     *  Constructs an instance from an already-parsed DOM. This is a convenience
+     *  for code that has a {@link PomWrapper}; it serializes the DOM and then
+     *  parses the result, so should not be used in bulk.
+     */
+    public ReadOnlyPom(Document dom)
+    {
+        Reader in = new StringReader(OutputUtil.compactString(dom));
+        try
+        {
+            parse(inputFactory.createXMLStreamReader(in));
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new XmlException("unable to parse DOM", ex);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Public methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the file that this POM was read from, <code>null</code> if it was
+     *  constructed from a stream or DOM.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+
+    /**
+     *  Returns this POM's GAV. The group and version will be taken from the POM's
+     *  <code>parent</code> reference, if not specified in the POM itself.
+     */
+    public Artifact getGAV()
+    {
+        return new Artifact(groupId, artifactId, version, packaging);
+    }
+
+
+    /**
+     *  Returns this POM's parent info, <code>null</code> if the POM does not have
+     *  a parent.
+     */
+    public Artifact getParent()
+    {
+        return parent;
+    }
+
+
+    /**
+     *  Returns all properties defined by this POM. The returned map is unmodifiable.
+     */
+    public Map<String,String> getProperties()
+    {
+        return Collections.unmodifiableMap(properties);
+    }
+
+
+    /**
+     *  Returns the value of the named property, an empty string if it does not
+     *  exist.
+     */
+    public String getProperty(String name)
+    {
+        return ObjectUtil.defaultValue(properties.get(name), "");
+    }
+
+
+    /**
+     *  Returns the dependencies from the POM's <code>&lt;dependencies&gt;</code>
+     *  section, in document order. Values are exactly as specified in the POM;
+     *  properties are not resolved.
+     */
+    public List<Artifact> getDependencies()
+    {
+        return Collections.unmodifiableList(dependencies);
+    }
+
+
+    /**
+     *  Returns the dependencies from the POM's <code>&lt;dependencyManagement&gt;</code>
+     *  section, in document order. Values are exactly as specified in the POM;
+     *  properties are not resolved.
+     */
+    public List<Artifact> getManagedDependencies()
+    {
+        return Collections.unmodifiableList(managedDependencies);
+    }
+
+
+    /**
+     *  Returns the module names from the POM's <code>&lt;modules&gt;</code> section,
+     *  in document order. Modules defined within profiles are not included.
+     */
+    public List<String> getModules()
+    {
+        return Collections.unmodifiableList(modules);
+    }
+
+
+    /**
+     *  Performs property substitution on the passed string. Will first look to
+     *  user-defined properties, then a select set of Maven-defined properties.
+     *  <p>
+     *  If passed <code>null</code>, returns an empty string.
+     */
+    public String resolveProperties(String src)
+    {
+        return propertyResolver.resolve(src);
+    }
+
+
+    /**
+     *  Returns this POM's GAV, formatted "group:artifact:version".
+     */
+    @Override
+    public String toString()
+    {
+        return groupId + ":" + artifactId + ":" + version;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Package-private methods
+//----------------------------------------------------------------------------
+
+    /**
+     *  Returns the <code>project.*</code> values captured during parse, keyed by
+     *  property name. Used by {@link ResolvedPom} to build its property snapshot.
+     */
+    Map<String,String> getProjectValues()
+    {
+        return Collections.unmodifiableMap(projectValues);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static XMLInputFactory createInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+
+    /**
+     *  Walks the document, tracking the path to the current element. Leaf values
+     *  are captured on the end tag; dependency elements accumulate their children
+     *  (and exclusions) in a map and are converted to an <code>Artifact</code>
+     *  when they end.
+     */
+    private void parse(XMLStreamReader reader)
+    throws XMLStreamException
+    {
+        List<String> path = new ArrayList<String>();
+        StringBuilder text = new StringBuilder(64);
+        boolean hadChildren = false;
+
+        Map<String,String> dependencyValues = null;
+        int dependencyDepth = 0;
+        boolean dependencyIsManaged = false;
+        List<GAKey> dependencyExclusions = null;
+        Map<String,String> exclusionValues = new HashMap<String,String>();
+
+        try
+        {
+            while (reader.hasNext())
+            {
+                switch (reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT :
+                        path.add(reader.getLocalName());
+                        text.setLength(0);
+                        hadChildren = false;
+                        if ((dependencyValues == null) && isDependency(path))
+                        {
+                            dependencyValues = new HashMap<String,String>();
+                            dependencyExclusions = new ArrayList<GAKey>();
+                            dependencyDepth = path.size();
+                            dependencyIsManaged = path.size() == 4;
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS :
+                    case XMLStreamConstants.CDATA :
+                        text.append(reader.getText());
+                        break;
+                    case XMLStreamConstants.END_ELEMENT :
+                        int depth = path.size();
+                        String localName = path.get(depth - 1);
+                        if ((dependencyValues != null) && (depth == dependencyDepth))
+                        {
+                            Artifact dependency = createDependency(dependencyValues);
+                            dependency.exclusions.addAll(dependencyExclusions);
+                            if (dependencyIsManaged)
+                                managedDependencies.add(dependency);
+                            else
+                                dependencies.add(dependency);
+                            dependencyValues = null;
+                        }
+                        else if ((dependencyValues != null) && (depth == dependencyDepth + 1))
+                        {
+                            if (! localName.equals("exclusions"))
+                                dependencyValues.put(localName, text.toString().trim());
+                        }
+                        else if ((dependencyValues != null) && (depth == dependencyDepth + 2) && localName.equals("exclusion"))
+                        {
+                            dependencyExclusions.add(new GAKey(ObjectUtil.defaultValue(exclusionValues.get("groupId"), ""),
+                                                               ObjectUtil.defaultValue(exclusionValues.get("artifactId"), "")));
+                            exclusionValues.clear();
+                        }
+                        else if ((dependencyValues != null) && (depth == dependencyDepth + 3))
+                        {
+                            exclusionValues.put(localName, text.toString().trim());
+                        }
+                        else if (! hadChildren)
+                        {
+                            processLeaf(path, text.toString());
+                        }
+                        path.remove(depth - 1);
+                        text.setLength(0);
+                        hadChildren = true;
+                        break;
+                    default :
+                        // nothing else is interesting
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        if (StringUtil.isBlank(groupId))
+            groupId = parentGroupId;
+        if (StringUtil.isBlank(version))
+            version = parentVersion;
+        if (StringUtil.isBlank(packaging))
+            packaging = "jar";
+
+        // inherited coordinates are still available as project properties
+        projectValues.put("project.groupId", groupId);
+        projectValues.put("project.version", version);
+        projectValues.put("project.packaging", packaging);
+    }
+
+
+    private static boolean isDependency(List<String> path)
+    {
+        int depth = path.size();
+        if (! path.get(depth - 1).equals("dependency"))
+            return false;
+
+        if (depth == 3)
+            return path.get(1).equals("dependencies");
+
+        if (depth == 4)
+            return path.get(1).equals("dependencyManagement")
+                && path.get(2).equals("dependencies");
+
+        return false;
+    }
+
+
+    private void processLeaf(List<String> path, String value)
+    {
+        int depth = path.size();
+        String localName = path.get(depth - 1);
+
+        if (depth == 2)
+        {
+            projectValues.put("project." + localName, value);
+            String trimmed = value.trim();
+            if (localName.equals("groupId"))
+                groupId = trimmed;
+            else if (localName.equals("artifactId"))
+                artifactId = trimmed;
+            else if (localName.equals("version"))
+                version = trimmed;
+            else if (localName.equals("packaging"))
+                packaging = trimmed;
+        }
+        else if ((depth == 3) && path.get(1).equals("properties"))
+        {
+            properties.put(localName, value);
+        }
+        else if ((depth == 3) && path.get(1).equals("parent"))
+        {
+            projectValues.put("project.parent." + localName, value);
+            String trimmed = value.trim();
+            if (localName.equals("groupId"))
+                parentGroupId = trimmed;
+            else if (localName.equals("artifactId"))
+                parentArtifactId = trimmed;
+            else if (localName.equals("version"))
+                parentVersion = trimmed;
+
+            // the parent element may not have all children, so we replace it each time
+            parent = new Artifact(parentGroupId, parentArtifactId, parentVersion, "pom");
+        }
+        else if ((depth == 3) && path.get(1).equals("modules"))
+        {
+            if (localName.equals("module"))
+                modules.add(value.trim());
+        }
+        else if (depth == 3)
+        {
+            projectValues.put("project." + path.get(1) + "." + localName, value);
+        }
+    }
+
+
+    private static Artifact createDependency(Map<String,String> values)
+    {
+        return new Artifact(
+                ObjectUtil.defaultValue(values.get("groupId"), ""),
+                ObjectUtil.defaultValue(values.get("artifactId"), ""),
+                ObjectUtil.defaultValue(values.get("version"), ""),
+                ObjectUtil.defaultValue(values.get("classifier"), ""),
+                ObjectUtil.defaultValue(values.get("type"), "jar"),
+                values.get("scope"),
+                "true".equalsIgnoreCase(values.get("optional")));
+    }
+
+
+    private String lookupPropertyValue(String propName)
+    {
+        // try user-defined properties first
+        String propValue = getProperty(propName);
+        if (! StringUtil.isBlank(propValue))
+            return propValue;
+
+        // then project properties that we captured during parse
+        if (propName.startsWith("project."))
+            return ObjectUtil.defaultValue(projectValues.get(propName), "");
+
+        // and fall back to system property
+        return ObjectUtil.defaultValue(System.getProperty(propName), "");
+    }
+}
@@ -15,20 +15,20 @@
 package com.kdgregory.pomutil.util;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.w3c.dom.Element;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sf.kdgcommons.lang.StringUtil;
-import net.sf.practicalxml.ParseUtil;
 
 
 /**
@@ -41,9 +41,22 @@ public class ResolvedPom
     private static Logger logger = LoggerFactory.getLogger(ResolvedPom.class);
 
     private LocalRepository repo;
-    private ArrayList<PomWrapper> poms = new ArrayList<PomWrapper>();
+    private ArrayList<ReadOnlyPom> poms = new ArrayList<ReadOnlyPom>();
+    private ArrayList<PomWrapper> wrappers = new ArrayList<PomWrapper>();
     private Map<GAKey,Artifact> directDependencies = new TreeMap<GAKey,Artifact>();
     private List<ResolvedPom> importedPoms = new ArrayList<ResolvedPom>();
+    private Map<GAKey,String> managedVersions = new HashMap<GAKey,String>();
+
+    // snapshot of properties from the entire chain, child values overriding parent
+    private Map<String,String> properties = new HashMap<String,String>();
+    private PropertyResolver propertyResolver = new PropertyResolver(true)
+    {
+        @Override
+        protected String lookup(String propName)
+        {
+            return lookupPropertyValue(propName);
+        }
+    };
 
 
     /**
@@ -69,7 +82,7 @@ public class ResolvedPom
     public ResolvedPom(File pom, LocalRepository repo)
     throws IOException
     {
-        this(new PomWrapper(ParseUtil.parse(pom)), repo);
+        this(new ReadOnlyPom(pom), repo);
     }
 
 
@@ -78,12 +91,26 @@ public class ResolvedPom
      */
     public ResolvedPom(PomWrapper pom, LocalRepository repo)
     throws IOException
+    {
+        this(new ReadOnlyPom(pom.getDom()), repo);
+        wrappers.set(0, pom);
+    }
+
+
+    /**
+     *  Creates an instance from an already-read POM, resolving its ancestors
+     *  and imports in the specified repository.
+     */
+    public ResolvedPom(ReadOnlyPom pom, LocalRepository repo)
+    throws IOException
     {
         this.repo = repo;
         buildPomHierarchy(pom);
-        for (PomWrapper wrapper : poms)
+        buildPropertySnapshot();
+        buildManagedVersions();
+        for (ReadOnlyPom parsed : poms)
         {
-            extractDependencies(wrapper);
+            extractDependencies(parsed);
         }
     }
 
@@ -97,7 +124,7 @@ public class ResolvedPom
      */
     public Artifact getGAV()
     {
-        return getPom(0).getGAV();
+        return getReadOnlyPom(0).getGAV();
     }
 
 
@@ -106,8 +133,41 @@ public class ResolvedPom
      *  1 is the project's parent, and so on. This method exists primarily for
      *  testing; there is no method to find out how many POMs exist (although
      *  you could call <code>PomWrapper.getParent()</code>).
+     *  <p>
+     *  Resolution doesn't need a DOM, so the wrapper is parsed from the POM's
+     *  file on first call.
+     *
+     *  @throws IllegalStateException if the POM was not read from a file, or
+     *          that file can no longer be read.
      */
-    public PomWrapper getPom(int index)
+    public synchronized PomWrapper getPom(int index)
+    {
+        PomWrapper wrapper = wrappers.get(index);
+        if (wrapper == null)
+        {
+            File file = poms.get(index).getFile();
+            if (file == null)
+                throw new IllegalStateException("POM " + index + " was not read from a file");
+
+            try
+            {
+                wrapper = new PomWrapper(file);
+            }
+            catch (FileNotFoundException ex)
+            {
+                throw new IllegalStateException("unable to read " + file, ex);
+            }
+            wrappers.set(index, wrapper);
+        }
+        return wrapper;
+    }
+
+
+    /**
+     *  Returns the Nth POM in the parent hierarchy, as used for resolution. Unlike
+     *  {@link #getPom}, this does not parse the POM again.
+     */
+    public ReadOnlyPom getReadOnlyPom(int index)
     {
         return poms.get(index);
     }
@@ -134,15 +194,29 @@ public class ResolvedPom
 
 
     /**
-     *  Resolves properties against all POMs in the chain.
+     *  Returns the versions specified by the <code>&lt;dependencyManagement&gt;</code>
+     *  sections of all POMs in the chain, along with those of any BOMs that they
+     *  import. Versions have had their properties resolved. Where an artifact is
+     *  managed by multiple POMs, the lowest level wins; explicitly managed versions
+     *  win over imported versions.
+     */
+    public Map<GAKey,String> getManagedVersions()
+    {
+        return Collections.unmodifiableMap(managedVersions);
+    }
+
+
+    /**
+     *  Resolves properties against all POMs in the chain. Where a property is defined
+     *  at multiple levels, the lowest level wins; <code>project.*</code> properties
+     *  refer to the project POM, falling back to its ancestors. Properties that are
+     *  not defined by any POM are resolved against system properties.
+     *  <p>
+     *  Resolved values are cached for the life of this object.
      */
     public String resolveProperties(String value)
     {
-        for (PomWrapper pom : poms)
-        {
-            value = pom.resolveProperties(value);
-        }
-        return value;
+        return propertyResolver.resolve(value);
     }
 
 
@@ -150,13 +224,14 @@ public class ResolvedPom
 //  Internals (primarily called by constructor)
 //----------------------------------------------------------------------------
 
-    private void buildPomHierarchy(PomWrapper pom)
+    private void buildPomHierarchy(ReadOnlyPom pom)
     throws IOException
     {
         while (pom != null)
         {
             logger.debug("adding {} to POM hierarchy", pom);
             poms.add(pom);
+            wrappers.add(null);
             Artifact parentRef = pom.getParent();
             pom = (parentRef == null) ? null : resolvePom(parentRef);
         }
@@ -164,28 +239,109 @@ public class ResolvedPom
 
 
     /**
-     *  Attempts to load a POM from the repository, returning null (and warning)
-     *  if it doesn't exist.
+     *  Merges the properties of all POMs in the chain into a single map, so that
+     *  lookups don't have to walk the chain. Project values are merged child-first,
+     *  so that (for example) <code>project.version</code> refers to the project.
      */
-    private PomWrapper resolvePom(Artifact pomRef)
+    private void buildPropertySnapshot()
+    {
+        for (int ii = poms.size() - 1 ; ii >= 0 ; ii--)
+        {
+            properties.putAll(poms.get(ii).getProperties());
+        }
+
+        for (ReadOnlyPom pom : poms)
+        {
+            for (Map.Entry<String,String> entry : pom.getProjectValues().entrySet())
+            {
+                if (! properties.containsKey(entry.getKey()))
+                    properties.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+
+    private String lookupPropertyValue(String propName)
+    {
+        String propValue = properties.get(propName);
+        if (! StringUtil.isBlank(propValue))
+            return propValue;
+
+        return System.getProperty(propName);
+    }
+
+
+    /**
+     *  Attempts to load a POM from the repository (via the shared cache),
+     *  returning null (and warning) if it doesn't exist.
+     */
+    private ReadOnlyPom resolvePom(Artifact pomRef)
     throws IOException
     {
-        File pomFile = repo.resolve(pomRef);
-        if (pomFile == null)
+        ReadOnlyPom pom = PomCache.getPom(repo, pomRef);
+        if (pom == null)
         {
             logger.warn("unresolvable POM: {}", pomRef);
-            return null;
         }
-        return new PomWrapper(ParseUtil.parse(pomFile));
+        return pom;
+    }
+
+
+    /**
+     *  Indexes the managed dependencies of the entire chain, so that we can look
+     *  them up by key rather than repeatedly walking the chain. Imports are held
+     *  until all explicit entries are added, since the latter take precedence.
+     */
+    private void buildManagedVersions()
+    throws IOException
+    {
+        List<Artifact> imports = new ArrayList<Artifact>();
+        for (ReadOnlyPom pom : poms)
+        {
+            for (Artifact managed : pom.getManagedDependencies())
+            {
+                if ((managed.scope == Artifact.Scope.IMPORT) && managed.packaging.equals("pom"))
+                {
+                    imports.add(managed);
+                    continue;
+                }
+
+                GAKey key = managed.toGAKey();
+                if (managedVersions.containsKey(key) || StringUtil.isEmpty(managed.version))
+                    continue;
+
+                String version = managed.version;
+                if (version.contains("${"))
+                    version = resolveProperties(version);
+
+                managedVersions.put(key, version);
+            }
+        }
+
+        for (Artifact bomRef : imports)
+        {
+            String version = resolveProperties(bomRef.version);
+            ResolvedPom bom = PomCache.getResolvedPom(repo, new GAV(bomRef.groupId, bomRef.artifactId, version));
+            if (bom == null)
+            {
+                logger.warn("unresolvable BOM: {}:{}:{}", bomRef.groupId, bomRef.artifactId, version);
+                continue;
+            }
+
+            for (Map.Entry<GAKey,String> entry : bom.managedVersions.entrySet())
+            {
+                if (! managedVersions.containsKey(entry.getKey()))
+                    managedVersions.put(entry.getKey(), entry.getValue());
+            }
+        }
     }
 
 
-    private void extractDependencies(PomWrapper wrapper)
+    private void extractDependencies(ReadOnlyPom pom)
     throws IOException
     {
-        for (Element dependency : wrapper.selectElements(PomPaths.PROJECT_DEPENDENCIES))
+        for (Artifact artifact : pom.getDependencies())
         {
-            Artifact artifact = new Artifact(dependency);
             GAKey key = artifact.toGAKey();
             if (directDependencies.containsKey(key))
                 continue;
@@ -195,7 +351,7 @@ public class ResolvedPom
             String version = artifact.version;
 
             if (StringUtil.isBlank(version))
-                version = getVersionFromDependencyManagement(groupId, artifactId);
+                version = getVersionFromDependencyManagement(key);
 
             if (version.contains("${"))
                 version = resolveProperties(version);
@@ -223,32 +379,25 @@ public class ResolvedPom
     }
 
 
-    private String getVersionFromDependencyManagement(String groupId, String artifactId)
+    private String getVersionFromDependencyManagement(GAKey key)
     {
         // FIXME - deal with version ranges
         //          (maybe; I'm not sure if a valid POM can only use a range)
 
-        String path = PomPaths.MANAGED_DEPENDENCIES
-                    + "/mvn:groupId[normalize-space(text())='" + groupId + "']"
-                    + "/../mvn:artifactId[normalize-space(text())='" + artifactId + "']"
-                    + "/../mvn:version";
-
-        for (PomWrapper wrapper : poms)
-        {
-            String value = wrapper.selectValue(path);
-            if (!StringUtil.isEmpty(value))
-                return value;
-        }
-
-        return "";
+        String version = managedVersions.get(key);
+        return (version != null) ? version : "";
     }
 
 
     private void resolveImportedPom(String groupId, String artifactId, String version)
     throws IOException
     {
-        File importedPom = repo.resolve(new Artifact(groupId, artifactId, version, "pom"));
-        ResolvedPom resolved = new ResolvedPom(importedPom, repo);
+        ResolvedPom resolved = PomCache.getResolvedPom(repo, new GAV(groupId, artifactId, version));
+        if (resolved == null)
+        {
+            logger.warn("unresolvable imported POM: {}:{}:{}", groupId, artifactId, version);
+            return;
+        }
         importedPoms.add(resolved);
     }
 }
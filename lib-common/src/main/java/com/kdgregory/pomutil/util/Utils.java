@@ -24,7 +24,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.ZipException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
 
 import net.sf.practicalxml.DomUtil;
@@ -35,6 +38,9 @@ import net.sf.practicalxml.DomUtil;
  */
 public class Utils
 {
+    private static Logger logger = LoggerFactory.getLogger(Utils.class);
+
+
     /**
      *  Builds a list of files from the provided list of files and/or directories.
      *  The provided files are added to this list without change; directories are
@@ -86,41 +92,20 @@ public class Utils
 
     /**
      *  Given a JAR, finds all entries that represent classes and converts them to classnames.
+     *  This reads the JAR's central directory directly; if that fails, it falls back to
+     *  <code>JarFile</code>, which is more tolerant of malformed archives.
      */
     public static List<String> extractClassesFromJar(File jarFile)
     throws IOException
     {
-        List<String> result = new ArrayList<String>();
-        JarFile jar = null;
         try
         {
-            jar = new JarFile(jarFile);
-            for (Enumeration<JarEntry> entryItx = jar.entries() ; entryItx.hasMoreElements() ; )
-            {
-                JarEntry entry = entryItx.nextElement();
-                String filename = entry.getName();
-                if (! filename.endsWith(".class"))
-                    continue;
-                filename = filename.substring(0, filename.length() - 6);
-                filename = filename.replace('/', '.');
-                filename = filename.replace('$', '.');
-                result.add(filename);
-            }
-            return result;
+            return ZipCentralDirectory.extractClassNames(jarFile);
         }
-        finally
+        catch (ZipException ex)
         {
-            if (jar != null)
-            {
-                try
-                {
-                    jar.close();
-                }
-                catch (IOException ignored)
-                {
-                    // ignored
-                }
-            }
+            logger.debug("unable to read central directory, falling back to JarFile: {}", ex.getMessage());
+            return extractClassesViaJarFile(jarFile);
         }
     }
 
@@ -183,4 +168,46 @@ public class Utils
 
         return elem;
     }
-}
\ No newline at end of file
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static List<String> extractClassesViaJarFile(File jarFile)
+    throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        JarFile jar = null;
+        try
+        {
+            jar = new JarFile(jarFile);
+            for (Enumeration<JarEntry> entryItx = jar.entries() ; entryItx.hasMoreElements() ; )
+            {
+                JarEntry entry = entryItx.nextElement();
+                String filename = entry.getName();
+                if (! filename.endsWith(".class"))
+                    continue;
+                filename = filename.substring(0, filename.length() - 6);
+                filename = filename.replace('/', '.');
+                filename = filename.replace('$', '.');
+                result.add(filename);
+            }
+            return result;
+        }
+        finally
+        {
+            if (jar != null)
+            {
+                try
+                {
+                    jar.close();
+                }
+                catch (IOException ignored)
+                {
+                    // ignored
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.practicalxml.xpath.XPathWrapper;
+
+
+/**
+ *  A process-wide cache of compiled XPath expressions, shared by all instances
+ *  of {@link PomWrapper}. Expressions are keyed by their original (prefixed) path
+ *  and whether the target POM uses the Maven namespace; for POMs without a
+ *  namespace, the "mvn:" prefixes are stripped before compilation.
+ *  <p>
+ *  Compiled JAXP expressions are not thread-safe, so each thread maintains its
+ *  own set of compiled expressions; the hit/miss counters are global.
+ */
+public class XPathCache
+{
+    private final static String MAVEN_NAMESPACE = "http://maven.apache.org/POM/4.0.0";
+
+    private static ThreadLocal<Map<String,XPathWrapper>> namespacedCache = new CacheInitializer();
+    private static ThreadLocal<Map<String,XPathWrapper>> unnamespacedCache = new CacheInitializer();
+
+    private static AtomicLong hitCount = new AtomicLong();
+    private static AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     *  Returns a compiled expression for the passed path, creating it if necessary.
+     *  Path components must be prefixed with "mvn" to use the Maven namespace.
+     *
+     *  @param  path                    The XPath expression, as used with a namespaced POM.
+     *  @param  pomWithoutNamespace     If true, the expression will be applied to a POM that
+     *                                  does not use the Maven namespace.
+     */
+    public static XPathWrapper get(String path, boolean pomWithoutNamespace)
+    {
+        Map<String,XPathWrapper> cache = pomWithoutNamespace
+                                       ? unnamespacedCache.get()
+                                       : namespacedCache.get();
+
+        XPathWrapper xpath = cache.get(path);
+        if (xpath != null)
+        {
+            hitCount.incrementAndGet();
+            return xpath;
+        }
+
+        missCount.incrementAndGet();
+        xpath = pomWithoutNamespace
+              ? new XPathWrapper(path.replace("mvn:", ""))
+              : new XPathWrapper(path).bindNamespace("mvn", MAVEN_NAMESPACE);
+        cache.put(path, xpath);
+        return xpath;
+    }
+
+
+    /**
+     *  Returns the number of times that a requested expression was found in
+     *  the cache.
+     */
+    public static long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+
+    /**
+     *  Returns the number of times that a requested expression had to be
+     *  compiled.
+     */
+    public static long getMissCount()
+    {
+        return missCount.get();
+    }
+
+
+    /**
+     *  Returns the proportion of requests that were satisfied from the cache,
+     *  as a value between 0 and 1. Returns 0 if there haven't been any requests.
+     */
+    public static double getHitRate()
+    {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return (total == 0) ? 0.0 : (double)hits / total;
+    }
+
+
+    /**
+     *  Resets the hit and miss counters. Does not clear cached expressions.
+     */
+    public static void resetStatistics()
+    {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    private static class CacheInitializer
+    extends ThreadLocal<Map<String,XPathWrapper>>
+    {
+        @Override
+        protected Map<String,XPathWrapper> initialValue()
+        {
+            return new HashMap<String,XPathWrapper>();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+
+/**
+ *  Extracts class names from a JAR by reading its central directory directly,
+ *  rather than via <code>JarFile</code>. This avoids manifest processing and
+ *  per-entry object creation: the directory is memory-mapped, entry names are
+ *  examined in place, and only those ending in ".class" are decoded.
+ *  <p>
+ *  Supports Zip64 archives. Throws <code>ZipException</code> if the file does
+ *  not appear to be a valid archive; callers may fall back to <code>JarFile</code>.
+ */
+final class ZipCentralDirectory
+{
+    private final static int EOCD_SIG           = 0x06054b50;
+    private final static int EOCD_SIZE          = 22;
+    private final static int MAX_COMMENT_SIZE   = 0xFFFF;
+    private final static int ZIP64_LOCATOR_SIG  = 0x07064b50;
+    private final static int ZIP64_LOCATOR_SIZE = 20;
+    private final static int ZIP64_EOCD_SIG     = 0x06064b50;
+    private final static int CEN_SIG            = 0x02014b50;
+    private final static int CEN_HEADER_SIZE    = 46;
+
+    private final static byte[] CLASS_SUFFIX = { '.', 'c', 'l', 'a', 's', 's' };
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+
+    private ZipCentralDirectory()
+    {
+        // this class is never instantiated
+    }
+
+
+    /**
+     *  Returns the names of all class entries in the specified file, converted
+     *  to classnames in the same manner as {@link Utils#extractClassesFromJar}.
+     */
+    public static List<String> extractClassNames(File file)
+    throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            long[] directory = locateDirectory(channel, file);
+            if (directory[1] > Integer.MAX_VALUE)
+                throw new ZipException("central directory too large: " + file);
+
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, directory[0], directory[1]);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            return processDirectory(buf, file);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Internals
+//----------------------------------------------------------------------------
+
+    /**
+     *  Finds the end-of-central-directory record and returns the offset and size
+     *  of the central directory.
+     */
+    private static long[] locateDirectory(FileChannel channel, File file)
+    throws IOException
+    {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE)
+            throw new ZipException("file too small to be an archive: " + file);
+
+        long tailOffset = Math.max(0, fileSize - EOCD_SIZE - MAX_COMMENT_SIZE - ZIP64_LOCATOR_SIZE);
+        MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, tailOffset, fileSize - tailOffset);
+        tail.order(ByteOrder.LITTLE_ENDIAN);
+
+        // the EOCD may be followed by a comment, so scan backwards for its signature
+        int eocd = -1;
+        for (int pos = tail.limit() - EOCD_SIZE ; pos >= 0 ; pos--)
+        {
+            if ((tail.getInt(pos) == EOCD_SIG)
+                && (pos + EOCD_SIZE + (tail.getShort(pos + 20) & 0xFFFF) == tail.limit()))
+            {
+                eocd = pos;
+                break;
+            }
+        }
+        if (eocd < 0)
+            throw new ZipException("unable to find end of central directory: " + file);
+
+        long size = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long offset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+        if ((offset == 0xFFFFFFFFL) || (size == 0xFFFFFFFFL))
+        {
+            int locator = eocd - ZIP64_LOCATOR_SIZE;
+            if ((locator < 0) || (tail.getInt(locator) != ZIP64_LOCATOR_SIG))
+                throw new ZipException("missing Zip64 locator: " + file);
+
+            long zip64Offset = tail.getLong(locator + 8);
+            MappedByteBuffer zip64 = channel.map(FileChannel.MapMode.READ_ONLY, zip64Offset, 56);
+            zip64.order(ByteOrder.LITTLE_ENDIAN);
+            if (zip64.getInt(0) != ZIP64_EOCD_SIG)
+                throw new ZipException("invalid Zip64 end of central directory: " + file);
+
+            size = zip64.getLong(40);
+            offset = zip64.getLong(48);
+        }
+
+        if ((offset < 0) || (size < 0) || (offset + size > fileSize))
+            throw new ZipException("invalid central directory location: " + file);
+
+        return new long[] { offset, size };
+    }
+
+
+    private static List<String> processDirectory(MappedByteBuffer buf, File file)
+    throws IOException
+    {
+        List<String> result = new ArrayList<String>();
+        char[] chars = new char[256];
+
+        int pos = 0;
+        int limit = buf.limit();
+        while (pos + CEN_HEADER_SIZE <= limit)
+        {
+            if (buf.getInt(pos) != CEN_SIG)
+                throw new ZipException("invalid central directory entry at offset " + pos + ": " + file);
+
+            int nameLen = buf.getShort(pos + 28) & 0xFFFF;
+            int extraLen = buf.getShort(pos + 30) & 0xFFFF;
+            int commentLen = buf.getShort(pos + 32) & 0xFFFF;
+            int nameStart = pos + CEN_HEADER_SIZE;
+            if (nameStart + nameLen > limit)
+                throw new ZipException("truncated central directory entry at offset " + pos + ": " + file);
+
+            if (isClassEntry(buf, nameStart, nameLen))
+            {
+                if (chars.length < nameLen)
+                    chars = new char[nameLen * 2];
+                result.add(decodeClassName(buf, nameStart, nameLen - CLASS_SUFFIX.length, chars));
+            }
+
+            pos = nameStart + nameLen + extraLen + commentLen;
+        }
+
+        return result;
+    }
+
+
+    private static boolean isClassEntry(MappedByteBuffer buf, int nameStart, int nameLen)
+    {
+        if (nameLen <= CLASS_SUFFIX.length)
+            return false;
+
+        int suffixStart = nameStart + nameLen - CLASS_SUFFIX.length;
+        for (int ii = 0 ; ii < CLASS_SUFFIX.length ; ii++)
+        {
+            if (buf.get(suffixStart + ii) != CLASS_SUFFIX[ii])
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     *  Converts the name to a classname. The common case of an ASCII name is
+     *  handled without intermediate objects; anything else is decoded as UTF-8.
+     */
+    private static String decodeClassName(MappedByteBuffer buf, int start, int len, char[] chars)
+    {
+        for (int ii = 0 ; ii < len ; ii++)
+        {
+            byte b = buf.get(start + ii);
+            if (b < 0)
+                return decodeNonAscii(buf, start, len);
+            chars[ii] = ((b == '/') || (b == '$')) ? '.' : (char)b;
+        }
+        return new String(chars, 0, len);
+    }
+
+
+    private static String decodeNonAscii(MappedByteBuffer buf, int start, int len)
+    {
+        byte[] bytes = new byte[len];
+        for (int ii = 0 ; ii < len ; ii++)
+        {
+            bytes[ii] = buf.get(start + ii);
+        }
+        return new String(bytes, UTF8).replace('/', '.').replace('$', '.');
+    }
+}
@@ -0,0 +1,190 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+
+public class TestAtomicFileWriter
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private File createFile(String name, String content)
+    throws Exception
+    {
+        File file = new File(tempDir.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        return file;
+    }
+
+
+    private static String read(File file)
+    throws Exception
+    {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+
+    private static byte[] bytes(String value)
+    throws Exception
+    {
+        return value.getBytes("UTF-8");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testWriteIfChanged() throws Exception
+    {
+        AtomicFileWriter writer = new AtomicFileWriter();
+        File file = new File(tempDir.getRoot(), "test.txt");
+
+        assertTrue("new file written", writer.write(file, bytes("foo")));
+        assertEquals("new file content", "foo", read(file));
+
+        file.setLastModified(10000);
+
+        assertFalse("same content not written", writer.write(file, bytes("foo")));
+        assertEquals("modification time unchanged", 10000, file.lastModified());
+
+        assertTrue("same length, different content", writer.write(file, bytes("bar")));
+        assertEquals("updated content", "bar", read(file));
+
+        assertTrue("different length", writer.write(file, bytes("barbar")));
+        assertEquals("updated content", "barbar", read(file));
+
+        assertEquals("no temporary files left", 1, tempDir.getRoot().list().length);
+    }
+
+
+    @Test
+    public void testSyncedWrite() throws Exception
+    {
+        AtomicFileWriter writer = new AtomicFileWriter(true, false);
+        File file = createFile("test.txt", "foo");
+
+        assertTrue("written", writer.write(file, bytes("bar")));
+        assertEquals("updated content", "bar", read(file));
+        assertEquals("no temporary files left", 1, tempDir.getRoot().list().length);
+    }
+
+
+    @Test
+    public void testFailedWriteLeavesOriginal() throws Exception
+    {
+        AtomicFileWriter writer = new AtomicFileWriter();
+        File file = createFile("test.txt", "foo");
+        File dir = tempDir.newFolder("notAFile");
+
+        try
+        {
+            // the temporary file can be written, but not renamed over a non-empty directory
+            createFile("notAFile/child", "");
+            writer.write(dir, bytes("bar"));
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            // success
+        }
+
+        assertEquals("original unchanged", "foo", read(file));
+        assertEquals("no temporary files left", 2, tempDir.getRoot().list().length);
+    }
+
+
+    @Test
+    public void testAllOrNothingCommit() throws Exception
+    {
+        AtomicFileWriter writer = new AtomicFileWriter(false, true);
+        File file1 = createFile("test1.txt", "foo");
+        File file2 = new File(tempDir.getRoot(), "test2.txt");
+
+        assertTrue("file 1 staged", writer.write(file1, bytes("bar")));
+        assertTrue("file 2 staged", writer.write(file2, bytes("baz")));
+
+        assertEquals("file 1 before commit", "foo", read(file1));
+        assertFalse("file 2 before commit", file2.exists());
+
+        writer.commit();
+
+        assertEquals("file 1 after commit", "bar", read(file1));
+        assertEquals("file 2 after commit", "baz", read(file2));
+        assertEquals("no temporary files left", 2, tempDir.getRoot().list().length);
+    }
+
+
+    @Test
+    public void testAllOrNothingRollback() throws Exception
+    {
+        AtomicFileWriter writer = new AtomicFileWriter(false, true);
+        File file = createFile("test.txt", "foo");
+
+        assertTrue("staged", writer.write(file, bytes("bar")));
+        writer.rollback();
+        writer.commit();
+
+        assertEquals("content after rollback", "foo", read(file));
+        assertEquals("no temporary files left", 1, tempDir.getRoot().list().length);
+    }
+
+
+    @Test
+    public void testFailedCommitRestoresOriginals() throws Exception
+    {
+        AtomicFileWriter writer = new AtomicFileWriter(false, true);
+        File file1 = createFile("test1.txt", "foo");
+        File file2 = new File(tempDir.getRoot(), "test2.txt");
+        File dir = tempDir.newFolder("notAFile");
+
+        writer.write(file1, bytes("bar"));
+        writer.write(file2, bytes("baz"));
+        writer.write(dir, bytes("biff"));
+
+        // the staged write can't be renamed over a non-empty directory
+        createFile("notAFile/child", "");
+
+        try
+        {
+            writer.commit();
+            fail("should have thrown");
+        }
+        catch (IOException ex)
+        {
+            // success
+        }
+
+        assertEquals("file 1 restored", "foo", read(file1));
+        assertFalse("file 2 removed", file2.exists());
+        assertTrue("directory unchanged", dir.isDirectory());
+        assertEquals("no temporary files left", 2, tempDir.getRoot().list().length);
+    }
+}
@@ -0,0 +1,170 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+
+public class TestClassIndex
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Creates a JAR with empty entries for the specified filenames.
+     */
+    private File createJar(String name, String... entryNames)
+    throws Exception
+    {
+        File jarFile = new File(tempDir.getRoot(), name);
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile));
+        try
+        {
+            for (String entryName : entryNames)
+            {
+                out.putNextEntry(new ZipEntry(entryName));
+                out.write(new byte[] { 1, 2, 3 });
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return jarFile;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        File jarFile = createJar("test.jar", "com/example/Foo.class", "com/example/Foo$Bar.class", "README.txt");
+        File indexDir = new File(tempDir.getRoot(), "index");
+
+        ClassIndex index1 = new ClassIndex(indexDir);
+        List<String> classes1 = index1.getClasses(jarFile);
+
+        assertEquals("classes from JAR", Arrays.asList("com.example.Foo", "com.example.Foo.Bar"), classes1);
+        assertEquals("first instance hits",   0, index1.getHitCount());
+        assertEquals("first instance misses", 1, index1.getMissCount());
+        assertEquals("index entries written", 1, indexDir.listFiles().length);
+
+        // a new instance simulates a new run
+        ClassIndex index2 = new ClassIndex(indexDir);
+        List<String> classes2 = index2.getClasses(jarFile);
+
+        assertEquals("classes from index", classes1, classes2);
+        assertEquals("second instance hits",   1, index2.getHitCount());
+        assertEquals("second instance misses", 0, index2.getMissCount());
+    }
+
+
+    @Test
+    public void testChangedJarIsReindexed() throws Exception
+    {
+        File jarFile = createJar("test.jar", "com/example/Foo.class");
+        File indexDir = new File(tempDir.getRoot(), "index");
+
+        ClassIndex index = new ClassIndex(indexDir);
+        index.getClasses(jarFile);
+
+        createJar("test.jar", "com/example/Foo.class", "com/example/Baz.class");
+        jarFile.setLastModified(jarFile.lastModified() + 10000);
+
+        assertEquals("classes after change", Arrays.asList("com.example.Foo", "com.example.Baz"), index.getClasses(jarFile));
+        assertEquals("hits",   0, index.getHitCount());
+        assertEquals("misses", 2, index.getMissCount());
+        assertEquals("entry replaced", 1, indexDir.listFiles().length);
+    }
+
+
+    @Test
+    public void testSameNameDifferentLocation() throws Exception
+    {
+        File jar1 = createJar("test.jar", "com/example/Foo.class");
+        new File(tempDir.getRoot(), "sub").mkdirs();
+        File jar2 = createJar("sub/test.jar", "com/example/Bar.class");
+        File indexDir = new File(tempDir.getRoot(), "index");
+
+        ClassIndex index = new ClassIndex(indexDir);
+        index.getClasses(jar1);
+        index.getClasses(jar2);
+
+        assertEquals("first JAR",  Arrays.asList("com.example.Foo"), index.getClasses(jar1));
+        assertEquals("second JAR", Arrays.asList("com.example.Bar"), index.getClasses(jar2));
+        assertEquals("hits", 2, index.getHitCount());
+    }
+
+
+    @Test
+    public void testCorruptEntryIsIgnored() throws Exception
+    {
+        File jarFile = createJar("test.jar", "com/example/Foo.class");
+        File indexDir = new File(tempDir.getRoot(), "index");
+
+        new ClassIndex(indexDir).getClasses(jarFile);
+
+        File entryFile = indexDir.listFiles()[0];
+        FileOutputStream out = new FileOutputStream(entryFile);
+        out.write("garbage".getBytes("UTF-8"));
+        out.close();
+
+        ClassIndex index = new ClassIndex(indexDir);
+        assertEquals("classes", Arrays.asList("com.example.Foo"), index.getClasses(jarFile));
+        assertEquals("misses", 1, index.getMissCount());
+    }
+
+
+    @Test
+    public void testEntriesRetainedInMemory() throws Exception
+    {
+        File jarFile = createJar("test.jar", "com/example/Foo.class");
+        File indexDir = new File(tempDir.getRoot(), "index");
+
+        ClassIndex index = new ClassIndex(indexDir);
+        List<String> classes1 = index.getClasses(jarFile);
+
+        // if the in-memory entry is used, the on-disk entry won't be read
+        for (File file : indexDir.listFiles())
+        {
+            file.delete();
+        }
+
+        List<String> classes2 = index.getClasses(jarFile);
+        assertSame("second call returned same list", classes1, classes2);
+        assertEquals("hits",   1, index.getHitCount());
+        assertEquals("misses", 1, index.getMissCount());
+        assertEquals("no entry rewritten", 0, indexDir.listFiles().length);
+    }
+}
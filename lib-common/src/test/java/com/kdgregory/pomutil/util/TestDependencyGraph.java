@@ -0,0 +1,200 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import com.kdgregory.pomutil.util.Artifact.Scope;
+
+
+public class TestDependencyGraph
+{
+    private final static String GROUP = "com.example.graph";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private LocalRepository repo;
+
+
+    @Before
+    public void setUp() throws Exception
+    {
+        DependencyGraph.clear();
+        PomCache.clear();
+
+        // the project depends on "a" (compile) and "t" (test)
+
+        writePom("a", "1",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>b</artifactId><version>1</version></dependency>",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>c</artifactId><version>1</version><scope>runtime</scope></dependency>",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>d</artifactId><version>1</version><scope>test</scope></dependency>",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>e</artifactId><version>1</version><optional>true</optional></dependency>",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>x</artifactId><version>1</version>"
+                     + "<exclusions><exclusion><groupId>" + GROUP + "</groupId><artifactId>y</artifactId></exclusion></exclusions>"
+                     + "</dependency>");
+        writePom("b", "1",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>c</artifactId><version>2</version></dependency>",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>f</artifactId><version>1</version></dependency>");
+        writePom("x", "1",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>y</artifactId><version>1</version></dependency>",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>z</artifactId><version>1</version></dependency>");
+        writePom("z", "1",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>a</artifactId><version>1</version></dependency>");
+        writePom("t", "1",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>g</artifactId><version>1</version></dependency>");
+
+        repo = new LocalRepository(tempDir.getRoot());
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        DependencyGraph.clear();
+        PomCache.clear();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private void writePom(String artifactId, String version, String... dependencies)
+    throws Exception
+    {
+        File dir = new File(tempDir.getRoot(), GROUP.replace('.', '/') + "/" + artifactId + "/" + version);
+        dir.mkdirs();
+
+        StringBuilder sb = new StringBuilder()
+            .append("<project xmlns='http://maven.apache.org/POM/4.0.0'>")
+            .append("<modelVersion>4.0.0</modelVersion>")
+            .append("<groupId>").append(GROUP).append("</groupId>")
+            .append("<artifactId>").append(artifactId).append("</artifactId>")
+            .append("<version>").append(version).append("</version>")
+            .append("<dependencies>");
+        for (String dependency : dependencies)
+        {
+            sb.append(dependency);
+        }
+        sb.append("</dependencies>")
+          .append("</project>");
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(dir, artifactId + "-" + version + ".pom")), "UTF-8");
+        try
+        {
+            out.write(sb.toString());
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    private DependencyGraph resolve()
+    throws Exception
+    {
+        Artifact a = new Artifact(GROUP, "a", "1");
+        Artifact t = new Artifact(GROUP, "t", "1");
+        t.scope = Scope.TEST;
+
+        Map<GAKey,String> managedVersions = new HashMap<GAKey,String>();
+        managedVersions.put(new GAKey(GROUP, "f"), "9");
+
+        return new DependencyGraph(repo, Arrays.asList(a, t), managedVersions);
+    }
+
+
+    private static List<String> toStrings(List<Artifact> artifacts)
+    {
+        List<String> result = new ArrayList<String>();
+        for (Artifact artifact : artifacts)
+        {
+            result.add(artifact.artifactId + ":" + artifact.version + ":" + artifact.scope.name().toLowerCase());
+        }
+        return result;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testResolution() throws Exception
+    {
+        DependencyGraph graph = resolve();
+
+        // c:1 is nearer than c:2 and keeps its declared runtime scope; f is managed; g inherits test
+        // scope; d (test), e (optional), and y (excluded) are omitted; z's dependency on a is a cycle
+
+        assertEquals("transitive dependencies, in resolution order",
+                     Arrays.asList("b:1:compile", "c:1:runtime", "x:1:compile", "g:1:test", "f:9:compile", "z:1:compile"),
+                     toStrings(graph.getTransitiveDependencies()));
+
+        assertEquals("path to managed dependency",
+                     Arrays.asList("a:1:compile", "b:1:compile", "f:9:compile"),
+                     toStrings(graph.getPath(new GAKey(GROUP, "f"))));
+
+        assertEquals("artifact lookup", "1", graph.getArtifact(new GAKey(GROUP, "c")).version);
+        assertNull("excluded artifact", graph.getArtifact(new GAKey(GROUP, "y")));
+        assertEquals("path to missing artifact", 0, graph.getPath(new GAKey(GROUP, "y")).size());
+    }
+
+
+    @Test
+    public void testNodesAreShared() throws Exception
+    {
+        resolve();
+        long loadCount = DependencyGraph.getNodeLoadCount();
+        assertTrue("loaded nodes", loadCount > 0);
+
+        resolve();
+        assertEquals("no additional nodes loaded", loadCount, DependencyGraph.getNodeLoadCount());
+    }
+
+
+    @Test
+    public void testChangedPomIsReloaded() throws Exception
+    {
+        resolve();
+        long loadCount = DependencyGraph.getNodeLoadCount();
+
+        // b drops its dependency on f (which also changes the file's size)
+        writePom("b", "1",
+                 "<dependency><groupId>" + GROUP + "</groupId><artifactId>c</artifactId><version>2</version></dependency>");
+
+        DependencyGraph graph = resolve();
+
+        assertNull("dependency removed", graph.getArtifact(new GAKey(GROUP, "f")));
+        assertEquals("only changed node reloaded", loadCount + 1, DependencyGraph.getNodeLoadCount());
+    }
+}
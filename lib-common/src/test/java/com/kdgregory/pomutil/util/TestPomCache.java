@@ -0,0 +1,195 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+
+public class TestPomCache
+{
+    // these are installed by the build, before lib-common is tested
+    private final static GAV PARENT_GAV = new GAV("com.kdgregory.pomutil", "test-dependency-parent", "0.0.0-SNAPSHOT");
+    private final static GAV OTHER_GAV  = new GAV("com.kdgregory.pomutil", "test-dependency", "0.0-SNAPSHOT");
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+
+    @After
+    public void tearDown()
+    {
+        PomCache.setMaxSize(PomCache.DEFAULT_MAX_SIZE);
+        PomCache.clear();
+    }
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Writes a minimal POM into a repository under the temporary directory, with
+     *  an optional parent and a property; backdates its timestamp so that a later
+     *  rewrite is guaranteed to change it.
+     */
+    private File writePom(String artifactId, String parentArtifactId, String propertyValue, long timestamp)
+    throws Exception
+    {
+        File dir = new File(tempDir.getRoot(), "com/example/" + artifactId + "/1");
+        dir.mkdirs();
+        File file = new File(dir, artifactId + "-1.pom");
+
+        StringBuilder sb = new StringBuilder()
+            .append("<project xmlns='http://maven.apache.org/POM/4.0.0'>")
+            .append("<modelVersion>4.0.0</modelVersion>");
+        if (parentArtifactId != null)
+            sb.append("<parent><groupId>com.example</groupId><artifactId>").append(parentArtifactId)
+              .append("</artifactId><version>1</version></parent>");
+        sb.append("<groupId>com.example</groupId>")
+          .append("<artifactId>").append(artifactId).append("</artifactId>")
+          .append("<version>1</version>")
+          .append("<properties><example>").append(propertyValue).append("</example></properties>")
+          .append("</project>");
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            out.write(sb.toString());
+        }
+        finally
+        {
+            out.close();
+        }
+        file.setLastModified(timestamp);
+        return file;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testGetPom() throws Exception
+    {
+        PomCache.clear();
+        LocalRepository repo = new LocalRepository();
+
+        ReadOnlyPom pom1 = PomCache.getPom(repo, PARENT_GAV);
+        ReadOnlyPom pom2 = PomCache.getPom(repo, PARENT_GAV);
+
+        assertNotNull("loaded POM", pom1);
+        assertEquals("loaded correct POM", PARENT_GAV.toString(), pom1.toString());
+        assertSame("second retrieve was from cache", pom1, pom2);
+        assertEquals("hit count",  1, PomCache.getHitCount());
+        assertEquals("miss count", 1, PomCache.getMissCount());
+    }
+
+
+    @Test
+    public void testMissingPom() throws Exception
+    {
+        PomCache.clear();
+        LocalRepository repo = new LocalRepository();
+
+        assertNull("parsed", PomCache.getPom(repo, new GAV("com.example", "doesnt-exist", "1.0")));
+        assertNull("resolved", PomCache.getResolvedPom(repo, new GAV("com.example", "doesnt-exist", "1.0")));
+    }
+
+
+    @Test
+    public void testParentParsedOnce() throws Exception
+    {
+        PomCache.clear();
+        File pomFile = new File("../test-dependency-child/pom.xml");
+
+        ResolvedPom pom1 = new ResolvedPom(pomFile);
+        ResolvedPom pom2 = new ResolvedPom(pomFile);
+
+        assertSame("parent shared between resolved POMs", pom1.getReadOnlyPom(1), pom2.getReadOnlyPom(1));
+        assertEquals("miss count", 1, PomCache.getMissCount());
+    }
+
+
+    @Test
+    public void testLruEviction() throws Exception
+    {
+        PomCache.clear();
+        PomCache.setMaxSize(1);
+        LocalRepository repo = new LocalRepository();
+
+        ReadOnlyPom pom1 = PomCache.getPom(repo, PARENT_GAV);
+        PomCache.getPom(repo, OTHER_GAV);
+        ReadOnlyPom pom2 = PomCache.getPom(repo, PARENT_GAV);
+
+        assertNotSame("first POM was evicted", pom1, pom2);
+        assertEquals("miss count", 3, PomCache.getMissCount());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidMaxSize() throws Exception
+    {
+        PomCache.setMaxSize(0);
+    }
+
+
+    @Test
+    public void testChangedPomIsReloaded() throws Exception
+    {
+        PomCache.clear();
+        LocalRepository repo = new LocalRepository(tempDir.getRoot());
+        GAV gav = new GAV("com.example", "example", "1");
+        writePom("example", null, "foo", 1000000L);
+
+        ReadOnlyPom pom1 = PomCache.getPom(repo, gav);
+        assertSame("unchanged POM retrieved from cache", pom1, PomCache.getPom(repo, gav));
+
+        writePom("example", null, "bar", 2000000L);
+        ReadOnlyPom pom2 = PomCache.getPom(repo, gav);
+
+        assertNotSame("changed POM was reloaded", pom1, pom2);
+        assertEquals("reloaded content", "bar", pom2.getProperty("example"));
+    }
+
+
+    @Test
+    public void testResolvedPomReloadedWhenParentChanges() throws Exception
+    {
+        PomCache.clear();
+        LocalRepository repo = new LocalRepository(tempDir.getRoot());
+        GAV gav = new GAV("com.example", "child", "1");
+        writePom("parent", null, "foo", 1000000L);
+        writePom("child", "parent", "baz", 1000000L);
+
+        ResolvedPom pom1 = PomCache.getResolvedPom(repo, gav);
+        assertSame("unchanged POM retrieved from cache", pom1, PomCache.getResolvedPom(repo, gav));
+
+        writePom("parent", null, "bar", 2000000L);
+        ResolvedPom pom2 = PomCache.getResolvedPom(repo, gav);
+
+        assertNotSame("POM with changed parent was reloaded", pom1, pom2);
+        assertEquals("reloaded parent", "bar", pom2.getReadOnlyPom(1).getProperty("example"));
+    }
+}
@@ -0,0 +1,187 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.w3c.dom.Element;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.practicalxml.DomUtil;
+import net.sf.practicalxml.ParseUtil;
+
+
+public class TestPomPatcher
+{
+    private final static String POM
+        = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+        + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\r\n"
+        + "    <!-- the project -->\r\n"
+        + "    <groupId>com.example</groupId>\r\n"
+        + "    <artifactId>example</artifactId>\r\n"
+        + "    <version >1.0.0</version>\r\n"
+        + "\r\n"
+        + "    <properties>\r\n"
+        + "        <foo.version>\t1.2.3</foo.version>\r\n"
+        + "        <empty/>\r\n"
+        + "    </properties>\r\n"
+        + "</project>\r\n";
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static Element select(PomPatcher patcher, String path)
+    {
+        return new PomWrapper(patcher.getDom()).selectElement(path);
+    }
+
+
+    private static String apply(PomPatcher patcher)
+    throws Exception
+    {
+        byte[] result = patcher.apply();
+        return (result == null) ? null : new String(result, "UTF-8");
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testDomMatchesParser() throws Exception
+    {
+        for (String name : new String[] { "Importer.xml", "OptionalDependency.xml", "PomWrapper1.xml", "PomWrapper7.xml" })
+        {
+            byte[] content = Files.readAllBytes(new File(getClass().getClassLoader().getResource(name).toURI()).toPath());
+
+            PomPatcher patcher = new PomPatcher(content);
+            assertEquals(name,
+                         PomSerializer.compact().toString(ParseUtil.parse(new ByteArrayInputStream(content))),
+                         PomSerializer.compact().toString(patcher.getDom()));
+        }
+    }
+
+
+    @Test
+    public void testNoChanges() throws Exception
+    {
+        byte[] content = POM.getBytes("UTF-8");
+        PomPatcher patcher = new PomPatcher(content);
+
+        assertSame("unchanged content", content, patcher.apply());
+    }
+
+
+    @Test
+    public void testTextChanges() throws Exception
+    {
+        PomPatcher patcher = new PomPatcher(POM.getBytes("UTF-8"));
+
+        DomUtil.setText(select(patcher, PomPaths.PROJECT_VERSION), "1.1.0");
+        new PomWrapper(patcher.getDom()).setProperty("foo.version", "2.0 & up");
+
+        String expected = POM.replace("<version >1.0.0</version>", "<version >1.1.0</version>")
+                             .replace("<foo.version>\t1.2.3</foo.version>", "<foo.version>2.0 &amp; up</foo.version>");
+        assertEquals(expected, apply(patcher));
+    }
+
+
+    @Test
+    public void testStructuralChanges() throws Exception
+    {
+        PomPatcher patcher1 = new PomPatcher(POM.getBytes("UTF-8"));
+        new PomWrapper(patcher1.getDom()).setProperty("bar.version", "1.0");
+        assertNull("added element", apply(patcher1));
+
+        PomPatcher patcher2 = new PomPatcher(POM.getBytes("UTF-8"));
+        Element version = select(patcher2, PomPaths.PROJECT_VERSION);
+        version.getParentNode().removeChild(version);
+        assertNull("removed element", apply(patcher2));
+
+        PomPatcher patcher3 = new PomPatcher(POM.getBytes("UTF-8"));
+        Element artifactId = select(patcher3, "/mvn:project/mvn:artifactId");
+        artifactId.getParentNode().insertBefore(artifactId, select(patcher3, "/mvn:project/mvn:groupId"));
+        assertNull("reordered element", apply(patcher3));
+
+        PomPatcher patcher4 = new PomPatcher(POM.getBytes("UTF-8"));
+        DomUtil.setText(select(patcher4, "/mvn:project/mvn:properties/mvn:empty"), "value");
+        assertNull("changed empty tag", apply(patcher4));
+    }
+
+
+    @Test
+    public void testEncoding() throws Exception
+    {
+        String pom = "<?xml version='1.0' encoding='ISO-8859-1'?>\n"
+                   + "<project><name>caf\u00e9</name><version>1.0</version></project>";
+        PomPatcher patcher = new PomPatcher(pom.getBytes("ISO-8859-1"));
+
+        DomUtil.setText(select(patcher, "/project/version"), "1.1");
+
+        assertEquals(pom.replace("1.0</version>", "1.1</version>"), new String(patcher.apply(), "ISO-8859-1"));
+    }
+
+
+    @Test
+    public void testByteOrderMark() throws Exception
+    {
+        PomPatcher patcher = new PomPatcher(("\uFEFF" + POM).getBytes("UTF-8"));
+
+        DomUtil.setText(select(patcher, PomPaths.PROJECT_VERSION), "1.1.0");
+
+        assertEquals("\uFEFF" + POM.replace("1.0.0", "1.1.0"), apply(patcher));
+    }
+
+
+    @Test
+    public void testLoneCarriageReturn() throws Exception
+    {
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\r<version>1.0</version>\r</project>";
+        try
+        {
+            new PomPatcher(pom.getBytes("UTF-8"));
+            fail("accepted content with CR line separators");
+        }
+        catch (IOException ex)
+        {
+            // success
+        }
+    }
+
+
+    @Test
+    public void testUnverifiableContent() throws Exception
+    {
+        // the parser's location is fine, but the content isn't the element's value
+        String pom = "<!DOCTYPE project [ <!ENTITY v '1.0'> ]>\n"
+                   + "<project><version>&v;</version><name>a&lt;b<![CDATA[&c]]>&#x41;</name></project>";
+
+        PomPatcher patcher1 = new PomPatcher(pom.getBytes("UTF-8"));
+        DomUtil.setText(select(patcher1, "/project/version"), "1.1");
+        assertNull("entity reference", apply(patcher1));
+
+        PomPatcher patcher2 = new PomPatcher(pom.getBytes("UTF-8"));
+        DomUtil.setText(select(patcher2, "/project/name"), "x");
+        assertEquals("escapes and CDATA", pom.replace("a&lt;b<![CDATA[&c]]>&#x41;", "x"), apply(patcher2));
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.StringWriter;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.practicalxml.DomUtil;
+import net.sf.practicalxml.OutputUtil;
+import net.sf.practicalxml.ParseUtil;
+
+
+/**
+ *  The serializer is intended to be a drop-in replacement for practicalxml's
+ *  <code>OutputUtil</code>, so these tests compare the two. The exception is
+ *  indented mixed content: the JDK's transformer indents it from JDK 9 on
+ *  (changing the text), so those tests assert the intended output.
+ */
+public class TestPomSerializer
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static String transformCompact(Document dom)
+    {
+        StringWriter out = new StringWriter();
+        OutputUtil.compact(new DOMSource(dom), new StreamResult(out));
+        return out.toString();
+    }
+
+
+    private static String transformIndented(Document dom, int indent)
+    {
+        // the cleaner removed whitespace before pretty-printing; the serializer ignores it
+        Document copy = (Document)dom.cloneNode(true);
+        DomUtil.removeEmptyTextRecursive(copy.getDocumentElement());
+
+        StringWriter out = new StringWriter();
+        OutputUtil.indented(new DOMSource(copy), new StreamResult(out), indent);
+        return out.toString();
+    }
+
+
+    private static void assertSameOutput(String message, Document dom)
+    throws Exception
+    {
+        assertEquals(message + " (compact)",    transformCompact(dom),      PomSerializer.compact().toString(dom));
+        assertEquals(message + " (indent 4)",   transformIndented(dom, 4),  PomSerializer.indented(4).toString(dom));
+        assertEquals(message + " (indent 2)",   transformIndented(dom, 2),  PomSerializer.indented(2).toString(dom));
+
+        assertArrayEquals(message + " (bytes)", transformCompact(dom).getBytes("UTF-8"), PomSerializer.compact().toBytes(dom));
+    }
+
+
+    private static void assertSameOutput(String xml)
+    throws Exception
+    {
+        assertSameOutput(xml, ParseUtil.parse(xml));
+    }
+
+
+    private static void assertMixedOutput(String xml, String expectedIndented)
+    throws Exception
+    {
+        Document dom = ParseUtil.parse(xml);
+        assertEquals(xml + " (compact)",    transformCompact(dom),  PomSerializer.compact().toString(dom));
+        assertEquals(xml + " (indent 4)",   expectedIndented,       PomSerializer.indented(4).toString(dom));
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testPoms() throws Exception
+    {
+        for (String name : new String[] { "Importer.xml", "OptionalDependency.xml",
+                                          "PomWrapper1.xml", "PomWrapper2.xml", "PomWrapper3.xml", "PomWrapper4.xml",
+                                          "PomWrapper5.xml", "PomWrapper6.xml", "PomWrapper7.xml" })
+        {
+            assertSameOutput(name, ParseUtil.parseFromClasspath(name));
+        }
+    }
+
+
+    @Test
+    public void testStructure() throws Exception
+    {
+        assertSameOutput("<a/>");
+        assertSameOutput("<a>x</a>");
+        assertSameOutput("<a><b/><c></c><d>  </d></a>");
+        assertSameOutput("<a>\n  <b>\n    <c>x</c>\n  </b>\n</a>");
+        assertSameOutput("<!--top--><?pi x?><a/><!--after-->");
+    }
+
+
+    @Test
+    public void testMixedContent() throws Exception
+    {
+        assertMixedOutput("<a>text<b/>more<c>x</c></a>",
+                          "<a>text<b/>more<c>x</c>\n</a>\n");
+        assertMixedOutput("<a>text<b/><c/></a>",
+                          "<a>text<b/>\n    <c/>\n</a>\n");
+        assertMixedOutput("<a><b/>text<c/><d><e/></d></a>",
+                          "<a>\n    <b/>text<c/>\n    <d>\n        <e/>\n    </d>\n</a>\n");
+        assertMixedOutput("<a><b>x</b>tail</a>",
+                          "<a>\n    <b>x</b>tail</a>\n");
+    }
+
+
+    @Test
+    public void testCommentsAndProcessingInstructions() throws Exception
+    {
+        assertSameOutput("<a><!--c1--><b>x</b><!--c2--></a>");
+        assertSameOutput("<a><?pi?><b><?pi data?></b></a>");
+        assertMixedOutput("<a><b><!--c--></b><c>x<!--c--></c><d><!--c-->x</d></a>",
+                          "<a>\n    <b>\n        <!--c-->\n    </b>\n    <c>x<!--c--></c>\n    <d>\n        <!--c-->x</d>\n</a>\n");
+        assertMixedOutput("<a><b>x</b><!--c-->y<d/></a>",
+                          "<a>\n    <b>x</b>\n    <!--c-->y<d/>\n</a>\n");
+    }
+
+
+    @Test
+    public void testEscaping() throws Exception
+    {
+        assertSameOutput("<a x='&lt;&amp;&gt;&quot;&apos;&#9;&#10;&#13;&#x85;&#x1F600;&#xe9;'>"
+                         + "t&lt;&amp;&gt;\"'&#9;&#10;&#13;&#x7f;&#x85;&#x9f;&#xa0;&#x2028;&#xe9;&#x1F600;"
+                         + "</a>");
+
+        Document dom = DomUtil.newDocument("a").getOwnerDocument();
+        dom.getDocumentElement().appendChild(dom.createCDATASection("x<y]]>z"));
+        dom.getDocumentElement().appendChild(dom.createTextNode("a\u0001b"));
+        assertSameOutput("CDATA and control characters", dom);
+    }
+
+
+    @Test
+    public void testNamespaces() throws Exception
+    {
+        assertSameOutput("<p:a xmlns:p='urn:p'><p:b/><q:c xmlns:q='urn:q'/><d xmlns='urn:d'><e/></d></p:a>");
+        assertSameOutput("<a b='1' a='2' xmlns='urn:x' xmlns:p='urn:p' p:z='3'/>");
+        assertSameOutput("<a xmlns='urn:x'><b xmlns=''/></a>");
+
+        // elements created programmatically don't have declarations
+        Element root = DomUtil.newDocument("urn:x", "root");
+        Element child = DomUtil.appendChild(root, "urn:x", "child");
+        DomUtil.appendChild(child, "urn:y", "other");
+        DomUtil.appendChild(child, "urn:y", "p:other");
+        DomUtil.appendChild(child, null, "plain");
+        child.setAttributeNS("urn:z", "z:attr", "v");
+        DomUtil.setText(DomUtil.appendChild(child, "urn:x", "t"), "val");
+        assertSameOutput("programmatic DOM", root.getOwnerDocument());
+    }
+}
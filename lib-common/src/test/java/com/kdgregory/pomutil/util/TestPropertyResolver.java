@@ -0,0 +1,130 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class TestPropertyResolver
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    /**
+     *  Looks up properties in a map, counting the number of lookups.
+     */
+    private static class MapResolver
+    extends PropertyResolver
+    {
+        public Map<String,String> values = new HashMap<String,String>();
+        public int lookupCount;
+
+        public MapResolver(boolean memoize, String... keysAndValues)
+        {
+            super(memoize);
+            for (int ii = 0 ; ii < keysAndValues.length ; ii += 2)
+            {
+                values.put(keysAndValues[ii], keysAndValues[ii+1]);
+            }
+        }
+
+        @Override
+        protected String lookup(String propName)
+        {
+            lookupCount++;
+            return values.get(propName);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        MapResolver resolver = new MapResolver(false, "foo", "bar", "argle", "${foo}", "bargle", "${argle}-${foo}");
+
+        assertEquals("null source",                 "",                 resolver.resolve(null));
+        assertEquals("no properties",               "foo",              resolver.resolve("foo"));
+        assertEquals("simple substitution",         "bar",              resolver.resolve("${foo}"));
+        assertEquals("embedded substitution",       "xbarx",            resolver.resolve("x${foo}x"));
+        assertEquals("recursive substitution",      "bar-bar",          resolver.resolve("${bargle}"));
+        assertEquals("missing property",            "${baz}-bar",       resolver.resolve("${baz}-${foo}"));
+        assertEquals("unterminated propname",       "bar${foo",         resolver.resolve("${foo}${foo"));
+        assertEquals("nested propname",             "${foo${foo}",      resolver.resolve("${foo${foo}"));
+    }
+
+
+    @Test
+    public void testMemoization() throws Exception
+    {
+        MapResolver resolver = new MapResolver(true, "foo", "bar", "argle", "${foo}");
+
+        assertEquals("first call",                  "bar",              resolver.resolve("${argle}"));
+        assertEquals("lookups after first call",    2,                  resolver.lookupCount);
+
+        resolver.values.put("foo", "changed");
+        assertEquals("second call",                 "bar-bar",          resolver.resolve("${argle}-${foo}"));
+        assertEquals("lookups after second call",   2,                  resolver.lookupCount);
+    }
+
+
+    @Test
+    public void testNoMemoization() throws Exception
+    {
+        MapResolver resolver = new MapResolver(false, "foo", "bar");
+
+        assertEquals("repeated reference",          "bar-bar",          resolver.resolve("${foo}-${foo}"));
+        assertEquals("lookups within one call",     1,                  resolver.lookupCount);
+
+        resolver.values.put("foo", "changed");
+        assertEquals("second call",                 "changed",          resolver.resolve("${foo}"));
+    }
+
+
+    @Test
+    public void testCycleDetection() throws Exception
+    {
+        MapResolver resolver = new MapResolver(true, "a", "${b}", "b", "${a}", "c", "${c}", "d", "x${a}");
+
+        // the exact value isn't important, as long as we return and leave a reference in place
+        assertTrue("two-step cycle",                resolver.resolve("${a}").contains("${"));
+        assertTrue("self reference",                resolver.resolve("${c}").contains("${"));
+        assertTrue("cycle via other property",      resolver.resolve("${d}").startsWith("x"));
+    }
+
+
+    @Test
+    public void testResolutionAfterCycle() throws Exception
+    {
+        MapResolver resolver = new MapResolver(true, "a", "${b}", "b", "x${a}", "c", "y");
+
+        // resolving b detects the cycle at a, so neither a nor b may be retained
+        assertEquals("cycle from b",                "x${b}",            resolver.resolve("${b}"));
+        assertEquals("cycle from a",                "x${a}",            resolver.resolve("${a}"));
+
+        int lookupCount = resolver.lookupCount;
+        assertEquals("unrelated property",          "y-y",              resolver.resolve("${c}-${c}"));
+        assertEquals("unrelated property again",    "y",                resolver.resolve("${c}"));
+        assertEquals("unrelated property memoized", lookupCount + 1,    resolver.lookupCount);
+    }
+}
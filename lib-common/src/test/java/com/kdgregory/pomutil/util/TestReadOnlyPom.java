@@ -0,0 +1,198 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.kdgcommons.io.IOUtil;
+import net.sf.practicalxml.ParseUtil;
+
+import com.kdgregory.pomutil.util.Artifact.Scope;
+
+
+public class TestReadOnlyPom
+{
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private static ReadOnlyPom loadFromClasspath(String resourceName)
+    throws Exception
+    {
+        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourceName);
+        try
+        {
+            return new ReadOnlyPom(in);
+        }
+        finally
+        {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testGetGAV() throws Exception
+    {
+        Artifact gav1 = loadFromClasspath("PomWrapper1.xml").getGAV();
+        assertEquals("groupId, pom 1",    "com.example.pom", gav1.groupId);
+        assertEquals("artifactId, pom 1", "wrapper1",        gav1.artifactId);
+        assertEquals("version, pom 1",    "0.0.0-SNAPSHOT",  gav1.version);
+        assertEquals("packaging, pom 1",  "jar",             gav1.packaging);
+
+        // this one inherits group/version from parent entry
+        Artifact gav2 = loadFromClasspath("PomWrapper4.xml").getGAV();
+        assertEquals("groupId, pom 2",    "com.example.pom", gav2.groupId);
+        assertEquals("artifactId, pom 2", "wrapper4",        gav2.artifactId);
+        assertEquals("version, pom 2",    "0.0.0-SNAPSHOT",  gav2.version);
+        assertEquals("packaging, pom 2",  "jar",             gav2.packaging);
+    }
+
+
+    @Test
+    public void testGetParent() throws Exception
+    {
+        assertNull("pom 1 has no parent", loadFromClasspath("PomWrapper1.xml").getParent());
+
+        Artifact parent = loadFromClasspath("PomWrapper4.xml").getParent();
+        assertEquals("parent groupId",    "com.example.pom", parent.groupId);
+        assertEquals("parent artifactId", "wrapper1",        parent.artifactId);
+        assertEquals("parent version",    "0.0.0-SNAPSHOT",  parent.version);
+        assertEquals("parent packaging",  "pom",             parent.packaging);
+    }
+
+
+    @Test
+    public void testProperties() throws Exception
+    {
+        ReadOnlyPom pom = loadFromClasspath("PomWrapper1.xml");
+
+        Map<String,String> properties = pom.getProperties();
+        assertEquals("property count",      2, properties.size());
+        assertEquals("known property",      "UTF-8", properties.get("project.build.sourceEncoding"));
+
+        assertEquals("getProperty()",       "UTF-8", pom.getProperty("project.build.sourceEncoding"));
+        assertEquals("getProperty(), missing", "", pom.getProperty("foo"));
+    }
+
+
+    @Test
+    public void testResolveProperties() throws Exception
+    {
+        ReadOnlyPom pom = loadFromClasspath("PomWrapper3.xml");
+
+        assertEquals("null source",                 "",                 pom.resolveProperties(null));
+        assertEquals("simple substitution",         "bar",              pom.resolveProperties("${foo}"));
+        assertEquals("recursive substitution",      "bar",              pom.resolveProperties("${bargle}"));
+        assertEquals("missing property",            "${bar}",           pom.resolveProperties("${bar}"));
+        assertEquals("project property",            "wrapper3",         pom.resolveProperties("${project.artifactId}"));
+        assertEquals("system property",             System.getProperty("user.dir"), pom.resolveProperties("${user.dir}"));
+    }
+
+
+    @Test
+    public void testDependencies() throws Exception
+    {
+        ReadOnlyPom pom = loadFromClasspath("OptionalDependency.xml");
+
+        List<Artifact> dependencies = pom.getDependencies();
+        assertEquals("number of dependencies", 3, dependencies.size());
+
+        Artifact d0 = dependencies.get(0);
+        assertEquals("dependency 0", new Artifact("net.sf.practicalxml", "practicalxml", "1.1.13"), d0);
+        assertEquals("dependency 0 scope", Scope.COMPILE, d0.scope);
+        assertFalse("dependency 0 optional", d0.optional);
+
+        Artifact d1 = dependencies.get(1);
+        assertEquals("dependency 1", new Artifact("net.sf.kdgcommons", "kdgcommons", "1.0.10"), d1);
+        assertEquals("dependency 1 scope", Scope.RUNTIME, d1.scope);
+        assertTrue("dependency 1 optional", d1.optional);
+
+        List<Artifact> managed = pom.getManagedDependencies();
+        assertEquals("number of managed dependencies", 1, managed.size());
+        assertEquals("managed dependency", new Artifact("net.sf.kdgcommons", "kdgcommons", "1.0.6"), managed.get(0));
+    }
+
+
+    @Test
+    public void testExclusions() throws Exception
+    {
+        ReadOnlyPom pom = loadFromClasspath("ExcludedDependency.xml");
+
+        List<Artifact> dependencies = pom.getDependencies();
+        assertEquals("number of dependencies", 1, dependencies.size());
+
+        Artifact d0 = dependencies.get(0);
+        assertEquals("exclusions",          2, d0.exclusions.size());
+        assertTrue("explicit exclusion",    d0.isExcluded(new GAKey("net.sf.kdgcommons", "kdgcommons")));
+        assertTrue("wildcard exclusion",    d0.isExcluded(new GAKey("org.example", "foo")));
+        assertFalse("not excluded",         d0.isExcluded(new GAKey("net.sf.kdgcommons", "foo")));
+    }
+
+
+    @Test
+    public void testDependencyType() throws Exception
+    {
+        ReadOnlyPom pom = loadFromClasspath("Importer.xml");
+
+        List<Artifact> dependencies = pom.getDependencies();
+        assertEquals("number of dependencies", 2, dependencies.size());
+        assertEquals("explicit type", "pom", dependencies.get(0).packaging);
+        assertEquals("default type",  "jar", dependencies.get(1).packaging);
+    }
+
+
+    @Test
+    public void testModules() throws Exception
+    {
+        assertEquals("no modules", 0, loadFromClasspath("PomWrapper1.xml").getModules().size());
+
+        List<String> modules = new ReadOnlyPom(new File("../pom.xml")).getModules();
+        assertTrue("module list contains lib-common", modules.contains("lib-common"));
+        assertTrue("module list contains app-dependency", modules.contains("app-dependency"));
+    }
+
+
+    @Test
+    public void testPomWithoutNamespace() throws Exception
+    {
+        ReadOnlyPom pom = loadFromClasspath("PomWrapper6.xml");
+
+        assertEquals("GAV", "com.example.pom:wrapper6:0.0.0-SNAPSHOT", pom.toString());
+        assertEquals("property", "UTF-8", pom.getProperty("project.build.sourceEncoding"));
+        assertEquals("dependencies", 1, pom.getDependencies().size());
+        assertEquals("managed dependencies", 1, pom.getManagedDependencies().size());
+    }
+
+
+    @Test
+    public void testConstructFromDom() throws Exception
+    {
+        ReadOnlyPom pom = new ReadOnlyPom(ParseUtil.parseFromClasspath("PomWrapper1.xml"));
+
+        assertEquals("GAV", "com.example.pom:wrapper1:0.0.0-SNAPSHOT", pom.toString());
+        assertEquals("dependencies", 1, pom.getDependencies().size());
+    }
+}
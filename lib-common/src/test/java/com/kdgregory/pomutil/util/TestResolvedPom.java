@@ -75,6 +75,19 @@ public class TestResolvedPom
     }
 
 
+    @Test
+    public void testManagedVersions() throws Exception
+    {
+        ResolvedPom pom = new ResolvedPom(new File("../test-dependency-child/pom.xml"));
+
+        assertEquals("managed by parent, property resolved",
+                     "2.3",
+                     pom.getManagedVersions().get(new GAKey("commons-lang", "commons-lang")));
+        assertNull("not managed",
+                   pom.getManagedVersions().get(new GAKey("junit", "junit")));
+    }
+
+
     @Test
     public void testImportedPom() throws Exception
     {
@@ -0,0 +1,81 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.practicalxml.ParseUtil;
+import net.sf.practicalxml.xpath.XPathWrapper;
+
+
+public class TestXPathCache
+{
+    @Test
+    public void testCaching() throws Exception
+    {
+        String path = "/mvn:project/mvn:testCaching";
+
+        XPathWrapper x1 = XPathCache.get(path, false);
+        XPathWrapper x2 = XPathCache.get(path, false);
+        XPathWrapper x3 = XPathCache.get(path, true);
+
+        assertSame("same path, same namespace mode",             x1, x2);
+        assertNotSame("same path, different namespace mode",     x1, x3);
+    }
+
+
+    @Test
+    public void testStatistics() throws Exception
+    {
+        String path = "/mvn:project/mvn:testStatistics";
+
+        XPathCache.resetStatistics();
+        assertEquals("hit rate, no requests", 0.0, XPathCache.getHitRate(), 0.0);
+
+        XPathCache.get(path, false);
+        XPathCache.get(path, false);
+        XPathCache.get(path, false);
+        XPathCache.get(path, false);
+
+        assertEquals("hit count",   3, XPathCache.getHitCount());
+        assertEquals("miss count",  1, XPathCache.getMissCount());
+        assertEquals("hit rate",    0.75, XPathCache.getHitRate(), 0.0001);
+    }
+
+
+    @Test
+    public void testSharedBetweenWrappers() throws Exception
+    {
+        PomWrapper wrapper1 = new PomWrapper(ParseUtil.parseFromClasspath("PomWrapper1.xml"));
+        PomWrapper wrapper2 = new PomWrapper(ParseUtil.parseFromClasspath("PomWrapper3.xml"));
+
+        XPathCache.resetStatistics();
+        assertEquals("wrapper 1", "wrapper1", wrapper1.selectValue(PomPaths.PROJECT_ARTIFACT));
+        assertEquals("wrapper 2", "wrapper3", wrapper2.selectValue(PomPaths.PROJECT_ARTIFACT));
+
+        // path was compiled by the constructors, so both selects should hit
+        assertEquals("hit count",   2, XPathCache.getHitCount());
+        assertEquals("miss count",  0, XPathCache.getMissCount());
+    }
+
+
+    @Test
+    public void testPomWithoutNamespace() throws Exception
+    {
+        PomWrapper wrapper = new PomWrapper(ParseUtil.parseFromClasspath("PomWrapper6.xml"));
+        assertEquals("wrapper6", wrapper.selectValue(PomPaths.PROJECT_ARTIFACT));
+    }
+}
@@ -0,0 +1,151 @@
+// Copyright Keith D Gregory
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.kdgregory.pomutil.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+
+public class TestZipCentralDirectory
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+
+//----------------------------------------------------------------------------
+//  Support Code
+//----------------------------------------------------------------------------
+
+    private File createZip(String comment, String... entryNames)
+    throws Exception
+    {
+        File file = tempDir.newFile();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try
+        {
+            if (comment != null)
+                out.setComment(comment);
+            for (String entryName : entryNames)
+            {
+                out.putNextEntry(new ZipEntry(entryName));
+                out.write(entryName.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+
+//----------------------------------------------------------------------------
+//  Testcases
+//----------------------------------------------------------------------------
+
+    @Test
+    public void testBasicOperation() throws Exception
+    {
+        File file = createZip(null,
+                              "META-INF/MANIFEST.MF",
+                              "com/",
+                              "com/example/",
+                              "com/example/Foo.class",
+                              "com/example/Foo$Bar.class",
+                              "com/example/Foo.java",
+                              ".class",
+                              "com/example/résumé/Baz.class");
+
+        assertEquals("extracted classes",
+                     Arrays.asList("com.example.Foo", "com.example.Foo.Bar", "com.example.résumé.Baz"),
+                     ZipCentralDirectory.extractClassNames(file));
+    }
+
+
+    @Test
+    public void testArchiveWithComment() throws Exception
+    {
+        File file = createZip("this is a comment", "com/example/Foo.class");
+
+        assertEquals("extracted classes",
+                     Arrays.asList("com.example.Foo"),
+                     ZipCentralDirectory.extractClassNames(file));
+    }
+
+
+    @Test
+    public void testEmptyArchive() throws Exception
+    {
+        File file = createZip(null, "README.txt");
+
+        assertEquals("extracted classes", 0, ZipCentralDirectory.extractClassNames(file).size());
+    }
+
+
+    @Test
+    public void testZip64() throws Exception
+    {
+        // Zip64 is required once there are more than 65,535 entries
+        String[] entryNames = new String[70000];
+        for (int ii = 0 ; ii < entryNames.length ; ii++)
+        {
+            entryNames[ii] = "com/example/C" + ii + ".class";
+        }
+        File file = createZip(null, entryNames);
+
+        List<String> classes = ZipCentralDirectory.extractClassNames(file);
+        assertEquals("number of classes", entryNames.length, classes.size());
+        assertEquals("last class", "com.example.C69999", classes.get(classes.size() - 1));
+    }
+
+
+    @Test(expected=ZipException.class)
+    public void testNotAnArchive() throws Exception
+    {
+        File file = tempDir.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[1024]);
+        out.close();
+
+        ZipCentralDirectory.extractClassNames(file);
+    }
+
+
+    @Test
+    public void testUtilsFallback() throws Exception
+    {
+        File file = createZip(null, "META-INF/MANIFEST.MF", "com/example/Foo.class", "com/example/Foo$1.class");
+
+        // trailing garbage means that we can't find the EOCD, but JarFile can
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[] { 1, 2, 3, 4 });
+        out.close();
+
+        assertEquals("via Utils",
+                     Arrays.asList("com.example.Foo", "com.example.Foo.1"),
+                     Utils.extractClassesFromJar(file));
+    }
+}